@@ -0,0 +1,4 @@
+rem Requires sqlgen-runtime, sqlgen-generator and sqlgen-maven-plugin to be installed (see their install.bat).
+rem Any additional arguments are passed on to JMH, e.g. run.bat ScannerBenchmark -f 1
+call mvn clean package
+java -jar target\benchmarks.jar -prof gc %*
@@ -0,0 +1,4 @@
+#!/bin/bash
+# Requires sqlgen-runtime, sqlgen-generator and sqlgen-maven-plugin to be installed (see their install.sh).
+# Any additional arguments are passed on to JMH, e.g. ./run.sh ScannerBenchmark -f 1
+mvn clean package && java -jar target/benchmarks.jar -prof gc "$@"
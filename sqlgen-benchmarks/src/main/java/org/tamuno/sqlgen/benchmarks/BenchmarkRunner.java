@@ -0,0 +1,42 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks given on the command line (all if none are given) with
+ * the GC profiler enabled, so allocation rates (gc.alloc.rate.norm) get reported
+ * next to the timings. Accepts the same arguments as the JMH command line.
+ * 
+ * java -cp target/benchmarks.jar org.tamuno.sqlgen.benchmarks.BenchmarkRunner [JMH options]
+ */
+public class BenchmarkRunner {
+
+    public static void main(String args[]) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,77 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+/**
+ * SQL Generator sources shared by the benchmarks.
+ */
+public class BenchmarkSources {
+
+    public static final String SIMPLE = 
+        "SELECT @user_id:int, @user_name:String, @birthdate:Date \n" + 
+        "        FROM users \n" +
+        "        WHERE \n" +
+        "            user_name=$user_name AND password_hash=md5($password) \n" +
+        "        LIMIT 1";
+    
+    public static final String OPTIONAL = 
+        "SELECT @user_id:int, @user_name:String, @email:String, @birthdate:Date, @active:int\n" + 
+        "        FROM users \n" +
+        "            [ WHERE \n" +
+        "                [user_name LIKE $user_name] [AND] [email=$email] [AND] [active=$active:int]\n" +
+        "                [AND] [birthdate>=$born_after:Date] [AND] [birthdate<=$born_before:Date]\n" +
+        "            ] \n" +
+        "        [ORDER BY #order_by]\n" +
+        "        [LIMIT [#offset:int,] #limit:int]";
+    
+    public static final String QUOTED = 
+        "SELECT @user_id:int, 'It''s [not] an #option' AS @label:String, \"@quoted\" AS @other:String\n" + 
+        "        FROM users \n" +
+        "        WHERE user_name=$user_name AND comment NOT LIKE '%\\\\$%' \n" +
+        "        [AND active=$active:int]";
+    
+    /**
+     * Returns one of the single statement templates above by name
+     * @param name one of simple, optional or quoted
+     */
+    public static String template(String name) {
+        if ("simple".equals(name)) {
+            return SIMPLE;
+        } else if ("optional".equals(name)) {
+            return OPTIONAL;
+        } else if ("quoted".equals(name)) {
+            return QUOTED;
+        }
+        throw new IllegalArgumentException("Unknown template: " + name);
+    }
+    
+    /**
+     * Creates a SQL Generator source file containing the given number of statements,
+     * cycling through the templates above.
+     */
+    public static String sqlgFile(int statements) {
+        String templates[] = {SIMPLE, OPTIONAL, QUOTED};
+        StringBuilder t = new StringBuilder(statements * 400);
+        for (int i = 0; i < statements; i++) {
+            t.append("statement").append(i).append(":=\n    ");
+            t.append(templates[i % templates.length]);
+            t.append(";\n\n");
+        }
+        return t.toString();
+    }
+}
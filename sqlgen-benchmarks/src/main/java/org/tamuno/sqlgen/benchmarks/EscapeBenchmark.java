@@ -0,0 +1,120 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tamuno.runtime.sql.ISQLDialectUtil;
+import org.tamuno.runtime.sql.SQLDialects;
+
+/**
+ * Measures escapeValue and appendEscaped of the SQL Dialects for strings with and 
+ * without characters to escape, numbers, timestamps and binary values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+    @Param({"Generic", "MySQL", "PostgreSQL", "H2", "SQLServer"})
+    public String dialectName;
+
+    @Param({"short", "long", "quotes"})
+    public String kind;
+
+    private ISQLDialectUtil dialect;
+    private java.sql.Timestamp timestamp;
+    private byte[] binary;
+    private String value;
+    private Integer number;
+    private StringBuilder buffer = new StringBuilder(1024);
+
+    @Setup
+    public void setUp() {
+        dialect = SQLDialects.forName(dialectName);
+        number = Integer.valueOf(123456);
+        timestamp = java.sql.Timestamp.valueOf("2007-05-25 12:30:05.123");
+        binary = new byte[64];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) (i * 7);
+        }
+        if ("short".equals(kind)) {
+            value = "kai";
+        } else if ("long".equals(kind)) {
+            StringBuilder t = new StringBuilder();
+            for (int i = 0; i < 50; i++) {
+                t.append("lorem ipsum ");
+            }
+            value = t.toString();
+        } else {
+            value = "O'Neil's 'quoted' \"value\" \\ with 'many' quotes\n";
+        }
+    }
+
+    @Benchmark
+    public String escapeString() {
+        return dialect.escapeValue(value);
+    }
+
+    @Benchmark
+    public String escapeInteger() {
+        return dialect.escapeValue(number);
+    }
+
+    @Benchmark
+    public StringBuilder appendEscapedString() {
+        buffer.setLength(0);
+        return dialect.appendEscaped(buffer, value);
+    }
+
+    @Benchmark
+    public StringBuilder appendEscapedInteger() {
+        buffer.setLength(0);
+        return dialect.appendEscaped(buffer, number);
+    }
+
+    @Benchmark
+    public String escapeTimestamp() {
+        return dialect.escapeValue(timestamp);
+    }
+
+    @Benchmark
+    public StringBuilder appendEscapedTimestamp() {
+        buffer.setLength(0);
+        return dialect.appendEscaped(buffer, timestamp);
+    }
+
+    @Benchmark
+    public StringBuilder appendEscapedBinary() {
+        buffer.setLength(0);
+        return dialect.appendEscaped(buffer, binary);
+    }
+}
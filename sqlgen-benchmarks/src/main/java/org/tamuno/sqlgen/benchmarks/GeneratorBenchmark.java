@@ -0,0 +1,105 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import java.io.Writer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tamuno.sqlgen.SQLCodeGenerator;
+
+/**
+ * Measures SQLCodeGenerator.generateSQLCode on generated .sqlg sources of increasing size.
+ * The time per statement should stay constant, i.e. generation scales linearly. streamSQLCode 
+ * writes to a Writer which discards its input, so it shows the cost of generation without 
+ * the cost of holding the complete output in memory. parallelSQLCode generates the 
+ * statements on a ForkJoinPool with one thread per processor.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({"100", "1000", "10000", "20000"})
+    public int statements;
+
+    private SQLCodeGenerator generator;
+    private SQLCodeGenerator parallelGenerator;
+    private ForkJoinPool pool;
+    private String source;
+    private char sourceChars[];
+    private Writer nullWriter;
+
+    @Setup
+    public void setUp() {
+        generator = new SQLCodeGenerator();
+        pool = new ForkJoinPool();
+        parallelGenerator = new SQLCodeGenerator();
+        parallelGenerator.setForkJoinPool(pool);
+        source = BenchmarkSources.sqlgFile(statements);
+        sourceChars = source.toCharArray();
+        nullWriter = new Writer() {
+            public void write(char[] cbuf, int off, int len) {
+            }
+            public void write(String str, int off, int len) {
+            }
+            public Writer append(CharSequence csq) {
+                return this;
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public String generateSQLCode() throws Exception {
+        return generator.generateSQLCode("Benchmark.sqlg", source, "org.tamuno.sqlgen.benchmarks", "Benchmark", null, false);
+    }
+
+    @Benchmark
+    public Writer streamSQLCode() throws Exception {
+        generator.generateSQLCode("Benchmark.sqlg", sourceChars, nullWriter, "org.tamuno.sqlgen.benchmarks", "Benchmark", null, false);
+        return nullWriter;
+    }
+
+    @Benchmark
+    public String parallelSQLCode() throws Exception {
+        return parallelGenerator.generateSQLCode("Benchmark.sqlg", source, "org.tamuno.sqlgen.benchmarks", "Benchmark", null, false);
+    }
+}
@@ -0,0 +1,855 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * Minimal forward-only, read-only ResultSet over an in-memory table of rows.
+ * Only the index based getters used by generated row classes are supported,
+ * everything else throws a SQLFeatureNotSupportedException.
+ */
+public class InMemoryResultSet implements ResultSet {
+    private final Object rows[][];
+    private int row = -1;
+    private boolean closed = false;
+    private boolean wasNull = false;
+
+    public InMemoryResultSet(Object rows[][]) {
+        this.rows = rows;
+    }
+
+    private static SQLException unsupported() {
+        return new SQLFeatureNotSupportedException("Not supported by InMemoryResultSet");
+    }
+
+    private Object value(int columnIndex) throws SQLException {
+        if (closed) {
+            throw new SQLException("ResultSet is closed");
+        }
+        if ((row < 0) || (row >= rows.length)) {
+            throw new SQLException("ResultSet is not positioned on a row");
+        }
+        Object v = rows[row][columnIndex - 1];
+        wasNull = (v == null);
+        return v;
+    }
+
+    private Number number(int columnIndex) throws SQLException {
+        Object v = value(columnIndex);
+        return (v == null) ? Integer.valueOf(0) : (Number) v;
+    }
+
+    public boolean next() throws SQLException {
+        if (closed) {
+            throw new SQLException("ResultSet is closed");
+        }
+        if (row < rows.length) {
+            row++;
+        }
+        return row < rows.length;
+    }
+
+    public void close() throws SQLException {
+        closed = true;
+    }
+
+    public boolean isClosed() throws SQLException {
+        return closed;
+    }
+
+    public boolean wasNull() throws SQLException {
+        return wasNull;
+    }
+
+    public String getString(int columnIndex) throws SQLException {
+        Object v = value(columnIndex);
+        return (v == null) ? null : v.toString();
+    }
+
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        Object v = value(columnIndex);
+        return (v != null) && ((Boolean) v).booleanValue();
+    }
+
+    public byte getByte(int columnIndex) throws SQLException {
+        return number(columnIndex).byteValue();
+    }
+
+    public short getShort(int columnIndex) throws SQLException {
+        return number(columnIndex).shortValue();
+    }
+
+    public int getInt(int columnIndex) throws SQLException {
+        return number(columnIndex).intValue();
+    }
+
+    public long getLong(int columnIndex) throws SQLException {
+        return number(columnIndex).longValue();
+    }
+
+    public float getFloat(int columnIndex) throws SQLException {
+        return number(columnIndex).floatValue();
+    }
+
+    public double getDouble(int columnIndex) throws SQLException {
+        return number(columnIndex).doubleValue();
+    }
+
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        return (BigDecimal) value(columnIndex);
+    }
+
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        return (byte[]) value(columnIndex);
+    }
+
+    public Date getDate(int columnIndex) throws SQLException {
+        return (Date) value(columnIndex);
+    }
+
+    public Time getTime(int columnIndex) throws SQLException {
+        return (Time) value(columnIndex);
+    }
+
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        return (Timestamp) value(columnIndex);
+    }
+
+    public URL getURL(int columnIndex) throws SQLException {
+        return (URL) value(columnIndex);
+    }
+
+    public Object getObject(int columnIndex) throws SQLException {
+        return value(columnIndex);
+    }
+
+    public void beforeFirst() throws SQLException {
+        row = -1;
+    }
+
+    public boolean isBeforeFirst() throws SQLException {
+        return (row < 0) && (rows.length > 0);
+    }
+
+    public boolean isAfterLast() throws SQLException {
+        return (row >= rows.length) && (rows.length > 0);
+    }
+
+    public int getRow() throws SQLException {
+        return ((row < 0) || (row >= rows.length)) ? 0 : row + 1;
+    }
+
+    public int getType() throws SQLException {
+        return TYPE_FORWARD_ONLY;
+    }
+
+    public int getConcurrency() throws SQLException {
+        return CONCUR_READ_ONLY;
+    }
+
+    public int getHoldability() throws SQLException {
+        return CLOSE_CURSORS_AT_COMMIT;
+    }
+
+    public int getFetchDirection() throws SQLException {
+        return FETCH_FORWARD;
+    }
+
+    public void setFetchDirection(int direction) throws SQLException {
+        if (direction != FETCH_FORWARD) {
+            throw unsupported();
+        }
+    }
+
+    public int getFetchSize() throws SQLException {
+        return rows.length;
+    }
+
+    public void setFetchSize(int rows) throws SQLException {
+    }
+
+    public SQLWarning getWarnings() throws SQLException {
+        return null;
+    }
+
+    public void clearWarnings() throws SQLException {
+    }
+
+    public Statement getStatement() throws SQLException {
+        return null;
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw unsupported();
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this);
+    }
+
+    // Everything below is not supported.
+
+    public boolean absolute(int row) throws SQLException {
+        throw unsupported();
+    }
+
+    public void afterLast() throws SQLException {
+        throw unsupported();
+    }
+
+    public void cancelRowUpdates() throws SQLException {
+        throw unsupported();
+    }
+
+    public void deleteRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public int findColumn(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean first() throws SQLException {
+        throw unsupported();
+    }
+
+    public Array getArray(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Array getArray(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getAsciiStream(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getAsciiStream(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public BigDecimal getBigDecimal(String columnLabel, int x) throws SQLException {
+        throw unsupported();
+    }
+
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public BigDecimal getBigDecimal(int columnIndex, int x) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getBinaryStream(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getBinaryStream(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public Blob getBlob(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Blob getBlob(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public byte getByte(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Reader getCharacterStream(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Reader getCharacterStream(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public Clob getClob(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Clob getClob(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public String getCursorName() throws SQLException {
+        throw unsupported();
+    }
+
+    public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public Date getDate(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public double getDouble(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public float getFloat(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public int getInt(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public long getLong(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public ResultSetMetaData getMetaData() throws SQLException {
+        throw unsupported();
+    }
+
+    public Reader getNCharacterStream(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Reader getNCharacterStream(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public NClob getNClob(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public NClob getNClob(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public String getNString(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public String getNString(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+        throw unsupported();
+    }
+
+    public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+        throw unsupported();
+    }
+
+    public Object getObject(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        throw unsupported();
+    }
+
+    public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+        throw unsupported();
+    }
+
+    public Ref getRef(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Ref getRef(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public RowId getRowId(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public RowId getRowId(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public SQLXML getSQLXML(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public SQLXML getSQLXML(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public short getShort(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public String getString(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public Time getTime(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+        throw unsupported();
+    }
+
+    public URL getURL(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public void insertRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean isFirst() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean isLast() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean last() throws SQLException {
+        throw unsupported();
+    }
+
+    public void moveToCurrentRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public void moveToInsertRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean previous() throws SQLException {
+        throw unsupported();
+    }
+
+    public void refreshRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean relative(int rows) throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean rowDeleted() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean rowInserted() throws SQLException {
+        throw unsupported();
+    }
+
+    public boolean rowUpdated() throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateArray(String columnLabel, Array x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateArray(int columnIndex, Array x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(String columnLabel, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(String columnLabel, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(String columnLabel, Blob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(int columnIndex, InputStream x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(int columnIndex, InputStream x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBlob(int columnIndex, Blob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateByte(String columnLabel, byte x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateByte(int columnIndex, byte x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(String columnLabel, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(String columnLabel, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(String columnLabel, Clob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(int columnIndex, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(int columnIndex, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateClob(int columnIndex, Clob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateDate(String columnLabel, Date x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateDate(int columnIndex, Date x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateDouble(String columnLabel, double x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateDouble(int columnIndex, double x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateFloat(String columnLabel, float x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateFloat(int columnIndex, float x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateInt(String columnLabel, int x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateInt(int columnIndex, int x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateLong(String columnLabel, long x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateLong(int columnIndex, long x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(String columnLabel, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(String columnLabel, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(String columnLabel, NClob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(int columnIndex, Reader x, long length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(int columnIndex, Reader x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNClob(int columnIndex, NClob x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNString(String columnLabel, String x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNString(int columnIndex, String x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNull(String columnLabel) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateNull(int columnIndex) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateObject(String columnLabel, Object x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateObject(String columnLabel, Object x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateObject(int columnIndex, Object x, int length) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateObject(int columnIndex, Object x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateRef(String columnLabel, Ref x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateRef(int columnIndex, Ref x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateRow() throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateRowId(String columnLabel, RowId x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateRowId(int columnIndex, RowId x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateSQLXML(String columnLabel, SQLXML x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateSQLXML(int columnIndex, SQLXML x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateShort(String columnLabel, short x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateShort(int columnIndex, short x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateString(String columnLabel, String x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateString(int columnIndex, String x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateTime(String columnLabel, Time x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateTime(int columnIndex, Time x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+        throw unsupported();
+    }
+
+    public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+        throw unsupported();
+    }
+}
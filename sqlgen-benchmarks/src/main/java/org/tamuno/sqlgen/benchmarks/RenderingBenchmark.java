@@ -0,0 +1,119 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.tamuno.runtime.sql.GenericSQLDialectUtil;
+import org.tamuno.sqlgen.SQLGenParseException;
+import org.tamuno.sqlgen.SQLTemplate;
+
+/**
+ * Measures the toString() SQL rendering of generated statement classes
+ * (see BenchmarkSQL.sqlg) across different shapes:
+ * <ul>
+ *  <li>static - a statement without any input variables</li>
+ *  <li>required - a statement with required escaped input variables only</li>
+ *  <li>none - optional sections, none of them filled</li>
+ *  <li>some - optional sections, some of them filled</li>
+ *  <li>all - optional sections, all of them filled</li>
+ * </ul>
+ * render() goes through toString(), renderTo() appends to a reused, caller-supplied buffer.
+ * interpret() renders the same statement and shape through the runtime interpreter (SQLTemplate).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderingBenchmark {
+
+    @Param({"static", "required", "none", "some", "all"})
+    public String shape;
+
+    private Object statement;
+    private StringBuilder buffer = new StringBuilder(1024);
+    private SQLTemplate template;
+    private Object params[];
+
+    @Setup
+    public void setUp() throws SQLGenParseException {
+        BenchmarkSQL sql = new BenchmarkSQL();
+        if ("static".equals(shape)) {
+            statement = sql.countUsers();
+            template = SQLTemplate.compile("countUsers", "SELECT count(*) AS @cnt:long FROM users");
+            params = new Object[0];
+        } else if ("required".equals(shape)) {
+            statement = sql.selectUserLogin("kai", "secret");
+            template = SQLTemplate.compile("selectUserLogin", BenchmarkSources.SIMPLE);
+            params = new Object[]{"kai", "secret"};
+        } else if ("none".equals(shape)) {
+            statement = sql.searchUsers();
+            template = SQLTemplate.compile("searchUsers", BenchmarkSources.OPTIONAL);
+            params = new Object[8];
+        } else if ("some".equals(shape)) {
+            statement = sql.searchUsers().user_name("k%").active(1).limit(20);
+            template = SQLTemplate.compile("searchUsers", BenchmarkSources.OPTIONAL);
+            params = new Object[]{"k%", null, 1, null, null, null, null, 20};
+        } else {
+            template = SQLTemplate.compile("searchUsers", BenchmarkSources.OPTIONAL);
+            params = new Object[]{"k%", "kai@example.com", 1, java.sql.Date.valueOf("1970-01-01"), java.sql.Date.valueOf("2000-01-01"), "user_name", 40, 20};
+            statement = sql.searchUsers()
+                    .user_name("k%")
+                    .email("kai@example.com")
+                    .active(1)
+                    .born_after(java.sql.Date.valueOf("1970-01-01"))
+                    .born_before(java.sql.Date.valueOf("2000-01-01"))
+                    .order_by("user_name")
+                    .offset(40)
+                    .limit(20);
+        }
+    }
+
+    @Benchmark
+    public String render() {
+        return statement.toString();
+    }
+
+    @Benchmark
+    public StringBuilder renderTo() {
+        buffer.setLength(0);
+        if (statement instanceof BenchmarkSQL.CountUsers) {
+            return ((BenchmarkSQL.CountUsers) statement).renderTo(buffer);
+        } else if (statement instanceof BenchmarkSQL.SelectUserLogin) {
+            return ((BenchmarkSQL.SelectUserLogin) statement).renderTo(buffer);
+        }
+        return ((BenchmarkSQL.SearchUsers) statement).renderTo(buffer);
+    }
+
+    @Benchmark
+    public String interpret() {
+        return template.render(GenericSQLDialectUtil.instance, params);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.tamuno.runtime.sql.DynamicRow;
+import org.tamuno.runtime.sql.RowIterator;
+import org.tamuno.runtime.sql.RowLoaders;
+
+/**
+ * Measures loading rows through RowIterator into generated row classes,
+ * reading from an InMemoryResultSet so no database is involved.
+ * iterateSpun() loads the same rows into a DynamicRow class spun by RowLoaders,
+ * iterateInterpreted() into a plain DynamicRow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowIteratorBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int rowCount;
+
+    private Object rows[][];
+    private DynamicRow.Columns columns = new DynamicRow.Columns(
+            new String[]{"user_id", "user_name", "email", "birthdate", "active"},
+            new String[]{"int", "String", "String", "Date", "int"});
+
+    @Setup
+    public void setUp() {
+        rows = new Object[rowCount][];
+        java.sql.Date birthdate = java.sql.Date.valueOf("1977-05-25");
+        for (int i = 0; i < rowCount; i++) {
+            rows[i] = new Object[]{Integer.valueOf(i), "user" + i, "user" + i + "@example.com", birthdate, Integer.valueOf(i & 1)};
+        }
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) throws Exception {
+        RowIterator<BenchmarkSQL.SearchUsersRow> it = new RowIterator<BenchmarkSQL.SearchUsersRow>(new InMemoryResultSet(rows), BenchmarkSQL.SearchUsersRow.class);
+        for (BenchmarkSQL.SearchUsersRow row : it) {
+            bh.consume(row.user_id);
+        }
+    }
+
+    @Benchmark
+    public Object getAll() throws Exception {
+        return new RowIterator<BenchmarkSQL.SearchUsersRow>(new InMemoryResultSet(rows), BenchmarkSQL.SearchUsersRow.class).getAll();
+    }
+
+    @Benchmark
+    public void iterateSpun(Blackhole bh) throws Exception {
+        for (DynamicRow row : new RowIterator<DynamicRow>(new InMemoryResultSet(rows), RowLoaders.newRow(columns))) {
+            bh.consume(row.getLong(0));
+        }
+    }
+
+    @Benchmark
+    public void iterateInterpreted(Blackhole bh) throws Exception {
+        for (DynamicRow row : new RowIterator<DynamicRow>(new InMemoryResultSet(rows), new DynamicRow(columns))) {
+            bh.consume(row.getLong(0));
+        }
+    }
+}
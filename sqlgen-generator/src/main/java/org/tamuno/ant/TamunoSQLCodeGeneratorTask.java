@@ -0,0 +1,344 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.ant;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.taskdefs.MatchingTask;
+import java.io.File;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.tamuno.runtime.sql.ShapeProfile;
+import org.tamuno.sqlgen.GenerationManifest;
+import org.tamuno.sqlgen.SQLCodeGenerator;
+import org.tamuno.sqlgen.SQLGenParseException;
+import org.tamuno.sqlgen.ShapeReport;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Ant Task to generate SQL Code Generator classes
+ * 
+ * Usage example
+ * 
+ *     <taskdef name="csql" classname="org.tamuno.ant.TamunoSQLCodeGeneratorTask" classpath="tamuno-lib/tamuno.jar:tamuno-lib/antlr-runtime-3.0.1.jar:tamuno-lib/tools.jar" />
+ *   
+ *     <target name="tamuno-sql" depends="init">
+ *       <csql path="${src.dir}" targetpath="${src.dir}" >
+ *            <include name="** /*.sqlg"  />
+ *       </csql>
+ *   </target>
+ * 
+ */
+public class TamunoSQLCodeGeneratorTask extends MatchingTask {
+    private File path;
+    private File targetpath;
+    private boolean collapsewhitespace = false;
+    private int threads = 0;
+    private File manifest;
+    private File profile;
+    private ShapeProfile shapeProfile;
+    private File shapereport;
+    private long maxshapes = 0;
+
+    /**
+     * Root source path to start processing at.
+     */
+    public void setPath(File path) {
+        this.path = path;
+    }
+
+   /**
+    * Output directory (defaults to source path)
+    */
+    public void setTargetpath(File targetpath) {
+        this.targetpath = targetpath;
+    }
+
+    /**
+     * Collapse runs of whitespace in the generated SQL into a single space (defaults to false)
+     */
+    public void setCollapsewhitespace(boolean collapsewhitespace) {
+        this.collapsewhitespace = collapsewhitespace;
+    }
+
+    /**
+     * Number of threads used to generate files, and statements within files, in parallel.
+     * (defaults to 0, which means one thread per available processor. 1 generates sequentially)
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Manifest of the hashes of all generated sources. Sources are only generated again if
+     * their content, the generator version or the generator options changed.
+     * (defaults to .sqlgen-manifest.properties within the output directory)
+     */
+    public void setManifest(File manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Shape profile recorded at runtime (see org.tamuno.runtime.sql.ShapeProfile), which the
+     * generated code is optimized for. Statements which have never been executed according
+     * to the profile are reported. (defaults to none)
+     */
+    public void setProfile(File profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Report of the number of distinct SQL shapes every statement can render, and the optional
+     * sections multiplying them (see org.tamuno.sqlgen.ShapeReport). (defaults to none)
+     */
+    public void setShapereport(File shapereport) {
+        this.shapereport = shapereport;
+    }
+
+    /**
+     * Statements which can render more distinct SQL shapes fail the build, as each of them takes
+     * a plan cache entry of its own within the database. (defaults to 0, which disables the check)
+     */
+    public void setMaxshapes(long maxshapes) {
+        this.maxshapes = maxshapes;
+    }
+
+    /**
+     * Main execute method of this ant Task.
+     * executes, after init() has been called, and all properties have been set
+     */
+    @Override
+    public void execute() throws BuildException {
+        log("Executing TamunoSQLCodeGeneratorTask");
+        DirectoryScanner scanner = this.getDirectoryScanner(path);
+        if (targetpath==null) {
+            targetpath = path;
+        }
+        String rfnames[] = scanner.getIncludedFiles();
+        File srcfiles[] = new File[rfnames.length];
+        File targetfiles[] = new File[rfnames.length];
+        String packagenames[] = new String[rfnames.length];
+        String classnames[] = new String[rfnames.length];
+        String baseclasses[] = new String[rfnames.length];
+        for (int i=0;i<rfnames.length;i++) {
+                String rf = rfnames[i];
+                srcfiles[i] = new File(scanner.getBasedir().getAbsolutePath()+File.separator+rf);
+                String fname = srcfiles[i].getName();
+                int cpos = fname.lastIndexOf('.');
+                if (cpos<0) continue;
+                baseclasses[i] = null;
+                int dpos = fname.lastIndexOf('.', cpos-1);
+                if (dpos<0) {
+                    dpos = cpos;
+                    baseclasses[i] = null;
+                    classnames[i] = fname.substring(0, dpos);
+                } else {
+                    baseclasses[i] = fname.substring(0, dpos);
+                    classnames[i] = baseclasses[i] + TamunoUtils.capitalize(fname.substring(dpos+1, cpos));
+                }
+                dpos = rf.lastIndexOf('.');
+                String relbase = rf.substring(0, dpos);
+                dpos = relbase.lastIndexOf(File.separator);
+                packagenames[i] = rf.substring(0, dpos).replace(File.separatorChar, '.');
+                
+        }
+        if (manifest==null) {
+            manifest = new File(targetpath, ".sqlgen-manifest.properties");
+        }
+        String options = "collapsewhitespace=" + collapsewhitespace;
+        if (profile != null) {
+            shapeProfile = new ShapeProfile();
+            try {
+                shapeProfile.load(profile);
+            } catch (IOException ex) {
+                throw new BuildException("Could not read profile " + profile, ex);
+            }
+            options += ";profile=" + Integer.toHexString(shapeProfile.toString().hashCode());
+        }
+        GenerationManifest generationManifest;
+        try {
+            generationManifest = new GenerationManifest(manifest, options);
+        } catch (IOException ex) {
+            throw new BuildException(ex);
+        }
+        try {
+            generateAll(generationManifest, rfnames, srcfiles, packagenames, classnames, baseclasses);
+            if ((shapereport != null) || (maxshapes > 0)) {
+                reportShapes(rfnames, srcfiles);
+            }
+            for (File removed : generationManifest.removeStale()) {
+                log("Removed " + removed.getPath() + ", its source no longer exists");
+            }
+        } finally {
+            try {
+                generationManifest.save();
+            } catch (IOException ex) {
+                // Not fatal, all sources will be generated again next time
+                log("Could not write " + manifest + ": " + ex.getMessage());
+            }
+        }
+    }
+    
+    private void generateAll(final GenerationManifest generationManifest, String rfnames[], File srcfiles[], String packagenames[], String classnames[], String baseclasses[]) throws BuildException {
+        final SQLCodeGenerator cgen = new SQLCodeGenerator();
+        cgen.setCollapseWhitespace(collapsewhitespace);
+        cgen.setProfile(shapeProfile);
+        int nthreads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        if (nthreads == 1) {
+            for (int i=0;i<rfnames.length;i++) {
+                generate(cgen, generationManifest, rfnames[i], srcfiles[i], packagenames[i], classnames[i], baseclasses[i]);
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(nthreads);
+        try {
+            cgen.setForkJoinPool(pool);
+            ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i=0;i<rfnames.length;i++) {
+                final String rfname = rfnames[i];
+                final File srcfile = srcfiles[i];
+                final String packagename = packagenames[i];
+                final String classname = classnames[i];
+                final String baseclass = baseclasses[i];
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        generate(cgen, generationManifest, rfname, srcfile, packagename, classname, baseclass);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof BuildException) {
+                        throw (BuildException) ex.getCause();
+                    }
+                    throw new BuildException(ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new BuildException(ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
+    
+    /**
+     * Writes the shape report, and fails if a statement has more than maxshapes shapes
+     */
+    private void reportShapes(String rfnames[], File srcfiles[]) throws BuildException {
+        StringBuilder report = new StringBuilder();
+        StringBuilder exceeding = new StringBuilder();
+        try {
+            for (int i=0;i<rfnames.length;i++) {
+                ShapeReport shapes = ShapeReport.analyze(rfnames[i], TamunoUtils.loadTextFileChars(srcfiles[i], "UTF-8"), collapsewhitespace);
+                report.append(shapes);
+                if (maxshapes > 0) {
+                    for (ShapeReport.Entry entry : shapes.getEntriesExceeding(maxshapes)) {
+                        exceeding.append("\n  ").append(entry.statement).append(" of ").append(rfnames[i]).append(": ").append(entry.shapes);
+                    }
+                }
+            }
+            if (shapereport != null) {
+                TamunoUtils.saveTextFileIfChanged(shapereport, report.toString(), "UTF-8");
+            }
+        } catch (SQLGenParseException ex) {
+            throw new BuildException(ex);
+        } catch (IOException ex) {
+            throw new BuildException(ex);
+        }
+        if (exceeding.length() > 0) {
+            throw new BuildException("Statements with more than " + maxshapes + " SQL shapes:" + exceeding);
+        }
+    }
+
+    /**
+     * Generates the java source(s) for a single SQL Code Generator source file
+     */
+    private void generate(SQLCodeGenerator cgen, GenerationManifest generationManifest, String rfname, File srcfile, String packagename, String classname, String baseclass) throws BuildException {
+        try {
+            if (shapeProfile != null) {
+                for (String name : cgen.findUnusedStatements(TamunoUtils.loadTextFileChars(srcfile, "UTF-8"), packagename, classname)) {
+                    log("Statement " + name + " of " + rfname + " has never been executed according to " + profile, Project.MSG_WARN);
+                }
+            }
+            String hash = generationManifest.hash(srcfile);
+            File srcTarget = new File(this.targetpath + File.separator + packagename.replace('.', File.separatorChar) + File.separator + classname + ".java"); 
+            if (baseclass!=null) {
+                    File baseTarget = new File(this.targetpath +File.separator + packagename.replace('.', File.separatorChar) + File.separator + baseclass + ".java");
+                    if (!generationManifest.isUpToDate(srcfile, hash, baseTarget, srcTarget)) {
+                        // All dialects of a base class write the same base class file
+                        synchronized (this) {
+                            cgen.generateSQLCodeIfChanged(srcfile, baseTarget, packagename, baseclass, null, true);
+                        }
+                        cgen.generateSQLCodeIfChanged(srcfile, srcTarget, packagename, classname, baseclass, true);
+                        generationManifest.update(srcfile, hash, baseTarget, srcTarget);
+                    }
+            } else {
+                   if (!generationManifest.isUpToDate(srcfile, hash, srcTarget)) {
+                        cgen.generateSQLCodeIfChanged(srcfile, srcTarget, packagename, classname, null, false); 
+                        generationManifest.update(srcfile, hash, srcTarget);
+                   }
+            }
+        } catch (SQLGenParseException ex) {
+            this.log("Parse error in " +  rfname + ":" + ex.getMessage());
+            throw new BuildException(ex);
+        } catch (IOException ex) {
+            throw new BuildException(ex);
+        }
+    }
+
+    @Override
+    public void init() throws BuildException {
+    }
+
+    /**
+     * Implementation of TamunoUserInterface
+     * displays a warning to the user
+     */
+    public void displayWarning(String message) {
+        this.log(message);
+    }
+
+    /**
+     * Implementation of TamunoUserInterface
+     * displays or logs a helpful trace message.
+     */
+    public void logTrace(String message) {
+        this.log(message);
+    }
+
+    /**
+     * Implementation of TamunoUserInterface
+     * displays or logs an Exception - possibly including Stack Trace.
+     */
+    public void logException(Throwable t) {
+        this.log(t, 0);
+    }
+    
+    
+}
+
@@ -0,0 +1,161 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.apt;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import org.tamuno.annotations.SQLGenSources;
+import org.tamuno.sqlgen.SQLCodeGenerator;
+import org.tamuno.sqlgen.SQLGenParseException;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Annotation processor, which runs the SQL Code Generator within javac.
+ * 
+ * Generates the sources named by SQLGenSources annotations through the Filer, so the 
+ * generated classes take part in (incremental) compilation like any other source, and no 
+ * separate Ant or Maven generation step is needed. The processor is registered via 
+ * META-INF/services, so having the sqlgen jar on the processor path is sufficient.
+ * 
+ * The .sqlg sources are looked up on the source path first, then on the class path.
+ * Note that the compiler does not track changes of the .sqlg files themselves, only of the
+ * annotated element. 
+ * 
+ * @see org.tamuno.annotations.SQLGenSources
+ * @see org.tamuno.ant.TamunoSQLCodeGeneratorTask
+ */
+@SupportedAnnotationTypes("org.tamuno.annotations.SQLGenSources")
+public class SQLCodeGeneratorProcessor extends AbstractProcessor {
+    private static final StandardLocation sourceLocations[] = {StandardLocation.SOURCE_PATH, StandardLocation.CLASS_PATH, StandardLocation.CLASS_OUTPUT};
+    
+    /** Qualified names of the classes generated so far. Dialects of one base class share it. */
+    private final Set<String> generated = new HashSet<String>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(SQLGenSources.class)) {
+            SQLGenSources sources = element.getAnnotation(SQLGenSources.class);
+            String packagename = processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+            if (packagename.length() == 0) {
+                error("SQL Code Generator sources can not be generated into the unnamed package", element);
+                continue;
+            }
+            SQLCodeGenerator cgen = new SQLCodeGenerator();
+            cgen.setCollapseWhitespace(sources.collapseWhitespace());
+            String baseclass = (sources.baseclass().length() > 0) ? sources.baseclass() : null;
+            for (String name : sources.value()) {
+                generate(cgen, element, packagename, name, baseclass);
+            }
+        }
+        return true;
+    }
+    
+    private void generate(SQLCodeGenerator cgen, Element element, String packagename, String name, String baseclass) {
+        int cpos = name.lastIndexOf('.');
+        if (cpos < 0) {
+            error("SQL Code Generator source " + name + " has no file extension", element);
+            return;
+        }
+        String from = packagename.replace('.', '/') + "/" + name;
+        try {
+            char source[] = loadSource(packagename, name);
+            if (source == null) {
+                error("SQL Code Generator source " + from + " not found on the source path or class path", element);
+                return;
+            }
+            int dpos = name.lastIndexOf('.', cpos - 1);
+            if (dpos < 0) {
+                generate(cgen, element, from, source, packagename, name.substring(0, cpos), baseclass, false);
+            } else {
+                String base = name.substring(0, dpos);
+                generate(cgen, element, from, source, packagename, base, null, true);
+                generate(cgen, element, from, source, packagename, base + TamunoUtils.capitalize(name.substring(dpos + 1, cpos)), base, true);
+            }
+        } catch (SQLGenParseException ex) {
+            error("Parse error in " + from + ": " + ex.getMessage(), element);
+        } catch (IOException ex) {
+            error("Could not generate code for " + from + ": " + ex, element);
+        }
+    }
+    
+    private void generate(SQLCodeGenerator cgen, Element element, String from, char source[], String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        String qualifiedName = packagename + "." + classname;
+        if (!generated.add(qualifiedName)) {
+            return;
+        }
+        // Generate completely before creating the source file, so a parse error leaves no partial source behind
+        StringWriter code = new StringWriter(source.length * 8);
+        cgen.generateSQLCode(from, source, code, packagename, classname, baseclass, withDialects);
+        Filer filer = processingEnv.getFiler();
+        JavaFileObject target = filer.createSourceFile(qualifiedName, element);
+        Writer out = target.openWriter();
+        try {
+            out.write(code.toString());
+        } finally {
+            out.close();
+        }
+        FileObject config = filer.createResource(StandardLocation.CLASS_OUTPUT, "", SQLCodeGenerator.nativeImageConfigPath(packagename, classname), element);
+        out = config.openWriter();
+        try {
+            out.write(cgen.generateNativeImageConfig(source, packagename, classname, baseclass, withDialects));
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Reads the given source relative to the package from the first location which has it.
+     * @return null if it could not be found.
+     */
+    private char[] loadSource(String packagename, String name) {
+        for (StandardLocation location : sourceLocations) {
+            try {
+                FileObject file = processingEnv.getFiler().getResource(location, packagename, name);
+                return file.getCharContent(true).toString().toCharArray();
+            } catch (IOException | IllegalArgumentException ex) {
+                // Location not available, or the source is not found there
+            }
+        }
+        return null;
+    }
+    
+    private void error(String message, Element element) {
+        Messager messager = processingEnv.getMessager();
+        messager.printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Build manifest for incremental code generation.
+ * 
+ * Records for every SQL Code Generator source a hash of its content, the generator version 
+ * and the generator options, together with the files generated from it. A source only needs 
+ * to be generated again if its hash changed, or if one of its outputs is missing. Outputs of 
+ * sources which no longer exist can be removed via removeStale.
+ * 
+ * The manifest is stored as a properties file. All methods are synchronized, so a single 
+ * manifest can be used by parallel generation.
+ * 
+ * Usage:
+ * <PRE>
+ *   GenerationManifest manifest = new GenerationManifest(manifestFile, options);
+ *   String hash = manifest.hash(source);
+ *   if (!manifest.isUpToDate(source, hash, target)) {
+ *       cgen.generateSQLCodeIfChanged(source, target, ...);
+ *       manifest.update(source, hash, target);
+ *   }
+ *   ...
+ *   manifest.removeStale();
+ *   manifest.save();
+ * </PRE>
+ */
+public class GenerationManifest {
+    private static final char SEPARATOR = '|';
+    
+    private final File file;
+    private final String options;
+    private final Properties entries = new Properties();
+    private boolean modified = false;
+    
+    /**
+     * Loads the manifest from the given file, if it exists.
+     * @param file Manifest file
+     * @param options Generator options which affect the generated code. Part of every hash.
+     */
+    public GenerationManifest(File file, String options) throws IOException {
+        this.file = file;
+        this.options = options;
+        if (file.isFile()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                entries.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+    
+    /**
+     * Returns the hash of the given source file, the generator version and the options of this manifest.
+     */
+    public String hash(File source) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        md.update((SQLCodeGenerator.VERSION + "\n" + options + "\n").getBytes("UTF-8"));
+        InputStream in = new FileInputStream(source);
+        try {
+            byte buf[] = new byte[8192];
+            int r;
+            while ((r = in.read(buf)) >= 0) {
+                md.update(buf, 0, r);
+            }
+        } finally {
+            in.close();
+        }
+        return TamunoUtils.toUnsignedHexStr(md.digest());
+    }
+    
+    /**
+     * Returns true if the source has been generated with the given hash, and all of the given outputs exist.
+     */
+    public synchronized boolean isUpToDate(File source, String hash, File... outputs) {
+        String key = key(source);
+        String entry = entries.getProperty(key);
+        if (entry == null) {
+            return false;
+        }
+        int pos = entry.indexOf(SEPARATOR);
+        if (!hash.equals((pos < 0) ? entry : entry.substring(0, pos))) {
+            return false;
+        }
+        for (File output : outputs) {
+            if (!output.isFile()) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Records that the outputs have been generated from the source with the given hash.
+     */
+    public synchronized void update(File source, String hash, File... outputs) {
+        String key = key(source);
+        StringBuilder entry = new StringBuilder(hash);
+        for (File output : outputs) {
+            entry.append(SEPARATOR).append(output.getAbsolutePath());
+        }
+        entries.setProperty(key, entry.toString());
+        modified = true;
+    }
+    
+    /**
+     * Deletes the outputs of all sources which are recorded in the manifest, but no longer
+     * exist, and removes their entries. Sources which still exist keep their outputs, even if 
+     * they have not been generated by this run, as several runs with different sources (like 
+     * two executions of the Maven plugin) may share a manifest. Outputs which are also recorded
+     * for one of the remaining sources are kept.
+     * @return the deleted files
+     */
+    public synchronized List<File> removeStale() {
+        HashSet<String> live = new HashSet<String>();
+        HashSet<String> stale = new HashSet<String>();
+        for (String key : entries.stringPropertyNames()) {
+            if (new File(key).exists()) {
+                live.addAll(outputs(entries.getProperty(key)));
+            } else {
+                stale.add(key);
+            }
+        }
+        ArrayList<File> deleted = new ArrayList<File>();
+        for (String key : stale) {
+            for (String path : outputs(entries.getProperty(key))) {
+                File output = new File(path);
+                if (!live.contains(path) && output.isFile() && output.delete()) {
+                    deleted.add(output);
+                }
+            }
+            entries.remove(key);
+            modified = true;
+        }
+        return deleted;
+    }
+    
+    private static List<String> outputs(String entry) {
+        ArrayList<String> result = new ArrayList<String>();
+        int pos = entry.indexOf(SEPARATOR);
+        while (pos >= 0) {
+            int next = entry.indexOf(SEPARATOR, pos + 1);
+            result.add(entry.substring(pos + 1, (next < 0) ? entry.length() : next));
+            pos = next;
+        }
+        return result;
+    }
+    
+    /**
+     * Writes the manifest file, if anything changed.
+     */
+    public synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        OutputStream out = new FileOutputStream(file);
+        try {
+            entries.store(out, "SQL Code Generator manifest. Delete to regenerate all sources.");
+        } finally {
+            out.close();
+        }
+        modified = false;
+    }
+    
+    private static String key(File source) {
+        return source.getAbsolutePath();
+    }
+}
@@ -0,0 +1,1354 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import org.tamuno.runtime.sql.ShapeProfile;
+import org.tamuno.util.TamunoUtils;
+import static org.tamuno.sqlgen.SQLGenTokenType.*;
+
+/**
+ * <p>
+ * Parser and Source Code Generator, which allows to transform
+ * specially crafted SQL Code into Java source code, which in turn 
+ * provides type safe interfaces to generate clean SQL and to retrieve
+ * result sets of queries.
+ * </p>
+ * <p>
+ * The special SQL Syntax is designed to allow type safety and clean markup of optional text pieces.
+ * </p>
+ * <p>
+ * The syntax is simple. A SQL Generator Source file contains a list of SQL Statement Templates.
+ * </p>
+ * <p>
+ * Each of these looks like the following:
+ * </p>
+ * <PRE>
+ * <b>statementName</b>:=MULTILINE SQL CODE<b>;</b>
+ * </PRE>
+ * <p>
+ * That is, each statement begins with its name, and is terminated by a semicolon followed by a newline. 
+ * (The final newline after the semicolon is important, so keep it in mind !)
+ * 
+ * 
+ * </p>
+ * For the part named <b>MULTILINE SQL CODE</b> above, there are 
+ * <ul>
+ * <li>Variables (Identified by a starting @, # or $ sign)</li>
+ * <li>Optional pieces (Identified by surrounding angle brackets [optional]</li>
+ * </ul>
+ * <p>
+ * Variables can be either <b>input</b> (# and $) or <b>output</b> (@) variables.
+ * </p>
+ * <p>
+ * Variables are identified by a standard <b>identifier</b> (only alphanumeric chars and underscores),
+ * and can have a <b>type</b>, and are generally written as 
+ * Starting-character ([#$@]) Identifier ([a-Z_]+) (:type)?
+ * </p>
+ * Input variables can be either 
+ * <ul>
+ *  <li>Escaped ($)</li>
+ *  <li>Literal (#)</li>
+ * </ul>
+ * <p>
+ * Input variables are required parameters, unless contained in an optional section.
+ * </p>
+ * <p>
+ * Optional sections which contain neither input variables nor other optional sections
+ * are omitted if either of the surrounding optional sections would be omitted.
+ * </p>
+ * <p>
+ * Optional sections which do not contain input variables, but do contain other optional
+ * sections, are called alternative sections. Their content is omitted, unless
+ * <em>at least one</em> of the contained alternative sections is not omitted.</p>
+ * 
+ * <b>Parsing rules</b>
+ * <ul>
+ * <li>A Backslash (\) can be used to escape special characters.</li>
+ * <li>No parsing is done within String-Literals enclosed by " or '</li>
+ * </ul>
+ * 
+ * <b>LIMITS</b>
+ * <p>
+ * Code sections are masked by 64 bit (long) masks of the available input variables. Statements
+ * with more than 64 different named input variables use long[] masks instead. They do not
+ * implement ShapedStatement, so they are neither warmed up nor profiled.
+ * </p>
+ * 
+ * <h4>Examples</h4>
+ * <PRE>
+ * selectUserLogin:=
+ *   SELECT @user_id:int, @user_name:String, @birthdate:Date 
+ *       FROM users 
+ *       WHERE 
+ *           user_name=$user_name AND password_hash=md5($password) 
+ *       LIMIT 1;
+ *
+ * selectUser:=
+ *   SELECT @user_id:int, ';' @user_name:String, @birthdate:Date 
+ *       FROM users 
+ *           [ WHERE 
+ *               [user_name=$user_name] [AND] [active=$active:int]
+ *           ] 
+ *       LIMIT 1;
+ * </PRE>
+ * 
+ * @TODO:
+ *  Possible enhancements:
+ *  <ul>
+ *      <li>Execution Wrappers - that is, the possibility to provider Methods wrapping the execution of these Statements</li>
+ *      <li>Access levels - The possibility of making certain SQL Statements public, protected, read, write, admin etc.
+ *          This info should be passed to the execution wrappers
+ *      </li>
+ *  </ul>
+ *  
+ * @see #main
+ */
+public class SQLCodeGenerator {
+    /**
+     * Version of the generated code. Has to be changed whenever the generated code changes,
+     * so incremental builds (see GenerationManifest) regenerate all sources.
+     */
+    public static final String VERSION = "1.9";
+    
+    private boolean collapseWhitespace = false;
+    private ForkJoinPool pool;
+    private ShapeProfile profile;
+    /** Maximum number of shapes per statement pre-rendered from a profile */
+    static final int MAX_HOT_SHAPES = 4;
+    /** Percentage of the executions of a statement covered by its pre-rendered shapes, if possible */
+    static final int HOT_SHAPE_COVERAGE = 90;
+    /** Parse context of the last call to parseString, used by the public create... methods */
+    private SQLGenParseContext current;
+    static HashMap<String, String[]> targetTypeMap = new HashMap<String, String[]>();
+    private static HashSet<String> primitiveTypes = new HashSet<String>();
+    /** Method comparing two values of an output variable type, for the types which can be ordered */
+    private static HashMap<String, String> comparatorMap = new HashMap<String, String>();
+    private static final int[] identifierSet = TamunoUtils.bitfieldCreateCharSet("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_");
+    /**
+     Main API Entry point for the SQL Code Generator
+     creates a Java source code file from a given SQL Code Generator source file.
+     
+     @param sourceFile SQL Code Generator source file to read from
+     @param targetJavaSourceFile  Java source code file to write to. (Will be overwritten, unless there is a parse error !)
+     @param packagename Package name the target java file will be declared to be in.
+     @param classname Classname of the generated class
+     @param baseclass base class name of the generated class.
+     The generated code names its source by its path relative to the target file, 
+     so it does not depend on the location of the project.
+     @throws org.tamuno.sqlgen.SQLGenParseException 
+     @throws java.io.IOException 
+     @see org.tamuno.ant.TamunoSQLCodeGeneratorTask
+    */
+    public void generateSQLCode(File sourceFile, File targetJavaSourceFile, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        char source[] = TamunoUtils.loadTextFileChars(sourceFile, "UTF-8");
+        // Generated into a temporary file, so a parse error does not leave a truncated target behind
+        File tmp = File.createTempFile("." + targetJavaSourceFile.getName(), ".tmp", targetJavaSourceFile.getAbsoluteFile().getParentFile());
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"), 64 * 1024);
+            try {
+                this.generateSQLCode(TamunoUtils.relativePath(targetJavaSourceFile.getAbsoluteFile().getParentFile(), sourceFile), source, out, packagename, classname, baseclass, withDialects);
+            } finally {
+                out.close();
+            }
+            TamunoUtils.replaceAtomically(tmp, targetJavaSourceFile);
+        } finally {
+            tmp.delete();
+        }
+    }
+    
+    /**
+     * Like generateSQLCode(File, File, ...), but leaves the target file untouched if it already
+     * contains the generated code, so an unchanged target does not trigger a recompile.
+     * @return true if the target file has been written.
+     */
+    public boolean generateSQLCodeIfChanged(File sourceFile, File targetJavaSourceFile, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        return generateSQLCodeIfChanged(sourceFile, TamunoUtils.relativePath(targetJavaSourceFile.getAbsoluteFile().getParentFile(), sourceFile), targetJavaSourceFile, packagename, classname, baseclass, withDialects);
+    }
+    
+    /**
+     * Like generateSQLCodeIfChanged(File, File, ...), with the name of the source file to be given
+     * in the generated code (see Generated.from).
+     */
+    public boolean generateSQLCodeIfChanged(File sourceFile, String srcFileName, File targetJavaSourceFile, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        char source[] = TamunoUtils.loadTextFileChars(sourceFile, "UTF-8");
+        StringWriter out = new StringWriter(source.length * 8);
+        this.generateSQLCode(srcFileName, source, out, packagename, classname, baseclass, withDialects);
+        return TamunoUtils.saveTextFileIfChanged(targetJavaSourceFile, out.toString(), "UTF-8");
+    }
+
+    /**
+     * Returns the GraalVM native-image serialization configuration for the class generated from the
+     * given source, which registers its Row classes. Generated code uses no reflection, so nothing
+     * else needs to be configured. The configuration belongs at nativeImageConfigPath within the
+     * class path, where native-image picks it up by itself.
+     */
+    public String generateNativeImageConfig(char source[], String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException {
+        StringBuilder t = new StringBuilder("[\n");
+        if ((baseclass == null) || (!withDialects)) {
+            String prefix = (packagename.length() == 0) ? classname : packagename + "." + classname;
+            int bounds[] = new int[4];
+            int pos = 0;
+            int count = 0;
+            while (findStatement(source, pos, bounds)) {
+                pos = bounds[3] + 1;
+                SQLGenParseContext ctx = new SQLGenParseContext(baseclass, withDialects);
+                ctx.parse(source, bounds[2], bounds[3], targetTypeMap);
+                if (ctx.outputVarNames.size() > 0) {
+                    t.append((count++ == 0) ? "  " : ",\n  ");
+                    t.append("{\"name\":\"" + prefix + "$" + TamunoUtils.capitalize(new String(source, bounds[0], bounds[1] - bounds[0])) + "Row\"}");
+                }
+            }
+        }
+        return t.append("\n]\n").toString();
+    }
+
+    /**
+     * Writes the native-image configuration for the class generated from the given source file,
+     * but leaves the target file untouched if it already contains that configuration.
+     * @return true if the target file has been written.
+     * @see #generateNativeImageConfig(char[], String, String, String, boolean)
+     */
+    public boolean generateNativeImageConfigIfChanged(File sourceFile, File targetConfigFile, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        char source[] = TamunoUtils.loadTextFileChars(sourceFile, "UTF-8");
+        targetConfigFile.getParentFile().mkdirs();
+        return TamunoUtils.saveTextFileIfChanged(targetConfigFile, generateNativeImageConfig(source, packagename, classname, baseclass, withDialects), "UTF-8");
+    }
+
+    /**
+     * Returns the resource path of the native-image configuration for the given generated class.
+     */
+    public static String nativeImageConfigPath(String packagename, String classname) {
+        return "META-INF/native-image/org.tamuno.sqlgen/" + qualifiedName(packagename, classname) + "/serialization-config.json";
+    }
+
+    private static String qualifiedName(String packagename, String classname) {
+        return ((packagename == null) || (packagename.length() == 0)) ? classname : packagename + "." + classname;
+    }
+
+    /**
+     * If set, runs of whitespace in the SQL templates (outside of quotes and -- comments)
+     * are collapsed into a single space in the generated SQL. Off by default.
+     */
+    public void setCollapseWhitespace(boolean collapseWhitespace) {
+        this.collapseWhitespace = collapseWhitespace;
+    }
+
+    public boolean isCollapseWhitespace() {
+        return collapseWhitespace;
+    }
+    
+    /**
+     * If set, the statements of a source file are generated in parallel on the given pool.
+     * The generator is re-entrant, so a single instance may also be used to generate
+     * several files concurrently. Null (the default) generates statements sequentially.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return pool;
+    }
+
+    /**
+     * If set, the generated code is optimized for the shape counts recorded in the given profile:
+     * The hot shapes of every statement are rendered without evaluating its optional sections, 
+     * and getShapes and getStatements return the most frequently executed first, so they are
+     * warmed up first. Null (the default) generates code independent of any profile.
+     * @see #findUnusedStatements(char[], String, String)
+     */
+    public void setProfile(ShapeProfile profile) {
+        this.profile = profile;
+    }
+
+    public ShapeProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns the names of the statements of the given source which have never been executed
+     * according to the profile, or an empty list if there is no profile.
+     * @param packagename package of the class generated from the source
+     * @param classname the class generated from the source, whose statements are executed
+     */
+    public List<String> findUnusedStatements(char source[], String packagename, String classname) {
+        String qualified = qualifiedName(packagename, classname);
+        ArrayList<String> result = new ArrayList<String>();
+        if (profile != null) {
+            int bounds[] = new int[4];
+            int pos = 0;
+            while (findStatement(source, pos, bounds)) {
+                String name = new String(source, bounds[0], bounds[1] - bounds[0]);
+                if (profile.getCount(ShapeProfile.qualifiedName(qualified, name)) == 0L) {
+                    result.add(name);
+                }
+                pos = bounds[3] + 1;
+            }
+        }
+        return result;
+    }
+    
+    public String generateSQLCode(String srcFileName, String source, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        StringWriter out = new StringWriter(source.length() * 8);
+        generateSQLCode(srcFileName, source.toCharArray(), out, packagename, classname, baseclass, withDialects);
+        return out.toString();
+    }
+    
+    /**
+     * Generates the Java source code for the given SQL Code Generator source, and writes it
+     * to the given Writer as it goes, statement by statement. 
+     * Runs in time linear to the size of the source.
+     * If a ForkJoinPool has been set, the statements are generated in parallel, and written in order.
+     */
+    public void generateSQLCode(String srcFileName, char source[], Writer out, String packagename, String classname, String baseclass, boolean withDialects) throws SQLGenParseException, IOException {
+        out.write("package " + packagename + ";\n");
+        out.write("\n");
+        out.write("import org.tamuno.runtime.sql.*;\nimport org.tamuno.annotations.Generated;\n\n");
+        out.write("import java.sql.Connection;\n");
+        out.write("import java.sql.Statement;\n");
+        out.write("import java.sql.ResultSet;\n");
+        out.write("import java.sql.SQLException;\n");
+        out.write("import java.io.Serializable;\n");
+        
+        out.write("/** SQL Code Generator class\n * generated from " + srcFileName + "\n * please do not edit this file by hand.\n */\n");
+        out.write("@Generated( from=\""+srcFileName.replace("\\", "\\\\").replace("\"", "\\\"")+"\")\n");
+        if (baseclass==null) {
+            out.write("public "+((withDialects) ? "abstract " : "") +"class " + classname + " extends BaseSQLApi { \n\n");
+        } else {
+            out.write("public class " + classname + " extends " + baseclass + " { \n");
+        }
+        String cl = baseclass;
+        if ((baseclass==null) || (!withDialects)) {
+            out.write("protected Executor executor;\n\n");
+        } 
+        if (cl==null) {
+            cl = classname;
+        }
+        if (baseclass==null) {
+            out.write("\tpublic "+classname + "() {\n\t\tsuper();\n\t\tthis.executor = new Executor();\n\t}\n");
+        
+            out.write("\tpublic "+classname + "(Executor executor) {\n\t\tthis.executor = executor;\n\t}\n");
+        } else {
+            out.write("\tpublic "+classname + "() {\n\t\tsuper();\n\t}\n");
+            out.write("\tpublic "+classname + "("+baseclass+".Executor executor) {\n\t\tsuper(executor);\n\t}\n");
+        }
+        String linePrefix = "\t";
+        StringBuilder executor = new StringBuilder();
+        executor.append("public static class Executor extends BaseSQLExecutor {\n\n");
+        ArrayList<StatementTask> tasks = new ArrayList<StatementTask>();
+        
+        // bounds of the current statement: start of name, end of name, start of source, end of source (the ';')
+        int bounds[] = new int[4];
+        int pos = 0;
+        ArrayList<String> statements = new ArrayList<String>();
+        while (findStatement(source, pos, bounds)) {
+            StatementTask task = new StatementTask(source, bounds.clone(), qualifiedName(packagename, classname), baseclass, withDialects, linePrefix);
+            if (pool == null) {
+                task.compute();
+                task.writeTo(out, executor, statements);
+            } else {
+                // Fork only within the configured pool, not any other one the caller runs in
+                if (ForkJoinTask.getPool() == pool) {
+                    task.fork();
+                } else {
+                    pool.execute(task);
+                }
+                tasks.add(task);
+            }
+            pos = bounds[3] + 1;
+        }
+        for (StatementTask task : tasks) {
+            task.join();
+            task.writeTo(out, executor, statements);
+        }
+        executor.append("\n}\n\n");
+        if ((baseclass==null) || (!withDialects)) {
+            out.write(linePrefix + "public ShapedStatement[] getStatements() {\n");
+            out.write(linePrefix + "\treturn new ShapedStatement[] {");
+            if (profile != null) {
+                final String qualified = qualifiedName(packagename, classname);
+                // The most frequently executed first, for warm-up
+                Collections.sort(statements, new Comparator<String>() {
+                    public int compare(String a, String b) {
+                        long ca = profile.getCount(ShapeProfile.qualifiedName(qualified, a));
+                        long cb = profile.getCount(ShapeProfile.qualifiedName(qualified, b));
+                        return (ca == cb) ? 0 : ((ca > cb) ? -1 : 1);
+                    }
+                });
+            }
+            for (int i = 0; i < statements.size(); i++) {
+                out.write(((i > 0) ? ", " : "") + statements.get(i) + "()");
+            }
+            out.write("};\n");
+            out.write(linePrefix + "}\n\n");
+            out.append(executor);
+        }
+        out.write("}\n");
+    }
+    
+    /**
+     * Generates the code of a single statement, given the bounds found by findStatement.
+     * The executor wrappers of the statement are collected in the context.
+     */
+    private String generateStatement(SQLGenParseContext ctx, char source[], int bounds[], String linePrefix) throws SQLGenParseException {
+        String name = new String(source, bounds[0], bounds[1] - bounds[0]);
+        int srcStart = bounds[2];
+        int srcEnd = bounds[3];
+        // trim
+        while ((srcStart < srcEnd) && (source[srcStart] <= ' ')) {
+            srcStart++;
+        }
+        while ((srcEnd > srcStart) && (source[srcEnd - 1] <= ' ')) {
+            srcEnd--;
+        }
+        ctx.parse(source, srcStart, srcEnd, targetTypeMap);
+        StringBuilder result = new StringBuilder();
+        result.append(linePrefix + "// Start of code for " + name + "\n");
+        result.append(linePrefix + "/** \n");
+        int lineStart = bounds[0];
+        for (int i = bounds[0]; i <= bounds[3]; i++) {
+            if ((source[i] == '\n') || (i == bounds[3])) {
+                int lineEnd = (source[i] == '\n') ? i : i + 1;
+                result.append(linePrefix + " * ");
+                result.append(source, lineStart, lineEnd - lineStart);
+                result.append("\n");
+                lineStart = i + 1;
+            }
+        }
+        result.append(linePrefix + " */\n");
+        result.append(createType(ctx, name, true, linePrefix));
+        
+        result.append("\n");
+        result.append(createSimpleFactoryMethod(ctx, name,linePrefix));
+        result.append(createCompleteFactoryMethod(ctx, name,linePrefix));
+        
+        
+        result.append("\n");
+        if ((ctx.baseclass==null) || (!ctx.withDialects)) {
+            if (ctx.outputVarNames.size() > 0) {
+                result.append(createResultType(ctx, name, true, linePrefix));
+                result.append("\n");
+            } 
+            result.append("\n");
+        }
+        result.append(linePrefix + "// End of code for " + name + "\n\n");
+        return result.toString();
+    }
+    
+    /**
+     * Generates a single statement, possibly in parallel to other statements.
+     */
+    private class StatementTask extends RecursiveTask<String> {
+        private final SQLGenParseContext ctx;
+        private final char source[];
+        private final int bounds[];
+        private final String linePrefix;
+        private SQLGenParseException parseException;
+        private String code;
+        
+        StatementTask(char source[], int bounds[], String classname, String baseclass, boolean withDialects, String linePrefix) {
+            this.ctx = new SQLGenParseContext(baseclass, withDialects);
+            this.ctx.classname = classname;
+            this.source = source;
+            this.bounds = bounds;
+            this.linePrefix = linePrefix;
+        }
+
+        @Override
+        protected String compute() {
+            try {
+                code = generateStatement(ctx, source, bounds, linePrefix);
+            } catch (SQLGenParseException ex) {
+                parseException = ex;
+            }
+            return code;
+        }
+        
+        /**
+         * Writes the generated code, and adds the statement to the given names of shaped statements, 
+         * unless it has too many input variables for shapes.
+         */
+        void writeTo(Writer out, StringBuilder executor, List<String> statements) throws SQLGenParseException, IOException {
+            if (parseException != null) {
+                throw parseException;
+            }
+            out.write(code);
+            executor.append(ctx.executor);
+            if (!ctx.isWide()) {
+                statements.add(new String(source, bounds[0], bounds[1] - bounds[0]));
+            }
+        }
+    }
+    
+    /**
+     * Finds the next statement of the form name:=source; in the given SQL Code Generator source,
+     * beginning at the given position. The name has to start at the beginning of a line, 
+     * the terminating semicolon has to be followed by a newline or the end of the source.
+     * @param bounds receives start and end of the name, and start and end of the statement source.
+     *               bounds[3] is the position of the terminating semicolon.
+     * @return true if a statement was found.
+     */
+    static boolean findStatement(char source[], int pos, int bounds[]) {
+        int len = source.length;
+        while (pos < len) {
+            // pos is at the start of a line
+            int p = pos;
+            while ((p < len) && (TamunoUtils.bitfieldGet(identifierSet, source[p]) != 0)) {
+                p++;
+            }
+            if ((p > pos) && (p + 1 < len) && (source[p] == ':') && (source[p + 1] == '=')) {
+                int end = findTerminator(source, p + 2);
+                if (end < 0) {
+                    // No terminator means that there can not be any further statement
+                    return false;
+                }
+                bounds[0] = pos;
+                bounds[1] = p;
+                bounds[2] = p + 2;
+                bounds[3] = end;
+                return true;
+            }
+            // skip to the start of the next line
+            while ((p < len) && (source[p] != '\n') && (source[p] != '\r')) {
+                p++;
+            }
+            pos = p + 1;
+        }
+        return false;
+    }
+    
+    /**
+     * Returns the position of the next semicolon which is followed by a line break or the end of the source.
+     */
+    private static int findTerminator(char source[], int pos) {
+        int len = source.length;
+        for (int i = pos; i < len; i++) {
+            if ((source[i] == ';') && ((i + 1 == len) || (source[i + 1] == '\n') || (source[i + 1] == '\r'))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    public synchronized String createSimpleFactoryMethod(String basename, String linePrefix) {
+        return createSimpleFactoryMethod(current, basename, linePrefix);
+    }
+    
+    public synchronized String createCompleteFactoryMethod(String basename, String linePrefix) {
+        return createCompleteFactoryMethod(current, basename, linePrefix);
+    }
+    
+    private void addExecutionWrappers(SQLGenParseContext ctx, String basename, String linePrefix, boolean withQuery) {
+        String capname = TamunoUtils.capitalize(basename);
+        ctx.executor.append("\n\n");
+        ctx.executor.append(linePrefix + "protected int executeUpdate(Statement st, "+capname+" sql) throws SQLException {\n");
+        ctx.executor.append(linePrefix + "\treturn executeUpdate(st, (Object) sql);\n");
+        ctx.executor.append(linePrefix + "}\n\n");
+        if (withQuery) {
+            ctx.executor.append(linePrefix + "protected ResultSet executeQuery(Statement st, "+capname+" sql) throws SQLException{\n");
+            ctx.executor.append(linePrefix + "\treturn executeQuery(st, (Object) sql);\n");
+            ctx.executor.append(linePrefix + "}\n\n");
+        }
+    }
+    
+    private String createSimpleFactoryMethod(SQLGenParseContext ctx, String basename, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        String capname = TamunoUtils.capitalize(basename);
+        if ((ctx.baseclass==null) || (!ctx.withDialects)) {
+            t.append(linePrefix + "public "+((ctx.withDialects) ? " abstract " : "") + capname+" "+basename+"()");
+        } else {
+            t.append(linePrefix + "public "+ctx.baseclass+"."+capname+" "+basename+"()");
+        }
+        if ((ctx.baseclass==null) && (ctx.withDialects)) {
+            t.append(";\n"); // abstract
+        } else {
+            t.append(" {\n");
+            t.append(linePrefix + "\treturn new " +capname+"();\n");
+            t.append(linePrefix + "}\n\n");
+        }
+        return t.toString();
+    }
+    
+    private String createCompleteFactoryMethod(SQLGenParseContext ctx, String basename, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        String capname = TamunoUtils.capitalize(basename);
+        if ((ctx.baseclass==null) || (!ctx.withDialects)) {
+            t.append(linePrefix + "public "+((ctx.withDialects) ? " abstract " : "") +capname+" "+basename+"(");
+        } else {
+            t.append(linePrefix + "public "+ctx.baseclass+"."+capname+" "+basename+"(");
+        }
+        int pc = 0;
+        for (int i = 0; i < ctx.allInputVars.size(); i++) {
+            SQLGenToken tok = ctx.allInputVars.get(i);
+            String typeInfo[] = targetTypeMap.get(tok.vartype);
+            if (pc++>0) {
+                t.append(", ");
+            }
+            t.append(typeInfo[2] + " " + tok.value() + "");
+            
+        }
+        if (pc==0) {
+            return "";
+        }
+        if ((ctx.baseclass==null) && (ctx.withDialects)) {
+            t.append(");\n"); // abstract
+        } else {      
+            t.append(") {\n");
+            t.append(linePrefix + "\t"+capname+" result = new " + capname+"();\n");
+            for (int i = 0; i < ctx.tokens.size(); i++) {
+                SQLGenToken tok = ctx.tokens.get(i);
+                if ((tok.type != ESCAPED_VAR) && (tok.type != LITERAL_VAR)) {
+                    continue;
+                }
+                String typeInfo[] = targetTypeMap.get(tok.vartype);
+                t.append(linePrefix +"\tresult."+tok.value() + "=" + tok.value()+";\n");
+            }
+            t.append(linePrefix +"\treturn result;\n");
+            t.append(linePrefix + "}\n\n");
+        }
+        return t.toString();
+    }
+    
+    /**
+     * Parses a given String, which contains syntactic elements of our SQL Generator Language.
+     * the results of this parse operation are stored in this SqlGenParser Object and can
+     * be used to create java source code through the createResultType, createParamType and
+     * createSQLGeneratorMethod methods.
+     * 
+     * @param str SQL intermixed with elements of the SQL Generator Language.
+     * @throws org.tamuno.sqlgen.SQLGenParseException
+     * @see #createResultType
+     * @see #createParamType
+     * @see #createSQLGeneratorMethod
+     */
+    public synchronized void parseString(String str) throws SQLGenParseException {
+        char source[] = str.toCharArray();
+        current = new SQLGenParseContext(null, false);
+        current.parse(source, 0, source.length, targetTypeMap);
+    }
+    
+    /**
+     * Creates java source code for the result of the parsed SQL Query (if applicable)
+     * @param basename base class name. Will be used to create the classname for the result type
+     *                 which will get the Appendix 'Result'
+     * @param isStatic Should the class be declared static ? Yes or no
+     * @param linePrefix Indentation of the source code.
+     * @return Java source code for the generated class. Usually used as an inner class.
+     */
+    public synchronized String createResultType(String basename, boolean isStatic, String linePrefix) {
+        return createResultType(current, basename, isStatic, linePrefix);
+    }
+
+    private String createResultType(SQLGenParseContext ctx, String basename, boolean isStatic, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        t.append(linePrefix);
+        String capname = TamunoUtils.capitalize(basename);
+        t.append("public static class " + capname + "Row implements TypedRow, Cloneable, Serializable {\n");
+        t.append(linePrefix + "\tprivate static final long serialVersionUID = 1L;\n");
+        for (int i = 0; i < ctx.tokens.size(); i++) {
+            SQLGenToken tok = ctx.tokens.get(i);
+            if (tok.type != TARGET_VAR) {
+                continue;
+            }
+            String typeInfo[] = targetTypeMap.get(tok.vartype);
+            t.append(linePrefix + "\tpublic " + typeInfo[0] + " " + tok.value() + ";\n");
+        }
+        t.append("\n");
+        t.append(createComparators(ctx, capname + "Row", linePrefix + "\t"));
+        t.append(linePrefix + "\tpublic void loadResultSetRow(java.sql.ResultSet rs) throws java.sql.SQLException {\n");
+        int vidx = 1;
+        for (int i = 0; i < ctx.tokens.size(); i++) {
+            SQLGenToken tok = ctx.tokens.get(i);
+            if (tok.type != TARGET_VAR) {
+                continue;
+            }
+            String typeInfo[] = targetTypeMap.get(tok.vartype);
+            t.append(linePrefix + "\t\t" + tok.value() + "=rs." + typeInfo[1] + "(" + (vidx++) + ");\n");
+        }
+        t.append(linePrefix + "\t}\n\n");
+        t.append(linePrefix + "\tpublic Object clone() {\n"+linePrefix + "\t\ttry {\n"+linePrefix+"\t\t\treturn super.clone();\n"+linePrefix+"\t\t} catch (CloneNotSupportedException cns) {\n"+linePrefix+"\t\t\tcns.printStackTrace();\n"+linePrefix+"\t\t\treturn null;\n"+linePrefix+"\t\t}\n"+linePrefix+"\t}\n\n");
+        t.append(linePrefix + "}\n");
+        return t.toString();
+    }
+
+    /**
+     * Creates a Comparator constant for each comparable column of a Row class, which orders like 
+     * ORDER BY on that column with a binary collation and NULLS FIRST (see RowComparators).
+     */
+    private static String createComparators(SQLGenParseContext ctx, String rowClass, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        HashSet<String> names = new HashSet<String>();
+        for (SQLGenToken tok : ctx.tokens) {
+            if (tok.type != TARGET_VAR) {
+                continue;
+            }
+            String compare = comparatorMap.get(tok.vartype);
+            String name = "BY_" + tok.value().toUpperCase();
+            if ((compare == null) || (!names.add(name))) {
+                continue;
+            }
+            t.append(linePrefix + "public static final java.util.Comparator<" + rowClass + "> " + name + " = new java.util.Comparator<" + rowClass + ">() {\n");
+            t.append(linePrefix + "\tpublic int compare(" + rowClass + " a, " + rowClass + " b) {\n");
+            t.append(linePrefix + "\t\treturn " + compare + "(a." + tok.value() + ", b." + tok.value() + ");\n");
+            t.append(linePrefix + "\t}\n");
+            t.append(linePrefix + "};\n\n");
+        }
+        return t.toString();
+    }
+
+    /**
+     * Creates java source code for the parameters of the parsed SQL Query (if applicable)
+     * @param basename base class name. Will be used to create the classname for the result type
+     *                 which will get the Appendix 'Params'
+     * @param isStatic Should the class be declared static ? Yes or no
+     * @param linePrefix Indentation of the source code.
+     * @return Java source code for the generated class. 
+     */
+    public synchronized String createType(String basename, boolean isStatic, String linePrefix) {
+        return createType(current, basename, isStatic, linePrefix);
+    }
+
+    private String createType(SQLGenParseContext ctx, String basename, boolean isStatic, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        t.append(linePrefix);
+        t.append("public ");
+
+        String capname = TamunoUtils.capitalize(basename);
+        if ((ctx.baseclass!=null) && (ctx.withDialects)) {
+            t.append(" class " + capname + " extends "+ctx.baseclass+"."+capname+" implements Cloneable, Serializable {\n");
+        } else {
+            t.append(" class " + capname + " implements " + (ctx.isWide() ? "RoutableStatement, " : "ShapedStatement, ") + "Cloneable, Serializable {\n");
+        }
+        t.append(linePrefix + "\tprivate static final long serialVersionUID = 1L;\n");
+        if ((ctx.baseclass==null) || (!ctx.withDialects)) {
+            for (int i = 0; i < ctx.allInputVars.size(); i++) {
+                SQLGenToken tok = ctx.allInputVars.get(i);
+                String typeInfo[] = targetTypeMap.get(tok.vartype);
+                if (typeInfo==null) {
+                    throw new RuntimeException("Unknown variable type: "+ tok.vartype + " of variable "+tok.value());
+                }
+                t.append(linePrefix + "\tpublic " + typeInfo[2] + " " + tok.value() + " = null;\n");
+            }
+            t.append("\n");
+            if (ctx.isWide()) {
+                // One bit per input variable in a long[], as they do not fit into a single long
+                t.append(linePrefix + "\tpublic long[] calcAvailableParamsBitset() {\n");
+                t.append(linePrefix + "\t\t" + "long result[] = new long[" + ((ctx.allInputVars.size() + 63) / 64) + "];\n");
+            } else {
+                t.append(linePrefix + "\tpublic long calcAvailableParamsBitset() {\n");
+                t.append(linePrefix + "\t\t" + "long result = 0L;\n");
+            }
+            long mask = 1;
+            for (int i = 0; i < ctx.allInputVars.size(); i++) {
+                SQLGenToken tok = ctx.allInputVars.get(i);
+                String typeInfo[] = targetTypeMap.get(tok.vartype);
+                t.append(linePrefix + "\t\tif (" + tok.value() + "!=null) {\n");
+                t.append(linePrefix + "\t\t\tresult" + (ctx.isWide() ? "[" + (i / 64) + "]" : "") + " |= " + Long.toString(mask) + "L;\n");
+                t.append(linePrefix + "\t\t}\n");
+                mask = (mask << 1) | (mask >>> 63);
+            }
+            t.append(linePrefix + "\t\treturn result;\n");
+
+            t.append(linePrefix + "\t}\n\n");
+
+            for (int i = 0; i < ctx.allInputVars.size(); i++) {
+                SQLGenToken tok = ctx.allInputVars.get(i);
+                String typeInfo[] = targetTypeMap.get(tok.vartype);
+                t.append(linePrefix + "\tpublic "+ capname+" "+tok.value() +"("+typeInfo[2] + " value) {\n");
+                t.append(linePrefix + "\t\t"+tok.value()+" = value;\n");
+                t.append(linePrefix + "\t\treturn this;\n"+linePrefix+"\t}\n\n");
+            }
+            t.append(createInputValueMethods(ctx, basename, linePrefix + "\t"));
+            if (!ctx.isWide()) {
+                t.append(createShapeMethods(ctx, basename, linePrefix + "\t"));
+            }
+            t.append(linePrefix + "\tpublic int execute() throws SQLException {\n");
+            t.append(linePrefix +"\t\treturn this.execute(getConnection(this).createStatement());\n");
+            t.append(linePrefix +"\t}\n\n");
+
+            t.append(linePrefix + "\tpublic int execute(java.sql.Statement st) throws SQLException {\n");
+            t.append(linePrefix + "\t\treturn executor.executeUpdate(st, this);\n");
+            t.append(linePrefix + "\t}\n\n");
+            if (ctx.outputVarNames.size()>0) {
+                t.append(linePrefix + "\tpublic RowIterator<"+capname+"Row> query() throws SQLException {\n");
+                t.append(linePrefix +"\t\treturn this.query(getConnection(this).createStatement());\n");
+                t.append(linePrefix +"\t}\n\n");
+
+                t.append(linePrefix + "\tpublic RowIterator<"+capname+"Row> query(java.sql.Statement st) throws SQLException {\n");
+                t.append(linePrefix + "\t\treturn new RowIterator<"+capname+"Row>(executor.executeQuery(st, this), new "+capname+ "Row());\n");
+                t.append(linePrefix + "\t}\n\n");
+                addExecutionWrappers(ctx, capname, linePrefix, true);
+            } else {
+                addExecutionWrappers(ctx, capname, linePrefix, false);
+            }
+        }
+        if ((ctx.baseclass!=null) || (!ctx.withDialects)) {
+            t.append(createSQLGeneratorMethod(ctx, basename, linePrefix+"\t"));
+        }
+        t.append("\n");
+        
+        t.append(linePrefix + "}\n");
+        t.append(linePrefix + "\n");
+        return t.toString();
+    }
+
+    /**
+     * Generates the methods of RoutableStatement, which name the statement, tell whether it may
+     * run on a replica, and read the input variables by name.
+     */
+    private static String createInputValueMethods(SQLGenParseContext ctx, String basename, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        t.append(linePrefix + "public String getStatementName() {\n");
+        t.append(linePrefix + "\treturn \"" + basename + "\";\n");
+        t.append(linePrefix + "}\n\n");
+        t.append(linePrefix + "public boolean isReadOnly() {\n");
+        t.append(linePrefix + "\treturn " + ctx.isReadOnly() + ";\n");
+        t.append(linePrefix + "}\n\n");
+        t.append(linePrefix + "public Object getInputValue(String name) {\n");
+        if (ctx.allInputVars.size() > 0) {
+            t.append(linePrefix + "\tswitch (name) {\n");
+            for (SQLGenToken tok : ctx.allInputVars) {
+                t.append(linePrefix + "\t\tcase \"" + tok.value() + "\":\n");
+                t.append(linePrefix + "\t\t\treturn this." + tok.value() + ";\n");
+            }
+            t.append(linePrefix + "\t}\n");
+        }
+        t.append(linePrefix + "\treturn null;\n");
+        t.append(linePrefix + "}\n\n");
+        return t.toString();
+    }
+
+    /**
+     * Generates the methods of ShapedStatement, with the shapes enumerated by SQLTemplate.getShapes,
+     * ordered by the profile if there is one.
+     */
+    private String createShapeMethods(SQLGenParseContext ctx, String basename, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        String capname = TamunoUtils.capitalize(basename);
+        t.append(linePrefix + "public long[] getShapes() {\n");
+        t.append(linePrefix + "\treturn new long[] {");
+        SQLTemplate template = SQLTemplate.of(ctx, collapseWhitespace);
+        long shapes[] = template.getShapes();
+        if (profile != null) {
+            shapes = sortShapesByProfile(template, ShapeProfile.qualifiedName(ctx.classname, basename), shapes);
+        }
+        for (int i = 0; i < shapes.length; i++) {
+            t.append((i > 0) ? ", " : "").append(shapes[i]).append('L');
+        }
+        t.append("};\n");
+        t.append(linePrefix + "}\n\n");
+        t.append(linePrefix + "public " + capname + " forShape(long shape) {\n");
+        t.append(linePrefix + "\t" + capname + " result;\n");
+        t.append(linePrefix + "\ttry {\n");
+        t.append(linePrefix + "\t\tresult = (" + capname + ") super.clone();\n");
+        t.append(linePrefix + "\t} catch (CloneNotSupportedException cns) {\n");
+        t.append(linePrefix + "\t\tthrow new IllegalStateException(cns);\n");
+        t.append(linePrefix + "\t}\n");
+        long mask = 1;
+        for (int i = 0; i < ctx.allInputVars.size(); i++) {
+            SQLGenToken tok = ctx.allInputVars.get(i);
+            String typeInfo[] = targetTypeMap.get(tok.vartype);
+            t.append(linePrefix + "\tresult." + tok.value() + " = ((shape & " + mask + "L)!=0L) ? sampleValue(" + typeInfo[2] + ".class) : null;\n");
+            mask <<= 1;
+        }
+        t.append(linePrefix + "\treturn result;\n");
+        t.append(linePrefix + "}\n\n");
+        return t.toString();
+    }
+
+    /**
+     * Returns the given shapes, the most frequently executed first. The counts of all recorded
+     * bitsets which render the same SQL shape are added up.
+     */
+    private long[] sortShapesByProfile(SQLTemplate template, String basename, long shapes[]) {
+        final HashMap<String, Long> counts = new HashMap<String, Long>();
+        for (long shape : profiledShapes(template, basename)) {
+            String key = template.plan(shape).key();
+            Long count = counts.get(key);
+            counts.put(key, ((count == null) ? 0L : count) + profile.getCount(basename, shape));
+        }
+        final HashMap<Long, Long> shapeCounts = new HashMap<Long, Long>();
+        ArrayList<Long> sorted = new ArrayList<Long>();
+        for (long shape : shapes) {
+            Long count = counts.get(template.plan(shape).key());
+            shapeCounts.put(shape, (count == null) ? 0L : count);
+            sorted.add(shape);
+        }
+        Collections.sort(sorted, new Comparator<Long>() {
+            public int compare(Long a, Long b) {
+                long ca = shapeCounts.get(a);
+                long cb = shapeCounts.get(b);
+                return (ca == cb) ? 0 : ((ca > cb) ? -1 : 1);
+            }
+        });
+        long result[] = new long[shapes.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sorted.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the recorded shapes of the given statement which are valid for its current source, 
+     * the most frequently executed first. A profile may be outdated, so shapes with unknown or 
+     * without required variables are left out.
+     */
+    private List<Long> profiledShapes(SQLTemplate template, String basename) {
+        ArrayList<Long> result = new ArrayList<Long>();
+        int count = template.getParameterNames().length;
+        long all = (count == 64) ? -1L : (1L << count) - 1;
+        for (long shape : profile.getShapes(basename)) {
+            if (((shape & ~all) == 0L) && ((shape & template.getRequiredParameters()) == template.getRequiredParameters())) {
+                result.add(shape);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the profiled shapes of the given statement which are pre-rendered: The most frequently
+     * executed ones, until they account for HOT_SHAPE_COVERAGE percent of all its executions, 
+     * but no more than MAX_HOT_SHAPES.
+     */
+    private List<Long> hotShapes(SQLTemplate template, String basename) {
+        List<Long> result = new ArrayList<Long>();
+        if (profile == null) {
+            return result;
+        }
+        long total = profile.getCount(basename);
+        long covered = 0L;
+        for (long shape : profiledShapes(template, basename)) {
+            if ((result.size() == MAX_HOT_SHAPES) || (covered * 100 >= total * HOT_SHAPE_COVERAGE)) {
+                break;
+            }
+            result.add(shape);
+            covered += profile.getCount(basename, shape);
+        }
+        return result;
+    }
+
+    /**
+     * Generates the code rendering a single shape of a statement, straight from the texts
+     * and parameters of its plan.
+     */
+    private void addShapeCode(SQLGenParseContext ctx, StringBuilder t, SQLTemplate.Plan plan, String linePrefix) {
+        for (int i = 0; i < plan.parameters.length; i++) {
+            if (plan.texts[i].length() > 0) {
+                t.append(linePrefix + "result.append(\"" + TamunoUtils.escapeJavaString(plan.texts[i]) + "\");\n");
+            }
+            SQLTemplate.Parameter p = plan.parameters[i];
+            SQLGenToken tok = ctx.allInputVars.get(p.index);
+            if (p.escaped) {
+                t.append(linePrefix + "sqlDialectUtil.appendEscaped(result, this." + tok.value() + ");\n");
+            } else {
+                String typeInfo[] = targetTypeMap.get(tok.vartype);
+                if (primitiveTypes.contains(typeInfo[0])) {
+                    t.append(linePrefix + "result.append((" + typeInfo[0] + ") this." + tok.value() + ");\n");
+                } else {
+                    t.append(linePrefix + "result.append(this." + tok.value() + ");\n");
+                }
+            }
+        }
+        t.append(linePrefix + "return result.append(\"" + TamunoUtils.escapeJavaString(plan.texts[plan.parameters.length]) + "\");\n");
+    }
+
+    /**
+     * Generates Java source: A method, which will create a plain SQL String,
+     * given type safe arguments in a type which has been generated via createParamType() above.
+     * 
+     * The SQL is rendered by a generated renderTo(StringBuilder) method, which appends to a
+     * caller-supplied buffer. The generated toString() renders into a reused per-thread buffer
+     * (see RenderBuffers), so it allocates nothing but the resulting String.
+     * 
+     * Executing the given SQL will usually produce a result set which can be parsed by the
+     * type generated by createResultType()
+     * @param baseName
+     * @param isStatic
+     * @param linePrefix
+     * @return Java source code of the generated method.
+     */
+    public synchronized String createSQLGeneratorMethod(String baseName, String linePrefix) {
+        return createSQLGeneratorMethod(current, baseName, linePrefix);
+    }
+
+    private String createSQLGeneratorMethod(SQLGenParseContext ctx, String baseName, String linePrefix) {
+        StringBuilder t = new StringBuilder();
+        ctx.subresultIdx = 0;
+        SQLGenExpression root = ctx.allExpressions.get(0);
+        if ((ctx.allInputVars.size()==0) && (root.subExpressions.size()==0)) {
+            // Fully static statement: the SQL is a compile time constant.
+            String sql = plainText(ctx, root.startTokenIndex, root.stopTokenIndex);
+            t.append(linePrefix + "public static final String SQL = \"" + TamunoUtils.escapeJavaString(sql) + "\";\n\n");
+            t.append(linePrefix + "public StringBuilder renderTo(StringBuilder result) {\n");
+            t.append(linePrefix + "\treturn result.append(SQL);\n");
+            t.append(linePrefix + "}\n\n");
+            t.append(linePrefix + "public String toString() {\n");
+            t.append(linePrefix + "\treturn SQL;\n");
+            t.append(linePrefix + "}\n");
+            return t.toString();
+        }
+        t.append(linePrefix + "public StringBuilder renderTo(StringBuilder result) {\n");
+        if (ctx.allInputVars.size()>0) {
+            t.append(linePrefix + "\t");
+            t.append(ctx.isWide() ? "long available[] = this.calcAvailableParamsBitset();\n" : "long available = this.calcAvailableParamsBitset();\n");
+            if (!root.requiredInputVars.isEmpty()) {
+                t.append(linePrefix + "\t");
+                if (ctx.isWide()) {
+                    t.append("if (!(" + maskCondition(ctx, root.requiredInputVars, false) + ")) {\n");
+                } else {
+                    t.append("if ((available & " + root.requiredMask() + "L)!=" + root.requiredMask() + "L) {\n");
+                }
+                t.append(linePrefix + "\t\t");
+                t.append("throw new IllegalArgumentException(\"Missing required arguments\");\n");
+                t.append(linePrefix + "\t}\n");
+            }
+        }
+        t.append(linePrefix + "\tresult.ensureCapacity(result.length() + " + estimateMaxLength(ctx) + ");\n");
+        if ((profile != null) && (ctx.allInputVars.size() > 0) && (!ctx.isWide())) {
+            SQLTemplate template = SQLTemplate.of(ctx, collapseWhitespace);
+            for (long shape : hotShapes(template, ShapeProfile.qualifiedName(ctx.classname, baseName))) {
+                t.append(linePrefix + "\tif (available == " + shape + "L) {\n");
+                addShapeCode(ctx, t, template.plan(shape), linePrefix + "\t\t");
+                t.append(linePrefix + "\t}\n");
+            }
+        }
+        t.append(linePrefix + "\t");
+        t.append("boolean combine = false;\n");
+        
+        addSQLExpressionGeneratorCode(ctx, t, root, false, linePrefix + "\t", 0, "result", null, "combine");
+        t.append(linePrefix + "\treturn result;\n");
+        t.append(linePrefix + "}\n\n");
+        t.append(linePrefix + "public String toString() {\n");
+        t.append(linePrefix + "\treturn RenderBuffers.release(renderTo(RenderBuffers.acquire()));\n");
+        t.append(linePrefix + "}\n");
+        return t.toString();
+    }
+    
+    /**
+     * Estimates the length of the longest SQL the current statement can render:
+     * All of its literal text, plus 16 characters for each input variable occurrence.
+     */
+    private int estimateMaxLength(SQLGenParseContext ctx) {
+        int len = 0;
+        for (SQLGenToken tok : ctx.tokens) {
+            switch (tok.type) {
+                case LITERAL:
+                case TARGET_VAR:
+                    len += tok.length();
+                    break;
+                case LITERAL_VAR:
+                case ESCAPED_VAR:
+                    len += 16;
+                    break;
+            }
+        }
+        return len;
+    }
+
+    private void addSQLExpressionGeneratorCode(SQLGenParseContext ctx, StringBuilder t, SQLGenExpression expr, boolean checkCondition, String linePrefix, int depth, String resultVar, String altFlag, String combineFlag) {
+        String oldLinePrefix = linePrefix;
+        String oldAltFlag = altFlag;
+        String oldCombineFlag = combineFlag;
+        if (expr.stopCombiner) {
+            t.append(linePrefix + combineFlag + " = false;\n");
+            return;
+        }
+        if (expr.requiredInputVars.isEmpty()) {
+            checkCondition = expr.combiner;
+        }
+        
+        if ((!expr.alternative) && (!expr.combiner)) {
+            if (checkCondition) {
+                t.append(linePrefix + "if (" + maskCondition(ctx, expr.requiredInputVars, false) + ") {\n");
+                linePrefix = linePrefix + "\t";
+            }
+            if (altFlag != null) {
+                t.append(linePrefix + altFlag + "=true;\n");
+            }
+        } else if (expr.alternative) {
+            if (checkCondition) {
+                t.append(linePrefix + "if (" + maskCondition(ctx, expr.requiredInputVars, true) + ") {\n");
+                linePrefix = linePrefix + "\t";
+            }
+        } else if (expr.combiner) { 
+             if (expr.requiredInputVars.isEmpty()) { 
+                 t.append(linePrefix + "if ("+oldCombineFlag+") {\n");
+             } else {
+                 t.append(linePrefix + " if (("+oldCombineFlag+") && (" + maskCondition(ctx, expr.requiredInputVars, false) + ")) {\n");
+             }
+             linePrefix = linePrefix + "\t";
+        }
+        String subStart = null;
+        if (expr.alternative) {
+            // Alternative sections are rendered in place, and cut off again if none of their content was used.
+            ctx.subresultIdx++;
+            altFlag = "altFlag" + ctx.subresultIdx;
+            subStart = "subStart" + ctx.subresultIdx;
+            combineFlag = "combine" + ctx.subresultIdx;
+            
+            t.append(linePrefix + "int " + subStart + " = " + resultVar + ".length();\n");
+            t.append(linePrefix + "boolean " + altFlag + " = false;\n");
+            t.append(linePrefix + "boolean "+ combineFlag+" = false;\n");
+        }
+        int pos = expr.startTokenIndex;
+        for (SQLGenExpression nextSubexpression : expr.subExpressions) {
+            addPlainCode(ctx, t, pos, nextSubexpression.startTokenIndex, linePrefix, resultVar);
+            addSQLExpressionGeneratorCode(ctx, t, nextSubexpression, true, linePrefix, depth + 1, resultVar, altFlag, combineFlag);
+            pos = nextSubexpression.stopTokenIndex + 1;
+        }
+        addPlainCode(ctx, t, pos, expr.stopTokenIndex, linePrefix, resultVar);
+        if (!expr.alternative) {
+            if (expr.combiner) {
+                t.append(linePrefix + oldCombineFlag +" = false;\n");
+            } else {
+                t.append(linePrefix  + oldCombineFlag +" = true;\n");
+            }
+            if (checkCondition) {
+                t.append(oldLinePrefix + "}\n");
+            }
+        } else {
+            t.append(linePrefix + "if (" + altFlag + ") {\n");
+            if (oldAltFlag != null) {
+                t.append(linePrefix + "\t" + oldAltFlag + "=true;\n");
+            }
+            t.append(linePrefix+ "\t"+oldCombineFlag+" = true;\n");
+            t.append(linePrefix + "} else {\n");
+            t.append(linePrefix + "\t" + resultVar + ".setLength(" + subStart + ");\n");
+            t.append(linePrefix + "}\n");
+            
+            if (checkCondition) {
+                if (expr.optional) {
+                    t.append(oldLinePrefix + "}\n");
+                } 
+            }
+        }
+    }
+
+    /**
+     * Returns the condition that all (or with any set, any) of the given input variables are available.
+     * Statements with up to 64 input variables test a single long, wider ones only the words of
+     * their long[] which contain any of the variables.
+     */
+    private static String maskCondition(SQLGenParseContext ctx, BitSet vars, boolean any) {
+        if (!ctx.isWide()) {
+            long mask = vars.isEmpty() ? 0L : vars.toLongArray()[0];
+            return "(available & " + mask + "L)" + (any ? "!=0L" : "==" + mask + "L");
+        }
+        StringBuilder t = new StringBuilder();
+        long words[] = vars.toLongArray();
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0L) {
+                if (t.length() > 0) {
+                    t.append(any ? " || " : " && ");
+                }
+                t.append("((available[" + i + "] & " + words[i] + "L)" + (any ? "!=0L" : "==" + words[i] + "L") + ")");
+            }
+        }
+        return t.toString();
+    }
+
+    /**
+     * Adds the code to render the tokens from startToken (inclusive) to stopToken (exclusive).
+     * Adjacent literals and output variable names are folded into a single string constant.
+     */
+    private void addPlainCode(SQLGenParseContext ctx, StringBuilder t, int startToken, int stopToken, String linePrefix, String resultVar) {
+        StringBuilder literal = new StringBuilder();
+        for (int p = startToken; p < stopToken; p++) {
+            SQLGenToken tok = ctx.tokens.get(p);
+            switch (tok.type) {
+                case LITERAL:
+                case TARGET_VAR:
+                    tok.appendTo(literal);
+                    break;
+                case LITERAL_VAR:
+                    addLiteralCode(t, literal, linePrefix, resultVar);
+                    String typeInfo[] = targetTypeMap.get(tok.vartype);
+                    if (primitiveTypes.contains(typeInfo[0])) {
+                        // Unbox, so primitives get appended without creating a String first
+                        t.append(linePrefix + resultVar + ".append((" + typeInfo[0] + ") this." + tok.value() + ");\n");
+                    } else {
+                        t.append(linePrefix + resultVar + ".append(this." + tok.value() + ");\n");
+                    }
+                    break;
+                case ESCAPED_VAR:
+                    addLiteralCode(t, literal, linePrefix, resultVar);
+                    t.append(linePrefix + "sqlDialectUtil.appendEscaped(" + resultVar + ", this." + tok.value() + ");\n");
+                    break;
+                case OPTION_VAR:
+                    // Do nothing .. 
+                    break;
+            }
+        }
+        addLiteralCode(t, literal, linePrefix, resultVar);
+    }
+    
+    private void addLiteralCode(StringBuilder t, StringBuilder literal, String linePrefix, String resultVar) {
+        if (literal.length() > 0) {
+            String text = collapseWhitespace ? collapseWhitespace(literal) : literal.toString();
+            t.append(linePrefix + resultVar + ".append(\"" + TamunoUtils.escapeJavaString(text) + "\");\n");
+            literal.setLength(0);
+        }
+    }
+    
+    /**
+     * Returns the folded literal text of the tokens from startToken (inclusive) to stopToken (exclusive),
+     * which must not contain input variables.
+     */
+    private String plainText(SQLGenParseContext ctx, int startToken, int stopToken) {
+        StringBuilder literal = new StringBuilder();
+        for (int p = startToken; p < stopToken; p++) {
+            SQLGenToken tok = ctx.tokens.get(p);
+            if ((tok.type == LITERAL) || (tok.type == TARGET_VAR)) {
+                tok.appendTo(literal);
+            }
+        }
+        return collapseWhitespace ? collapseWhitespace(literal) : literal.toString();
+    }
+    
+    /**
+     * Collapses runs of whitespace into a single space. Quoted strings are left untouched,
+     * and -- comments are kept including their terminating newline.
+     */
+    static String collapseWhitespace(CharSequence sql) {
+        int len = sql.length();
+        StringBuilder result = new StringBuilder(len);
+        char quoteChar = 0;
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != 0) {
+                result.append(c);
+                if ((c == '\\') && (i + 1 < len)) {
+                    result.append(sql.charAt(++i));
+                } else if (c == quoteChar) {
+                    quoteChar = 0;
+                }
+                continue;
+            }
+            if ((c == '\'') || (c == '"')) {
+                quoteChar = c;
+                result.append(c);
+            } else if ((c == '-') && (i + 1 < len) && (sql.charAt(i + 1) == '-')) {
+                int eol = i;
+                while ((eol < len) && (sql.charAt(eol) != '\n')) {
+                    eol++;
+                }
+                result.append(sql, i, Math.min(eol + 1, len));
+                i = eol;
+            } else if (Character.isWhitespace(c)) {
+                while ((i + 1 < len) && Character.isWhitespace(sql.charAt(i + 1))) {
+                    i++;
+                }
+                result.append(' ');
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Command line interface. Generates all SQL Code Generator sources below the given source roots,
+     * and with -watch keeps running, generating changed sources again as soon as they are saved.
+     * <PRE>
+     * java org.tamuno.sqlgen.SQLCodeGenerator [-watch] [-collapseWhitespace] [-target dir] sourceRoot...
+     * </PRE>
+     * Without -target, the classes are generated next to their sources.
+     * @see SQLGenWatcher
+     */
+    public static void main(String args[]) {
+        boolean watch = false;
+        File targetRoot = null;
+        ArrayList<File> sourceRoots = new ArrayList<File>();
+        SQLCodeGenerator cgen = new SQLCodeGenerator();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-watch")) {
+                watch = true;
+            } else if (args[i].equals("-collapseWhitespace")) {
+                cgen.setCollapseWhitespace(true);
+            } else if (args[i].equals("-target") && (i + 1 < args.length)) {
+                targetRoot = new File(args[++i]);
+            } else if (args[i].startsWith("-")) {
+                sourceRoots.clear();
+                break;
+            } else {
+                sourceRoots.add(new File(args[i]));
+            }
+        }
+        if (sourceRoots.isEmpty()) {
+            System.err.println("Usage: java " + SQLCodeGenerator.class.getName() + " [-watch] [-collapseWhitespace] [-target dir] sourceRoot...");
+            System.exit(2);
+        }
+        SQLGenWatcher watcher = new SQLGenWatcher(cgen, targetRoot, sourceRoots.toArray(new File[sourceRoots.size()]));
+        try {
+            int failures = watcher.generateAll();
+            if (watch) {
+                watcher.watch();
+            } else if (failures > 0) {
+                System.exit(1);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+    static {
+        targetTypeMap.put("String", new String[]{"String", "getString", "String"});
+        targetTypeMap.put("int", new String[]{"int", "getInt", "Integer"});
+        targetTypeMap.put("long", new String[]{"long", "getLong", "Long"});
+        targetTypeMap.put("double", new String[]{"double", "getDouble", "Double"});
+        targetTypeMap.put("float", new String[]{"float", "getFloat", "Float"});
+        targetTypeMap.put("short", new String[]{"short", "getShort", "Short"});
+        targetTypeMap.put("boolean", new String[]{"boolean", "getBoolean", "Boolean"});
+        targetTypeMap.put("byte", new String[]{"byte", "getByte", "Byte"});
+        targetTypeMap.put("bytes", new String[]{"byte[]", "getBytes", "byte[]"});
+        targetTypeMap.put("decimal", new String[]{"java.math.BigDecimal", "getBigDecimal", "java.math.BigDecimal"});
+        targetTypeMap.put("URL", new String[]{"java.net.URL", "getURL", "java.net.URL"});
+        targetTypeMap.put("Date", new String[]{"java.sql.Date", "getDate", "java.sql.Date"});
+        targetTypeMap.put("Time", new String[]{"java.sql.Time", "getDate", "java.sql.Time"});
+        targetTypeMap.put("Timestamp", new String[]{"java.sql.Timestamp", "getTimestamp", "java.sql.Timestamp"});
+        targetTypeMap.put("Blob", new String[]{"java.sql.Blob", "getBlob", "String"});
+        targetTypeMap.put("Clob", new String[]{"java.sql.Clob", "getClob", "String"});
+        for (String t : new String[]{"int", "long", "double", "float", "short", "boolean", "byte"}) {
+            primitiveTypes.add(t);
+            comparatorMap.put(t, targetTypeMap.get(t)[2] + ".compare");
+        }
+        for (String t : new String[]{"String", "decimal", "Date", "Time", "Timestamp"}) {
+            comparatorMap.put(t, "RowComparators.compare");
+        }
+    }
+}
@@ -29,7 +29,8 @@ class SQLGenExpression {
     boolean combiner = false;
     boolean stopCombiner = false;
     ArrayList<SQLGenExpression> subExpressions = new ArrayList<SQLGenExpression>();
-    long requiredInputVars = 0L;
+    /** Indices of the input variables this expression requires, see SQLGenParseContext.allInputVars */
+    final BitSet requiredInputVars = new BitSet();
    
     SQLGenExpression(int startTokenIndex, boolean optional) {
         this.startTokenIndex = startTokenIndex;
@@ -38,19 +39,27 @@ class SQLGenExpression {
     }
     
     void setRequiredInputVar(int idx) {
-        long mask = 1 << idx;
-        requiredInputVars |= mask;
+        requiredInputVars.set(idx);
+    }
+    
+    /**
+     * Returns the required input variables as a mask of a single long, for statements
+     * with up to 64 input variables.
+     */
+    long requiredMask() {
+        long words[] = requiredInputVars.toLongArray();
+        return (words.length == 0) ? 0L : words[0];
     }
     
     void closeExpression(int stopTokenIndex, ArrayList<SQLGenToken> tokens) {
         this.stopTokenIndex = stopTokenIndex;
         if (optional) {
-            if ((requiredInputVars==0L) && (subExpressions.size()>0)) {
+            if ((requiredInputVars.isEmpty()) && (subExpressions.size()>0)) {
                 alternative = true;
-            } else if ((requiredInputVars==0L) && (subExpressions.size()==0)) {
+            } else if ((requiredInputVars.isEmpty()) && (subExpressions.size()==0)) {
                 if ((this.startTokenIndex+2)>=this.stopTokenIndex) {
                     SQLGenToken t = tokens.get(stopTokenIndex-1);
-                    if ((t.type == SQLGenTokenType.LITERAL) && (t.value.length()==0)) {
+                    if ((t.type == SQLGenTokenType.LITERAL) && (t.length()==0)) {
                         this.stopCombiner = true;
                     }
                 }
@@ -60,9 +69,9 @@ class SQLGenExpression {
         }
         for (int i=0;i<subExpressions.size();i++) {
             SQLGenExpression subExpr = subExpressions.get(i);
-            if (subExpr.requiredInputVars!=0L){
+            if (!subExpr.requiredInputVars.isEmpty()){
                 if (alternative) {
-                    requiredInputVars |= subExpr.requiredInputVars;
+                    requiredInputVars.or(subExpr.requiredInputVars);
                 }
                 continue;
             }
@@ -70,7 +79,7 @@ class SQLGenExpression {
             // Plus the combine flag.
             if (subExpr.combiner) {
                 if (i<subExpressions.size()-1) {
-                    subExpr.requiredInputVars |= subExpressions.get(i+1).requiredInputVars;
+                    subExpr.requiredInputVars.or(subExpressions.get(i+1).requiredInputVars);
                 }
             }
             
@@ -0,0 +1,216 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Stack;
+import static org.tamuno.sqlgen.SQLGenTokenType.*;
+
+/**
+ * Parse state of a single SQL Generator statement: its tokens, the tree of optional 
+ * sections, and its input and output variables. Also carries the code generation 
+ * state of the statement.
+ * 
+ * A new context is created for every statement, which is what makes SQLCodeGenerator
+ * re-entrant: Any number of statements can be parsed and generated concurrently.
+ */
+class SQLGenParseContext {
+    /** 
+     * Words which make a SELECT write, lock rows or depend on the session, so it has to run on 
+     * the primary: SELECT INTO, MySQL's LOCK IN SHARE MODE, SQL Server's table hints, and sequence,
+     * identity and lock functions. 
+     */
+    private static final HashSet<String> PRIMARY_WORDS = new HashSet<String>(Arrays.asList("INTO", "LOCK",
+            "UPDLOCK", "XLOCK", "HOLDLOCK", "TABLOCK", "TABLOCKX", "PAGLOCK", "ROWLOCK", "READCOMMITTEDLOCK", "SERIALIZABLE", "REPEATABLEREAD",
+            "NEXTVAL", "SETVAL", "CURRVAL", "LASTVAL", "LAST_INSERT_ID", "SCOPE_IDENTITY", "FOUND_ROWS", "GET_LOCK", "RELEASE_LOCK"));
+    final String baseclass;
+    final boolean withDialects;
+    /** Qualified name of the generated class, which names the statement within a ShapeProfile */
+    String classname = "";
+    final Stack<SQLGenExpression> stack = new Stack<SQLGenExpression>();
+    final ArrayList<SQLGenExpression> allExpressions = new ArrayList<SQLGenExpression>();
+    final ArrayList<SQLGenToken> allInputVars = new ArrayList<SQLGenToken>();
+    final HashMap<String, Integer> inputVarIndices = new HashMap<String, Integer>();
+    final HashSet<String> outputVarNames = new HashSet<String>();
+    /** Executor wrapper methods generated for this statement */
+    final StringBuilder executor = new StringBuilder();
+    ArrayList<SQLGenToken> tokens;
+    int subresultIdx = 0;
+    private char chars[];
+    private int strStart;
+    private int strEnd;
+    
+    SQLGenParseContext(String baseclass, boolean withDialects) {
+        this.baseclass = baseclass;
+        this.withDialects = withDialects;
+    }
+    
+    /**
+     * Parses the region start (inclusive) to end (exclusive) of the given char array.
+     */
+    void parse(char source[], int start, int end, HashMap<String, String[]> targetTypeMap) throws SQLGenParseException {
+        this.chars = source;
+        this.strStart = start;
+        this.strEnd = end;
+        tokens = new SqlGenScanner().scan(source, start, end);
+        SQLGenExpression exp = new SQLGenExpression(0, false);
+        stack.push(exp);
+        allExpressions.add(exp);
+        for (int i = 0; i < tokens.size(); i++) {
+            SQLGenToken tok = tokens.get(i);
+            switch (tok.type) {
+                case LITERAL:
+                    continue;
+                case OPTION_VAR:
+                case ESCAPED_VAR:
+                case LITERAL_VAR:
+                    Integer idx = inputVarIndices.get(tok.value());
+                    if (idx == null) {
+                        idx = allInputVars.size();
+                        inputVarIndices.put(tok.value(), idx);
+                        allInputVars.add(tok);
+
+                    } else {
+                        SQLGenToken tk = allInputVars.get(idx);
+                        if (!tk.vartype.equals(tok.vartype)) {
+                            throw new SQLGenParseException(-1, "Input variable " + tok.value() + " used with differing types in\n"+statementText());
+                        }
+                    }
+                    requireInputVar(idx);
+                    continue;
+                case TARGET_VAR:
+                    if (!targetTypeMap.containsKey(tok.vartype)) {
+                        throw new SQLGenParseException(-1, "Output variable " + tok.value() + " is of unknown type: " + tok.vartype+ " in\n"+statementText());
+                    }
+                    if (outputVarNames.contains(tok.value())) {
+                        throw new SQLGenParseException(-1, "Output variable " + tok.value() + " used more than once in\n"+statementText());
+                    }
+                    outputVarNames.add(tok.value());
+                    continue;
+                case OPEN_BRACKET:
+                    exp = new SQLGenExpression(i, true);
+                    stack.peek().subExpressions.add(exp);
+                    stack.push(exp);
+                    allExpressions.add(exp);
+                    continue;
+                case CLOSE_BRACKET:
+                    stack.pop().closeExpression(i, tokens);
+                    continue;
+                case REQUIRED_OPEN_BRACKET:
+                    continue;
+                case REQUIRED_CLOSE_BRACKET:
+                    exp = new SQLGenExpression(i, false);
+                    exp.stopCombiner = true;
+                    stack.peek().subExpressions.add(exp);
+                    continue;
+            }
+        }
+        stack.peek().closeExpression(tokens.size(), tokens);
+    }
+    
+    /**
+     * Returns true if the statement has more than 64 input variables, so the available
+     * variables do not fit into a single long.
+     */
+    boolean isWide() {
+        return allInputVars.size() > 64;
+    }
+    
+    /**
+     * Returns true for SELECT statements which neither write nor lock rows, nor depend on the
+     * session, so they may run on replicas. The words of the statement outside of literals, 
+     * quoted identifiers, comments and variables are checked, so any whitespace may separate
+     * them. Locking clauses are FOR UPDATE, FOR SHARE, FOR NO KEY UPDATE and FOR KEY SHARE, 
+     * NEXT VALUE FOR reads a sequence, and PostgreSQL's advisory lock functions lock.
+     */
+    boolean isReadOnly() {
+        ArrayList<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        char quote = 0;
+        for (SQLGenToken tok : tokens) {
+            StringBuilder text = new StringBuilder();
+            if (tok.type == LITERAL) {
+                tok.appendTo(text);
+            }
+            text.append(' ');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                char n = (i + 1 < text.length()) ? text.charAt(i + 1) : 0;
+                if (quote == '-') {
+                    quote = (c == '\n') ? 0 : quote;
+                } else if (quote == '*') {
+                    if ((c == '*') && (n == '/')) {
+                        quote = 0;
+                        i++;
+                    }
+                } else if (quote != 0) {
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (Character.isLetterOrDigit(c) || (c == '_')) {
+                    word.append(Character.toUpperCase(c));
+                    continue;
+                } else if ((c == '\'') || (c == '"') || (c == '`')) {
+                    quote = c;
+                } else if (((c == '-') && (n == '-')) || ((c == '/') && (n == '*'))) {
+                    quote = n;
+                    i++;
+                }
+                if (word.length() > 0) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                }
+            }
+        }
+        if (words.isEmpty() || !words.get(0).equals("SELECT")) {
+            return false;
+        }
+        for (int i = 0; i < words.size(); i++) {
+            String w = words.get(i);
+            String next = (i + 1 < words.size()) ? words.get(i + 1) : "";
+            if (PRIMARY_WORDS.contains(w) || w.startsWith("PG_ADVISORY") || w.startsWith("PG_TRY_ADVISORY")
+                    || (w.equals("FOR") && (next.equals("UPDATE") || next.equals("SHARE") || next.equals("NO") || next.equals("KEY")))
+                    || (w.equals("NEXT") && next.equals("VALUE"))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the source of the parsed statement. Only used for error messages.
+     */
+    private String statementText() {
+        return new String(chars, strStart, strEnd - strStart);
+    }
+
+    private void requireInputVar(int idx) {
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            SQLGenExpression e = stack.get(i);
+            e.setRequiredInputVar(idx);
+            if (e.optional) {
+                return;
+            }
+        }
+    }
+}
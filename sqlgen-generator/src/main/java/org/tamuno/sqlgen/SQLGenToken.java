@@ -0,0 +1,76 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.sqlgen;
+
+/**
+ * A token of a SQL Generator source. The text of scanned tokens is not copied into 
+ * a String of its own, but referenced by offset within the scanner's text buffer.
+ * The String value is only created on demand.
+ */
+class SQLGenToken {
+    public SQLGenTokenType type;
+    public String vartype = "String";
+    public int pos;
+    private String value;
+    private char text[];
+    private int start;
+    private int end;
+
+    SQLGenToken(SQLGenTokenType type, String value) {
+        this.type = type;
+        this.value = value;
+        
+    }
+    
+    SQLGenToken(SQLGenTokenType type, char text[], int start, int end, String vartype) {
+        this.type = type;
+        this.text = text;
+        this.start = start;
+        this.end = end;
+        if (vartype!=null) {
+            this.vartype = vartype;
+        }
+    }
+    
+    /**
+     * Returns the text of this token (for variables, their name)
+     */
+    public String value() {
+        if (value == null) {
+            value = new String(text, start, end - start);
+        }
+        return value;
+    }
+    
+    public int length() {
+        return (text == null) ? value.length() : end - start;
+    }
+    
+    /**
+     * Appends the text of this token, without creating a String
+     */
+    public void appendTo(StringBuilder t) {
+        if (text == null) {
+            t.append(value);
+        } else {
+            t.append(text, start, end - start);
+        }
+    }
+    
+}
@@ -0,0 +1,258 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Generates all SQL Code Generator sources below a number of source roots, and then keeps
+ * watching the source roots, generating changed sources again right away. Used by the 
+ * -watch mode of SQLCodeGenerator.main, so during development sources are regenerated
+ * within milliseconds by a warm JVM, instead of by a complete build.
+ * 
+ * As with the Ant task, the package of a generated class is given by the path of its source
+ * relative to its source root, and a source named Base.Dialect.sqlg creates the abstract
+ * base class Base and the dialect specific subclass BaseDialect. Generated files are
+ * only written if their content changed, and are replaced atomically, so a compiler or IDE
+ * never sees a partially written file. The classes of deleted sources are deleted.
+ * 
+ * @see SQLCodeGenerator#main
+ */
+public class SQLGenWatcher {
+    private static final String EXTENSION = ".sqlg";
+    /** Time to wait for further events after a change, so a burst of events causes a single generation */
+    private static final long SETTLE_MILLIS = 30;
+    
+    private final SQLCodeGenerator cgen;
+    private final File targetRoot;
+    private final File sourceRoots[];
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<WatchKey, Path>();
+    private final Map<Path, Path> rootOfDir = new HashMap<Path, Path>();
+    private WatchService watcher;
+    
+    /**
+     * @param cgen Generator to use
+     * @param targetRoot Root directory of the generated classes, or null to generate them next to their sources
+     * @param sourceRoots Root directories of the .sqlg sources
+     */
+    public SQLGenWatcher(SQLCodeGenerator cgen, File targetRoot, File... sourceRoots) {
+        this.cgen = cgen;
+        this.targetRoot = targetRoot;
+        this.sourceRoots = sourceRoots;
+    }
+    
+    /**
+     * Generates all sources below all source roots.
+     * @return number of sources which could not be generated
+     */
+    public int generateAll() throws IOException {
+        final int failures[] = new int[1];
+        for (File sourceRoot : sourceRoots) {
+            final Path root = sourceRoot.toPath().toAbsolutePath().normalize();
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.getFileName().toString().endsWith(EXTENSION) && !generate(root, file)) {
+                        failures[0]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return failures[0];
+    }
+    
+    /**
+     * Watches the source roots, and generates changed sources until the thread gets interrupted.
+     */
+    public void watch() throws IOException, InterruptedException {
+        watcher = FileSystems.getDefault().newWatchService();
+        try {
+            for (File sourceRoot : sourceRoots) {
+                Path root = sourceRoot.toPath().toAbsolutePath().normalize();
+                registerAll(root, root);
+            }
+            log("Watching " + watchedDirs.size() + " directories for changes of " + EXTENSION + " files");
+            while (!Thread.currentThread().isInterrupted()) {
+                // Changed sources, and their source roots
+                Map<Path, Path> changed = new LinkedHashMap<Path, Path>();
+                WatchKey key = watcher.take();
+                while (key != null) {
+                    collectChanges(key, changed);
+                    key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                for (Map.Entry<Path, Path> change : changed.entrySet()) {
+                    Path file = change.getKey();
+                    if (Files.isRegularFile(file)) {
+                        generate(change.getValue(), file);
+                    } else {
+                        remove(change.getValue(), file);
+                    }
+                }
+            }
+        } finally {
+            watcher.close();
+        }
+    }
+    
+    private void collectChanges(WatchKey key, Map<Path, Path> changed) throws IOException {
+        Path dir = watchedDirs.get(key);
+        if (dir != null) {
+            collectChanges(dir, key.pollEvents(), changed);
+        }
+        if (!key.reset()) {
+            Path removed = watchedDirs.remove(key);
+            rootOfDir.remove(removed);
+        }
+    }
+    
+    /**
+     * Adds the sources changed by the given events of a watched directory to changed, together
+     * with their source roots. Sources within new directories are generated right away.
+     */
+    void collectChanges(Path dir, List<WatchEvent<?>> events, Map<Path, Path> changed) throws IOException {
+        Path root = rootOfDir.get(dir);
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log("Too many changes at once, generating everything");
+                generateAll();
+                continue;
+            }
+            Path file = dir.resolve((Path) event.context());
+            if ((event.kind() == StandardWatchEventKinds.ENTRY_CREATE) && Files.isDirectory(file)) {
+                registerAll(root, file);
+                // Sources may have been created before the directory has been registered
+                Files.walkFileTree(file, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path f, BasicFileAttributes attrs) {
+                        if (f.getFileName().toString().endsWith(EXTENSION)) {
+                            generate(rootOfDir.get(f.getParent()), f);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } else if (file.getFileName().toString().endsWith(EXTENSION)) {
+                changed.put(file, root);
+            }
+        }
+    }
+    
+    private void registerAll(final Path root, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirs.put(key, dir);
+                rootOfDir.put(dir, root);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    /**
+     * Generates the class(es) of the given source.
+     * @return false if the source could not be generated
+     */
+    boolean generate(Path root, Path source) {
+        long start = System.nanoTime();
+        String names[] = names(root, source);
+        if (names == null) {
+            log(source + " is not within a package directory, skipped");
+            return false;
+        }
+        try {
+            File targetDir = targetDir(root, names[0]);
+            targetDir.mkdirs();
+            File src = source.toFile();
+            if (names[2] != null) {
+                cgen.generateSQLCodeIfChanged(src, new File(targetDir, names[2] + ".java"), names[0], names[2], null, true);
+                cgen.generateSQLCodeIfChanged(src, new File(targetDir, names[1] + ".java"), names[0], names[1], names[2], true);
+            } else {
+                cgen.generateSQLCodeIfChanged(src, new File(targetDir, names[1] + ".java"), names[0], names[1], null, false);
+            }
+            log("Generated " + names[0] + "." + names[1] + " in " + ((System.nanoTime() - start) / 1000000) + "ms");
+            return true;
+        } catch (SQLGenParseException ex) {
+            log("Parse error in " + source + ": " + ex.getMessage());
+        } catch (IOException ex) {
+            log("Could not generate " + source + ": " + ex);
+        }
+        return false;
+    }
+    
+    /**
+     * Deletes the class generated from the given (deleted) source. Base classes of dialects 
+     * are kept, since they may be generated from other dialects as well.
+     */
+    void remove(Path root, Path source) {
+        String names[] = names(root, source);
+        if (names == null) {
+            return;
+        }
+        File target = new File(targetDir(root, names[0]), names[1] + ".java");
+        if (target.delete()) {
+            log("Deleted " + target);
+        }
+    }
+    
+    private File targetDir(Path root, String packagename) {
+        File base = (targetRoot != null) ? targetRoot : root.toFile();
+        return new File(base, packagename.replace('.', File.separatorChar));
+    }
+    
+    /**
+     * Returns package name, class name and base class name (or null) for the given source, 
+     * or null if the source is not within a package.
+     */
+    private static String[] names(Path root, Path source) {
+        Path rel = root.relativize(source);
+        if (rel.getNameCount() < 2) {
+            return null;
+        }
+        String packagename = rel.getParent().toString().replace(File.separatorChar, '.');
+        String fname = rel.getFileName().toString();
+        int cpos = fname.length() - EXTENSION.length();
+        int dpos = fname.lastIndexOf('.', cpos - 1);
+        if (dpos < 0) {
+            return new String[]{packagename, fname.substring(0, cpos), null};
+        }
+        String base = fname.substring(0, dpos);
+        return new String[]{packagename, base + TamunoUtils.capitalize(fname.substring(dpos + 1, cpos)), base};
+    }
+    
+    private static void log(String message) {
+        System.out.println(message);
+    }
+}
@@ -0,0 +1,681 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.tamuno.runtime.sql.DynamicRow;
+import org.tamuno.runtime.sql.ISQLDialectUtil;
+import org.tamuno.runtime.sql.RenderBuffers;
+import org.tamuno.runtime.sql.RowIterator;
+import org.tamuno.runtime.sql.RowLoaders;
+import static org.tamuno.sqlgen.SQLGenTokenType.*;
+
+/**
+ * A single SQL Generator statement, compiled at runtime instead of being generated into Java code.
+ * Meant for statements which are only known at runtime, like statements loaded from a
+ * SQLTemplatePack.
+ * 
+ * The statement is parsed by the same parser as used by the SQLCodeGenerator, and renders exactly
+ * the same SQL as the generated code would. Input variables are passed as an array, in the order
+ * of their first occurrence within the statement (see getParameterNames). A null value means the
+ * variable is not available, just like a null field of a generated statement class.
+ * 
+ * Which optional sections are rendered only depends on which variables are available. So the
+ * first time a combination of available variables (a shape) is rendered, the statement is
+ * interpreted once and the result is kept as a plan: the literal texts in between variables.
+ * All further renderings of that shape just append the texts and the escaped values.
+ * 
+ * Instances are immutable apart from the plan cache, and can be used by any number of threads.
+ * 
+ * The available variables are a bitset in a single long for statements with up to 64 input
+ * variables. Wider statements are rendered just as well, but have no shapes (see getShapes).
+ * 
+ * Usage:
+ * <PRE>
+ *   SQLTemplate t = SQLTemplate.compile("selectUser", "SELECT @user_id:int FROM users [WHERE user_name=$user_name]");
+ *   for (DynamicRow row : t.query(st, dialectUtil, "kai")) {
+ *       int id = row.getInt("user_id");
+ *   }
+ * </PRE>
+ * @see SQLTemplatePack
+ */
+public final class SQLTemplate {
+    
+    /** Maximum number of combinations of available variables examined by getShapes */
+    public static final int MAX_SHAPE_CANDIDATES = 4096;
+    
+    /** Maximum number of combinations of available variables whose plans are cached per statement */
+    public static final int MAX_PLANS = 1024;
+    
+    private final String name;
+    private final String source;
+    private final boolean select;
+    private final String parameterNames[];
+    private final String parameterTypes[];
+    private final String columnNames[];
+    private final DynamicRow.Columns columns;
+    private final Section root;
+    /** The SQL of statements without any input variables and optional sections */
+    private final String staticSQL;
+    /** Plans by the available variables: a Long, or a BitSet for statements with more than 64 input variables */
+    private final ConcurrentHashMap<Object, Plan> plans = new ConcurrentHashMap<Object, Plan>();
+    /** One plan per shape, shared by all combinations of available variables rendering the same SQL */
+    private final ConcurrentHashMap<String, Plan> shapePlans = new ConcurrentHashMap<String, Plan>();
+    
+    private SQLTemplate(String name, String source, SQLGenParseContext ctx, boolean collapseWhitespace) {
+        this.name = name;
+        this.source = source;
+        this.select = source.regionMatches(true, 0, "SELECT ", 0, 7);
+        int count = ctx.allInputVars.size();
+        parameterNames = new String[count];
+        parameterTypes = new String[count];
+        for (int i = 0; i < count; i++) {
+            SQLGenToken tok = ctx.allInputVars.get(i);
+            parameterNames[i] = tok.value();
+            parameterTypes[i] = tok.vartype;
+        }
+        ArrayList<String> columnNames = new ArrayList<String>();
+        ArrayList<String> columnTypes = new ArrayList<String>();
+        for (SQLGenToken tok : ctx.tokens) {
+            if (tok.type == TARGET_VAR) {
+                columnNames.add(tok.value());
+                columnTypes.add(tok.vartype);
+            }
+        }
+        this.columnNames = columnNames.toArray(new String[columnNames.size()]);
+        columns = new DynamicRow.Columns(this.columnNames, columnTypes.toArray(new String[columnTypes.size()]));
+        root = compileSection(ctx, ctx.allExpressions.get(0), collapseWhitespace);
+        if ((count == 0) && (ctx.allExpressions.get(0).subExpressions.isEmpty())) {
+            staticSQL = render(null, new Object[0]);
+        } else {
+            staticSQL = null;
+        }
+    }
+    
+    /**
+     * Compiles a single statement, given without its name and terminating ;
+     * @param name Name of the statement, used for error messages only
+     * @param source SQL intermixed with elements of the SQL Generator Language
+     */
+    public static SQLTemplate compile(String name, String source) throws SQLGenParseException {
+        return compile(name, source, false);
+    }
+    
+    /**
+     * Compiles a single statement, given without its name and terminating ;
+     * @param name Name of the statement, used for error messages only
+     * @param source SQL intermixed with elements of the SQL Generator Language
+     * @param collapseWhitespace collapse runs of whitespace, see SQLCodeGenerator.setCollapseWhitespace
+     */
+    public static SQLTemplate compile(String name, String source, boolean collapseWhitespace) throws SQLGenParseException {
+        char chars[] = source.toCharArray();
+        SQLGenParseContext ctx = new SQLGenParseContext(null, false);
+        ctx.parse(chars, 0, chars.length, SQLCodeGenerator.targetTypeMap);
+        return new SQLTemplate(name, source, ctx, collapseWhitespace);
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the source this statement was compiled from
+     */
+    public String getSource() {
+        return source;
+    }
+    
+    /**
+     * Returns true if this is a SELECT statement
+     */
+    public boolean isSelect() {
+        return select;
+    }
+    
+    /**
+     * Returns the names of the input variables, in the order expected by render, query and execute.
+     */
+    public String[] getParameterNames() {
+        return parameterNames.clone();
+    }
+    
+    /**
+     * Returns the declared types of the input variables, like String or int
+     */
+    public String[] getParameterTypes() {
+        return parameterTypes.clone();
+    }
+    
+    /**
+     * Returns the index of the named input variable, or -1 if there is no such variable
+     */
+    public int getParameterIndex(String parameterName) {
+        for (int i = 0; i < parameterNames.length; i++) {
+            if (parameterNames[i].equals(parameterName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns true if the statement has more than 64 input variables, so their bitsets do not fit into a long
+     */
+    public boolean isWide() {
+        return parameterNames.length > 64;
+    }
+    
+    /**
+     * Returns the bitset of the input variables which are always required
+     * @throws IllegalStateException if the statement has more than 64 input variables
+     */
+    public long getRequiredParameters() {
+        checkNarrow();
+        return (root.requiredInputVars.length > 0) ? root.requiredInputVars[0] : 0L;
+    }
+    
+    private void checkNarrow() {
+        if (isWide()) {
+            throw new IllegalStateException(name + " has more than 64 input variables");
+        }
+    }
+    
+    /**
+     * Returns the names of the output variables, which are the columns of the result rows
+     */
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+    
+    /**
+     * Converts input variables given by name into the parameter array expected by render, query and execute.
+     * @throws IllegalArgumentException if values contains a name which is no input variable of this statement
+     */
+    public Object[] parameters(Map<String, ?> values) {
+        Object result[] = new Object[parameterNames.length];
+        for (Map.Entry<String, ?> e : values.entrySet()) {
+            int idx = getParameterIndex(e.getKey());
+            if (idx == -1) {
+                throw new IllegalArgumentException("Unknown input variable " + e.getKey() + " of " + name);
+            }
+            result[idx] = e.getValue();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the bitset of available (non-null) input variables
+     * @throws IllegalStateException if the statement has more than 64 input variables
+     */
+    public long calcAvailableParamsBitset(Object params[]) {
+        checkNarrow();
+        return calcAvailableParamsWords(params)[0];
+    }
+    
+    /**
+     * Returns the bitset of available (non-null) input variables, 64 of them per word
+     */
+    private long[] calcAvailableParamsWords(Object params[]) {
+        if (params.length != parameterNames.length) {
+            throw new IllegalArgumentException(name + " expects " + parameterNames.length + " input variables, got " + params.length);
+        }
+        long result[] = new long[Math.max(1, (params.length + 63) >> 6)];
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] != null) {
+                result[i >> 6] |= 1L << i;
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Renders the SQL for the given input variables.
+     * @param dialectUtil used to escape the values of $ variables
+     * @param params values of the input variables, null if not available
+     * @throws IllegalArgumentException if required input variables are missing
+     */
+    public String render(ISQLDialectUtil dialectUtil, Object... params) {
+        if (staticSQL != null) {
+            calcAvailableParamsBitset(params);
+            return staticSQL;
+        }
+        return RenderBuffers.release(renderTo(RenderBuffers.acquire(), dialectUtil, params));
+    }
+    
+    /**
+     * Appends the SQL for the given input variables to result.
+     * @see #render
+     */
+    public StringBuilder renderTo(StringBuilder result, ISQLDialectUtil dialectUtil, Object... params) {
+        long available[] = calcAvailableParamsWords(params);
+        Object key = isWide() ? BitSet.valueOf(available) : (Object) available[0];
+        Plan plan = plans.get(key);
+        if (plan == null) {
+            plan = plan(available);
+            // Beyond MAX_PLANS combinations the plan is rendered without being cached
+            if (plans.size() < MAX_PLANS) {
+                Plan known = shapePlans.putIfAbsent(plan.key(), plan);
+                if (known != null) {
+                    plan = known;
+                }
+                known = plans.putIfAbsent(key, plan);
+                if (known != null) {
+                    plan = known;
+                }
+            }
+        }
+        return plan.renderTo(result, dialectUtil, params);
+    }
+    
+    /**
+     * Returns the number of shapes rendered so far, each of which has its own plan. At most
+     * MAX_PLANS combinations of available variables are cached.
+     */
+    public int getPlanCount() {
+        return shapePlans.size();
+    }
+    
+    /**
+     * Returns one available parameter bitset for each distinct shape of this statement, the one
+     * with the fewest variables. Shapes with fewer variables come first. Only the first
+     * MAX_SHAPE_CANDIDATES combinations of the optional variables are examined, so shapes with
+     * many variables may be missing for statements with more than 12 optional variables.
+     * @throws IllegalStateException if the statement has more than 64 input variables
+     */
+    public long[] getShapes() {
+        checkNarrow();
+        ArrayList<long[]> shapes = shapes();
+        long result[] = new long[shapes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = shapes.get(i)[0];
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of distinct shapes found by getShapes, which is also known for
+     * statements with more than 64 input variables.
+     */
+    int getShapeCount() {
+        return shapes().size();
+    }
+    
+    private ArrayList<long[]> shapes() {
+        long required[] = Arrays.copyOf(root.requiredInputVars, Math.max(1, (parameterNames.length + 63) >> 6));
+        int optional[] = new int[parameterNames.length];
+        int n = 0;
+        for (int i = 0; i < parameterNames.length; i++) {
+            if ((required[i >> 6] & (1L << i)) == 0L) {
+                optional[n++] = i;
+            }
+        }
+        HashSet<String> seen = new HashSet<String>();
+        ArrayList<long[]> result = new ArrayList<long[]>();
+        int candidates = 0;
+        for (int k = 0; (k <= n) && (candidates < MAX_SHAPE_CANDIDATES); k++) {
+            // All k-combinations of the optional variables, as ascending indices into optional
+            int idx[] = new int[k];
+            for (int i = 0; i < k; i++) {
+                idx[i] = i;
+            }
+            do {
+                long available[] = required.clone();
+                for (int i : idx) {
+                    available[optional[i] >> 6] |= 1L << optional[i];
+                }
+                if (seen.add(plan(available).key())) {
+                    result.add(available);
+                }
+            } while ((++candidates < MAX_SHAPE_CANDIDATES) && nextCombination(idx, n));
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the template of the statement parsed into the given context, as used by the
+     * SQLCodeGenerator to examine its shapes.
+     */
+    static SQLTemplate of(SQLGenParseContext ctx, boolean collapseWhitespace) {
+        return new SQLTemplate(null, "", ctx, collapseWhitespace);
+    }
+    
+    private static boolean nextCombination(int idx[], int n) {
+        int i = idx.length - 1;
+        while ((i >= 0) && (idx[i] == n - idx.length + i)) {
+            i--;
+        }
+        if (i < 0) {
+            return false;
+        }
+        idx[i]++;
+        for (int j = i + 1; j < idx.length; j++) {
+            idx[j] = idx[j - 1] + 1;
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the names and types of the output variables, which describe the result rows
+     */
+    public DynamicRow.Columns getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Executes the statement, and returns its rows. The rows are loaded by a row class
+     * spun for the column types of this statement (see RowLoaders), and are reused while 
+     * iterating (see RowIterator).
+     */
+    public RowIterator<DynamicRow> query(Statement st, ISQLDialectUtil dialectUtil, Object... params) throws SQLException {
+        return new RowIterator<DynamicRow>(st.executeQuery(render(dialectUtil, params)), RowLoaders.newRow(columns));
+    }
+    
+    /**
+     * Executes the statement as an update.
+     * @return the update count
+     */
+    public int execute(Statement st, ISQLDialectUtil dialectUtil, Object... params) throws SQLException {
+        return st.executeUpdate(render(dialectUtil, params));
+    }
+    
+    public String toString() {
+        return name + ":=" + source;
+    }
+    
+    /**
+     * Interprets the statement for the given available input variables, recording the resulting plan.
+     */
+    Plan plan(long available) {
+        return plan(new long[] {available});
+    }
+    
+    private Plan plan(long available[]) {
+        if (!containsAll(available, root.requiredInputVars)) {
+            throw new IllegalArgumentException("Missing required arguments");
+        }
+        PlanBuilder plan = new PlanBuilder();
+        interpret(root, false, new Flags(false), available, plan);
+        return plan.build();
+    }
+    
+    /**
+     * Renders an expression the same way as the code generated by 
+     * SQLCodeGenerator.addSQLExpressionGeneratorCode does. The flags are those of the 
+     * innermost enclosing alternative section.
+     */
+    private static void interpret(Section expr, boolean checkCondition, Flags flags, long available[], PlanBuilder plan) {
+        if (expr.stopCombiner) {
+            flags.combine = false;
+            return;
+        }
+        if (expr.requiredInputVars.length == 0) {
+            checkCondition = expr.combiner;
+        }
+        long required[] = expr.requiredInputVars;
+        if ((!expr.alternative) && (!expr.combiner)) {
+            if (checkCondition && (!containsAll(available, required))) {
+                return;
+            }
+            if (flags.hasAlt) {
+                flags.alt = true;
+            }
+        } else if (expr.alternative) {
+            if (checkCondition && (!intersects(available, required))) {
+                return;
+            }
+        } else if ((!flags.combine) || (!containsAll(available, required))) {
+            return;
+        }
+        Flags inner = flags;
+        int mark[] = null;
+        if (expr.alternative) {
+            inner = new Flags(true);
+            mark = plan.mark();
+        }
+        for (Object item : expr.content) {
+            if (item instanceof String) {
+                plan.appendText((String) item);
+            } else if (item instanceof Parameter) {
+                plan.appendParameter((Parameter) item);
+            } else {
+                interpret((Section) item, true, inner, available, plan);
+            }
+        }
+        if (!expr.alternative) {
+            flags.combine = !expr.combiner;
+        } else if (inner.alt) {
+            if (flags.hasAlt) {
+                flags.alt = true;
+            }
+            flags.combine = true;
+        } else {
+            plan.reset(mark);
+        }
+    }
+    
+    /**
+     * Returns true if all bits of required are set in available. required has no trailing zero words.
+     */
+    private static boolean containsAll(long available[], long required[]) {
+        if (required.length > available.length) {
+            return false;
+        }
+        for (int i = 0; i < required.length; i++) {
+            if ((available[i] & required[i]) != required[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean intersects(long available[], long required[]) {
+        for (int i = 0; (i < required.length) && (i < available.length); i++) {
+            if ((available[i] & required[i]) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static Section compileSection(SQLGenParseContext ctx, SQLGenExpression expr, boolean collapseWhitespace) {
+        ArrayList<Object> content = new ArrayList<Object>();
+        int pos = expr.startTokenIndex;
+        for (SQLGenExpression sub : expr.subExpressions) {
+            compilePlain(ctx, pos, sub.startTokenIndex, collapseWhitespace, content);
+            content.add(compileSection(ctx, sub, collapseWhitespace));
+            pos = sub.stopTokenIndex + 1;
+        }
+        compilePlain(ctx, pos, expr.stopTokenIndex, collapseWhitespace, content);
+        return new Section(expr, content.toArray());
+    }
+    
+    /**
+     * Compiles the tokens from startToken (inclusive) to stopToken (exclusive). Like 
+     * SQLCodeGenerator.addPlainCode, adjacent literals and output variable names are folded.
+     */
+    private static void compilePlain(SQLGenParseContext ctx, int startToken, int stopToken, boolean collapseWhitespace, ArrayList<Object> content) {
+        StringBuilder literal = new StringBuilder();
+        for (int p = startToken; p < stopToken; p++) {
+            SQLGenToken tok = ctx.tokens.get(p);
+            switch (tok.type) {
+                case LITERAL:
+                case TARGET_VAR:
+                    tok.appendTo(literal);
+                    break;
+                case LITERAL_VAR:
+                case ESCAPED_VAR:
+                    addLiteral(literal, collapseWhitespace, content);
+                    content.add(new Parameter(ctx.inputVarIndices.get(tok.value()), tok.type == ESCAPED_VAR));
+                    break;
+            }
+        }
+        addLiteral(literal, collapseWhitespace, content);
+    }
+    
+    private static void addLiteral(StringBuilder literal, boolean collapseWhitespace, ArrayList<Object> content) {
+        if (literal.length() > 0) {
+            content.add(collapseWhitespace ? SQLCodeGenerator.collapseWhitespace(literal) : literal.toString());
+            literal.setLength(0);
+        }
+    }
+    
+    /**
+     * Compiled form of a SQLGenExpression. The content consists of literal Strings,
+     * Parameters and nested Sections.
+     */
+    private static final class Section {
+        final boolean alternative;
+        final boolean combiner;
+        final boolean stopCombiner;
+        /** Words of the bitset of required input variables, without trailing zero words */
+        final long requiredInputVars[];
+        final Object content[];
+        
+        Section(SQLGenExpression expr, Object content[]) {
+            this.alternative = expr.alternative;
+            this.combiner = expr.combiner;
+            this.stopCombiner = expr.stopCombiner;
+            this.requiredInputVars = expr.requiredInputVars.toLongArray();
+            this.content = content;
+        }
+    }
+    
+    /**
+     * Occurrence of an input variable, either escaped ($) or literal (#)
+     */
+    static final class Parameter {
+        final int index;
+        final boolean escaped;
+        
+        Parameter(int index, boolean escaped) {
+            this.index = index;
+            this.escaped = escaped;
+        }
+    }
+    
+    /**
+     * Render state of an alternative section (or the statement itself), corresponding to
+     * the altFlag and combine variables of the generated code.
+     */
+    private static final class Flags {
+        final boolean hasAlt;
+        boolean alt = false;
+        boolean combine = false;
+        
+        Flags(boolean hasAlt) {
+            this.hasAlt = hasAlt;
+        }
+    }
+    
+    /**
+     * The SQL of a single shape: texts[0], value of parameter 0, texts[1], ... texts[n]
+     */
+    static final class Plan {
+        final String texts[];
+        final Parameter parameters[];
+        final int capacity;
+        
+        Plan(String texts[], Parameter parameters[]) {
+            this.texts = texts;
+            this.parameters = parameters;
+            int len = 0;
+            for (String text : texts) {
+                len += text.length();
+            }
+            this.capacity = len + 16 * parameters.length;
+        }
+        
+        /**
+         * Returns a String identifying the SQL shape of this plan
+         */
+        String key() {
+            StringBuilder t = new StringBuilder(capacity);
+            t.append(texts[0]);
+            for (int i = 0; i < parameters.length; i++) {
+                t.append('\0').append(parameters[i].escaped ? '$' : '#').append(parameters[i].index).append('\0');
+                t.append(texts[i + 1]);
+            }
+            return t.toString();
+        }
+        
+        StringBuilder renderTo(StringBuilder result, ISQLDialectUtil dialectUtil, Object params[]) {
+            result.ensureCapacity(result.length() + capacity);
+            result.append(texts[0]);
+            for (int i = 0; i < parameters.length; i++) {
+                Parameter p = parameters[i];
+                if (p.escaped) {
+                    dialectUtil.appendEscaped(result, params[p.index]);
+                } else {
+                    result.append(params[p.index]);
+                }
+                result.append(texts[i + 1]);
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Records the texts and parameters appended while interpreting a shape.
+     */
+    private static final class PlanBuilder {
+        private final StringBuilder text = new StringBuilder();
+        private int offsets[] = new int[8];
+        private Parameter parameters[] = new Parameter[8];
+        private int count = 0;
+        
+        void appendText(String s) {
+            text.append(s);
+        }
+        
+        void appendParameter(Parameter p) {
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+                parameters = Arrays.copyOf(parameters, count * 2);
+            }
+            offsets[count] = text.length();
+            parameters[count++] = p;
+        }
+        
+        int[] mark() {
+            return new int[]{text.length(), count};
+        }
+        
+        void reset(int mark[]) {
+            text.setLength(mark[0]);
+            count = mark[1];
+        }
+        
+        Plan build() {
+            String texts[] = new String[count + 1];
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                texts[i] = text.substring(start, offsets[i]);
+                start = offsets[i];
+            }
+            texts[count] = text.substring(start);
+            return new Plan(texts, Arrays.copyOf(parameters, count));
+        }
+    }
+}
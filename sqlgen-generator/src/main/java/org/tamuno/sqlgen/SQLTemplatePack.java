@@ -0,0 +1,171 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * The statements of a SQL Code Generator source file, compiled at runtime into SQLTemplates
+ * instead of being generated into a Java class. For statements which are only known at runtime,
+ * like tenant specific query packs.
+ * 
+ * The file is reloaded when it changes: get checks the modification time of the file at most
+ * once per check interval, and compiles the file again if it changed. Statements whose source
+ * did not change keep their compiled plans. If the changed file can not be parsed, the 
+ * previous statements stay in use, and the error is logged once until the file changes again.
+ * 
+ * Usage:
+ * <PRE>
+ *   SQLTemplatePack pack = new SQLTemplatePack(new File("tenant/queries.sqlg"));
+ *   String sql = pack.get("selectUser").render(dialectUtil, "kai", null);
+ * </PRE>
+ */
+public class SQLTemplatePack {
+    
+    private final File file;
+    private final boolean collapseWhitespace;
+    private volatile Map<String, SQLTemplate> templates;
+    private volatile long checkInterval = 1000;
+    private volatile long nextCheck;
+    private long lastModified;
+    private long length;
+    
+    /**
+     * Loads and compiles the given SQL Code Generator source file.
+     */
+    public SQLTemplatePack(File file) throws SQLGenParseException, IOException {
+        this(file, false);
+    }
+    
+    /**
+     * Loads and compiles the given SQL Code Generator source file.
+     * @param collapseWhitespace collapse runs of whitespace, see SQLCodeGenerator.setCollapseWhitespace
+     */
+    public SQLTemplatePack(File file, boolean collapseWhitespace) throws SQLGenParseException, IOException {
+        this.file = file;
+        this.collapseWhitespace = collapseWhitespace;
+        reload();
+    }
+    
+    /**
+     * Compiles all statements of the given SQL Code Generator source.
+     * @return the statements by name, in the order of the source
+     */
+    public static Map<String, SQLTemplate> compile(String source, boolean collapseWhitespace) throws SQLGenParseException {
+        return compile(source.toCharArray(), collapseWhitespace, Collections.<String, SQLTemplate>emptyMap());
+    }
+    
+    private static Map<String, SQLTemplate> compile(char source[], boolean collapseWhitespace, Map<String, SQLTemplate> previous) throws SQLGenParseException {
+        LinkedHashMap<String, SQLTemplate> result = new LinkedHashMap<String, SQLTemplate>();
+        int bounds[] = new int[4];
+        int pos = 0;
+        while (SQLCodeGenerator.findStatement(source, pos, bounds)) {
+            pos = bounds[3] + 1;
+            String name = new String(source, bounds[0], bounds[1] - bounds[0]);
+            int start = bounds[2];
+            int end = bounds[3];
+            while ((start < end) && (source[start] <= ' ')) {
+                start++;
+            }
+            while ((end > start) && (source[end - 1] <= ' ')) {
+                end--;
+            }
+            String text = new String(source, start, end - start);
+            SQLTemplate template = previous.get(name);
+            if ((template == null) || (!template.getSource().equals(text))) {
+                template = SQLTemplate.compile(name, text, collapseWhitespace);
+            }
+            result.put(name, template);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+    
+    /**
+     * Returns the named statement, or null if there is no such statement.
+     * Reloads the file first if it changed since it was last checked.
+     */
+    public SQLTemplate get(String name) {
+        long now = System.currentTimeMillis();
+        if (now >= nextCheck) {
+            long interval = checkInterval;
+            nextCheck = (interval < 0) ? Long.MAX_VALUE : now + interval;
+            try {
+                reload();
+            } catch (Exception ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Could not reload " + file + ", keeping the previous statements", ex);
+            }
+        }
+        return templates.get(name);
+    }
+    
+    /**
+     * Returns all statements by name, as of the last (re)load
+     */
+    public Map<String, SQLTemplate> getTemplates() {
+        return templates;
+    }
+    
+    /**
+     * Loads and compiles the file again, if it changed since it was last loaded. If it can not be
+     * parsed, it is not loaded again until it changes once more.
+     * @return true if the file was reloaded
+     */
+    public synchronized boolean reload() throws SQLGenParseException, IOException {
+        long modified = file.lastModified();
+        long len = file.length();
+        if ((templates != null) && (modified == lastModified) && (len == length)) {
+            return false;
+        }
+        Map<String, SQLTemplate> previous = templates;
+        try {
+            templates = compile(TamunoUtils.loadTextFileChars(file, "UTF-8"), collapseWhitespace, (previous == null) ? Collections.<String, SQLTemplate>emptyMap() : previous);
+        } catch (SQLGenParseException ex) {
+            // A broken file is reported once, not on every check until it changes
+            lastModified = modified;
+            length = len;
+            throw ex;
+        }
+        lastModified = modified;
+        length = len;
+        return true;
+    }
+    
+    public File getFile() {
+        return file;
+    }
+    
+    /**
+     * Sets the minimum time between two checks for changes of the file by get, in milliseconds.
+     * Default is 1000. 0 checks on every call, a negative value never.
+     */
+    public void setCheckInterval(long checkInterval) {
+        this.checkInterval = checkInterval;
+        this.nextCheck = (checkInterval < 0) ? Long.MAX_VALUE : 0;
+    }
+    
+    public long getCheckInterval() {
+        return checkInterval;
+    }
+}
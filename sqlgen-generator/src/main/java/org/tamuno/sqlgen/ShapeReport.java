@@ -0,0 +1,204 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import static org.tamuno.sqlgen.SQLGenTokenType.*;
+
+/**
+ * Report of the number of distinct SQL texts (shapes) every statement of a source can render.
+ * 
+ * Every shape of a statement is a statement of its own to the database, with a plan cache entry
+ * of its own, so a statement with many independent optional sections can thrash the plan cache.
+ * The shapes are counted from the tree of optional sections: Every optional section multiplies
+ * the shapes of its enclosing section by the number of its own shapes plus one (for being left out).
+ * As sections depending on the same variables are not independent of each other, this is an upper 
+ * bound. If the statement has few enough optional variables, the exact number is determined by 
+ * SQLTemplate.getShapes instead. 
+ * 
+ * The sections which multiply the count are listed with their factors, largest first.
+ * @see SQLTemplate#getShapes()
+ */
+public class ShapeReport {
+    
+    /** Maximum length of the section texts within the report */
+    private static final int MAX_TEXT_LENGTH = 60;
+    
+    /**
+     * An optional section, and the factor it multiplies the shapes of its enclosing section with
+     */
+    public static final class Section {
+        public final String text;
+        public final long factor;
+        
+        Section(String text, long factor) {
+            this.text = text;
+            this.factor = factor;
+        }
+    }
+    
+    /**
+     * The shapes of a single statement
+     */
+    public static final class Entry {
+        public final String statement;
+        public final long shapes;
+        /** false if shapes is an upper bound */
+        public final boolean exact;
+        public final List<Section> sections;
+        
+        Entry(String statement, long shapes, boolean exact, List<Section> sections) {
+            this.statement = statement;
+            this.shapes = shapes;
+            this.exact = exact;
+            this.sections = sections;
+        }
+    }
+    
+    private final String srcFileName;
+    private final List<Entry> entries;
+    
+    private ShapeReport(String srcFileName, List<Entry> entries) {
+        this.srcFileName = srcFileName;
+        this.entries = entries;
+    }
+    
+    /**
+     * Counts the shapes of all statements of the given SQL Code Generator source
+     * @param srcFileName name of the source, used within the report
+     */
+    public static ShapeReport analyze(String srcFileName, char source[], boolean collapseWhitespace) throws SQLGenParseException {
+        ArrayList<Entry> entries = new ArrayList<Entry>();
+        int bounds[] = new int[4];
+        int pos = 0;
+        while (SQLCodeGenerator.findStatement(source, pos, bounds)) {
+            pos = bounds[3] + 1;
+            SQLGenParseContext ctx = new SQLGenParseContext(null, false);
+            ctx.parse(source, bounds[2], bounds[3], SQLCodeGenerator.targetTypeMap);
+            ArrayList<Section> sections = new ArrayList<Section>();
+            SQLGenExpression root = ctx.allExpressions.get(0);
+            long shapes = innerShapes(ctx, root, sections);
+            int optional = ctx.allInputVars.size() - root.requiredInputVars.cardinality();
+            boolean exact = (optional < 31) && ((1 << optional) <= SQLTemplate.MAX_SHAPE_CANDIDATES);
+            if (exact) {
+                shapes = SQLTemplate.of(ctx, collapseWhitespace).getShapeCount();
+            }
+            Collections.sort(sections, new Comparator<Section>() {
+                public int compare(Section a, Section b) {
+                    return (a.factor == b.factor) ? 0 : ((a.factor > b.factor) ? -1 : 1);
+                }
+            });
+            entries.add(new Entry(new String(source, bounds[0], bounds[1] - bounds[0]), shapes, exact, sections));
+        }
+        return new ShapeReport(srcFileName, entries);
+    }
+    
+    /**
+     * Returns the shapes of the content of the given expression, collecting the sections within
+     * it which multiply them.
+     */
+    private static long innerShapes(SQLGenParseContext ctx, SQLGenExpression expr, List<Section> sections) {
+        long result = 1L;
+        for (SQLGenExpression sub : expr.subExpressions) {
+            if (sub.combiner || sub.stopCombiner) {
+                // Rendered depending on its neighbours only
+                continue;
+            }
+            long inner = innerShapes(ctx, sub, sections);
+            // Left out, an alternative renders the same as with none of its sections
+            long factor = sub.alternative ? inner : saturatedAdd(inner, 1L);
+            if (factor > 1L) {
+                sections.add(new Section(text(ctx, sub), factor));
+            }
+            result = saturatedMultiply(result, factor);
+        }
+        return result;
+    }
+    
+    private static long saturatedAdd(long a, long b) {
+        return (a > Long.MAX_VALUE - b) ? Long.MAX_VALUE : a + b;
+    }
+    
+    private static long saturatedMultiply(long a, long b) {
+        return ((b != 0L) && (a > Long.MAX_VALUE / b)) ? Long.MAX_VALUE : a * b;
+    }
+    
+    /**
+     * Returns the source text of the given section, with whitespace collapsed and shortened
+     */
+    private static String text(SQLGenParseContext ctx, SQLGenExpression expr) {
+        StringBuilder t = new StringBuilder();
+        for (int i = expr.startTokenIndex; (i <= expr.stopTokenIndex) && (i < ctx.tokens.size()); i++) {
+            SQLGenToken tok = ctx.tokens.get(i);
+            switch (tok.type) {
+                case ESCAPED_VAR:
+                    t.append('$');
+                    break;
+                case LITERAL_VAR:
+                    t.append('#');
+                    break;
+                case OPTION_VAR:
+                    t.append('?');
+                    break;
+                case TARGET_VAR:
+                    t.append('@');
+                    break;
+            }
+            tok.appendTo(t);
+        }
+        String result = SQLCodeGenerator.collapseWhitespace(t).trim();
+        return (result.length() > MAX_TEXT_LENGTH) ? result.substring(0, MAX_TEXT_LENGTH - 3) + "..." : result;
+    }
+    
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+    
+    /**
+     * Returns the entries of the statements with more than maxShapes shapes
+     */
+    public List<Entry> getEntriesExceeding(long maxShapes) {
+        ArrayList<Entry> result = new ArrayList<Entry>();
+        for (Entry entry : entries) {
+            if (entry.shapes > maxShapes) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the report as text: One line per statement, followed by one line per multiplying section.
+     */
+    public String toString() {
+        StringBuilder t = new StringBuilder();
+        t.append(srcFileName).append('\n');
+        for (Entry entry : entries) {
+            t.append("  ").append(entry.statement).append(": ");
+            t.append(entry.exact ? "" : "at most ").append(entry.shapes);
+            t.append((entry.shapes == 1L) ? " shape\n" : " shapes\n");
+            for (Section section : entry.sections) {
+                t.append("    x").append(section.factor).append(' ').append(section.text).append('\n');
+            }
+        }
+        return t.toString();
+    }
+}
@@ -26,10 +26,13 @@ import org.tamuno.util.TamunoUtils;
 /**
  * Fast scanner, tokenizes a given SQLGenerator Source into
  * Tokens manageable gby the SQLGenParser
- *  
+ * 
+ * The scanner works on a region of a char array, so statements can be scanned right 
+ * where they are within a source file. Token texts are not copied into Strings of their own:
+ * Literal texts (with escape characters removed) are collected in a single text buffer per scan,
+ * variable names are referenced within the source array, and both by offset.
  */
 public class SqlGenScanner {
-    private String str;
     
     private static final char openBracket = '[';
     private static final char closeBracket = ']';
@@ -44,44 +47,53 @@ public class SqlGenScanner {
     
     private static final int[] stopLiteralSet = TamunoUtils.bitfieldCreateCharSet("" + openBracket + closeBracket + requiredOpenBracket + requiredCloseBracket + escapedVar + literalVar + targetVar + optionVar + '"' + "'" + '\\');
     private static final int[] identifierSet = TamunoUtils.bitfieldCreateCharSet("abcdefghijklmnopqrstuvwxyzABCDERFGHIJKLMNOPQRSTUVWXYZ0123456789_");
-        
-    private SQLGenTokenType currentType = LITERAL;
-    private boolean inQuote = false;
-    private char quoteChar;
-    
     
     private int pos = 0;
-    private int tokenStart = 0;
+    private int end = 0;
     private char chars[];
+    private char text[];
+    private int textLength;
     
     public synchronized ArrayList<SQLGenToken> scanString(String str) throws SQLGenParseException {
-        this.str = str;
-        pos = 0;
-        currentType = LITERAL;
-        this.chars = str.toCharArray();
+        char source[] = str.toCharArray();
+        return scan(source, 0, source.length);
+    }
+    
+    /**
+     * Tokenizes the region start (inclusive) to end (exclusive) of the given char array.
+     * Positions of tokens and of parse errors are offsets within that array.
+     */
+    public synchronized ArrayList<SQLGenToken> scan(char source[], int start, int end) throws SQLGenParseException {
+        this.chars = source;
+        this.pos = start;
+        this.end = end;
+        // Literal texts never get longer than the source, since escapes only remove characters
+        this.text = new char[end - start];
+        this.textLength = 0;
+        boolean inQuote = false;
+        char quoteChar = 0;
+        int tokenStart = 0;
+        int tokenPos = start;
         ArrayList<SQLGenToken> result = new ArrayList<SQLGenToken>();
-        int len = chars.length;
         Stack<SQLGenTokenType> bracketStack = new Stack<SQLGenTokenType>();
-        StringBuilder currentTokenText = new StringBuilder();
         loop:
-        while (pos<len) {
+        while (pos<end) {
                     int npos = nextIndexOf(stopLiteralSet);
                     if (npos==-1) {
-                        currentTokenText.append(str.substring(pos));
-                        result.add(new SQLGenToken(currentType, currentTokenText.toString()));
-                        currentTokenText.setLength(0);
+                        appendText(pos, end);
+                        result.add(literalToken(tokenStart, tokenPos));
                         break loop;
                     }
-                    currentTokenText.append(str.substring(pos, npos));
+                    appendText(pos, npos);
                     // Skip character following escape char
                     if (chars[npos]=='\\') {
                         pos = npos+2;
                         if (inQuote) { // We preserve escape chars in quotes.
-                            currentTokenText.append('\\');
+                            text[textLength++] = '\\';
                         }
                         
-                        if (len>(npos+1)) {
-                            currentTokenText.append(chars[npos+1]);
+                        if (end>(npos+1)) {
+                            text[textLength++] = chars[npos+1];
                         }
                         continue loop;
                     }
@@ -90,7 +102,7 @@ public class SqlGenScanner {
                         if (chars[npos]==quoteChar) {
                             inQuote = false;
                         }
-                        currentTokenText.append(chars[npos]);
+                        text[textLength++] = chars[npos];
                         pos = npos+1;
                         continue loop;
                     }
@@ -98,102 +110,111 @@ public class SqlGenScanner {
                     if ((chars[npos]=='\'') || (chars[npos]=='"')) {
                         inQuote = true;
                         quoteChar = chars[npos];
-                        currentTokenText.append(quoteChar);
+                        text[textLength++] = quoteChar;
                         pos = npos+1;
                         continue loop;
                     }
-                    result.add(new SQLGenToken(currentType, currentTokenText.toString()));
-                    currentTokenText.setLength(0);
+                    result.add(literalToken(tokenStart, tokenPos));
+                    SQLGenTokenType varType = null;
                     switch (chars[npos]) {
                         case openBracket:
-                            result.add(new SQLGenToken(SQLGenTokenType.OPEN_BRACKET, ""+openBracket));
+                            result.add(bracketToken(SQLGenTokenType.OPEN_BRACKET, ""+openBracket, npos));
                             bracketStack.push(OPEN_BRACKET);
-                            pos = npos+1;
-                            continue loop;
+                            break;
                         case closeBracket:
-                            result.add(new SQLGenToken(SQLGenTokenType.CLOSE_BRACKET, ""+closeBracket));
+                            result.add(bracketToken(SQLGenTokenType.CLOSE_BRACKET, ""+closeBracket, npos));
                             if (bracketStack.empty() || (bracketStack.pop()!=OPEN_BRACKET)) {
                                 throw new SQLGenParseException(npos, "Mismatched closing bracket");
                             }
-                            pos = npos+1;
-                            continue loop;
+                            break;
                         case requiredOpenBracket:
-                            result.add(new SQLGenToken(SQLGenTokenType.REQUIRED_OPEN_BRACKET, ""+requiredOpenBracket));
+                            result.add(bracketToken(SQLGenTokenType.REQUIRED_OPEN_BRACKET, ""+requiredOpenBracket, npos));
                             bracketStack.push(REQUIRED_OPEN_BRACKET);
-                            pos = npos+1;
-                            continue loop;
+                            break;
                         case requiredCloseBracket:
-                            result.add(new SQLGenToken(SQLGenTokenType.REQUIRED_CLOSE_BRACKET, ""+requiredCloseBracket));
+                            result.add(bracketToken(SQLGenTokenType.REQUIRED_CLOSE_BRACKET, ""+requiredCloseBracket, npos));
                             if (bracketStack.empty() || (bracketStack.pop()!=REQUIRED_OPEN_BRACKET)) {
                                 throw new SQLGenParseException(npos, "Mismatched closing bracket");
                             }
-                            pos = npos+1;
-                            continue loop;
+                            break;
                         case escapedVar:
-                            currentType = SQLGenTokenType.ESCAPED_VAR; 
+                            varType = SQLGenTokenType.ESCAPED_VAR; 
                             break;
                         case literalVar:
-                            currentType = SQLGenTokenType.LITERAL_VAR; 
+                            varType = SQLGenTokenType.LITERAL_VAR; 
                             break;
                         case targetVar:
-                            currentType = SQLGenTokenType.TARGET_VAR;
+                            varType = SQLGenTokenType.TARGET_VAR;
                             break;
                         case optionVar:
-                            currentType = SQLGenTokenType.OPTION_VAR;
+                            varType = SQLGenTokenType.OPTION_VAR;
                             break;
                     }
-                    int cpos = pos;
                     pos = npos+1;
-                    // we have a variable, so we are going to parse it.
-                    String identifier = consumeIdentifier();
-                    String vartype = null;
-                    
-                    if (pos<chars.length) {
-                        if (chars[pos]==typeSeparator) {
-                            pos++;
-                            vartype = consumeIdentifier();
+                    if (varType != null) {
+                        // we have a variable, so we are going to parse it.
+                        int identifierStart = pos;
+                        int identifierEnd = consumeIdentifier();
+                        String vartype = null;
+
+                        if (pos<end) {
+                            if (chars[pos]==typeSeparator) {
+                                pos++;
+                                int typeStart = pos;
+                                int typeEnd = consumeIdentifier();
+                                if (typeEnd!=-1) {
+                                    vartype = new String(chars, typeStart, typeEnd - typeStart);
+                                }
+                            }
                         }
+                        if (identifierEnd==-1) {
+                            throw new SQLGenParseException(npos, "Missing identifier for variable");
+                        }
+                        SQLGenToken var = new SQLGenToken(varType, chars, identifierStart, identifierEnd, vartype);
+                        var.pos = npos;
+                        result.add(var);
                     }
-                    if (identifier==null) {
-                        throw new SQLGenParseException(cpos, "Missing identifier for variable");
-                    }
-                    result.add(new SQLGenToken(currentType, identifier, vartype));
-                    currentType = SQLGenTokenType.LITERAL;
+                    tokenStart = textLength;
+                    tokenPos = pos;
         }
         if (!bracketStack.empty()) {
-            throw new SQLGenParseException(str.length(), ""+ bracketStack.size() + " unclosed bracket(s) in "+ str);
+            throw new SQLGenParseException(end, ""+ bracketStack.size() + " unclosed bracket(s) in "+ new String(chars, start, end - start));
         }
         return result;
     }
     
+    private SQLGenToken literalToken(int tokenStart, int tokenPos) {
+        SQLGenToken tok = new SQLGenToken(SQLGenTokenType.LITERAL, text, tokenStart, textLength, null);
+        tok.pos = tokenPos;
+        return tok;
+    }
     
+    private static SQLGenToken bracketToken(SQLGenTokenType type, String value, int pos) {
+        SQLGenToken tok = new SQLGenToken(type, value);
+        tok.pos = pos;
+        return tok;
+    }
+    
+    private void appendText(int from, int to) {
+        System.arraycopy(chars, from, text, textLength, to - from);
+        textLength += to - from;
+    }
     
-    private String consumeIdentifier() {
+    /**
+     * Consumes an identifier at the current position.
+     * @return end offset of the identifier, or -1 if there is none
+     */
+    private int consumeIdentifier() {
         int npos = endIndexOf(identifierSet);
-        if (npos==-1) {
-            return null;
-        }
         if (pos==npos) {
-            return null;
+            return -1;
         }
-        String result = str.substring(pos, npos);
         pos = npos;
-        return result;
-    }
-    
-    private final int nextIndexOf(char c) {
-        int len = chars.length;
-        for (int p=pos;p<len;p++) {
-            if (chars[p]==c) {
-                return p;
-            }
-        }
-        return -1;
+        return npos;
     }
     
     private final int nextIndexOf(int charsetBitfield[]) {
-        int len = chars.length;
-        for (int p=pos;p<len;p++) {
+        for (int p=pos;p<end;p++) {
             if (TamunoUtils.bitfieldGet(charsetBitfield, chars[p])!=0) {
                 return p;
             }
@@ -202,13 +223,12 @@ public class SqlGenScanner {
     }
     
     private final int endIndexOf(int charsetBitfield[]) {
-        int len = chars.length;
-        for (int p=pos;p<len;p++) {
+        for (int p=pos;p<end;p++) {
             if (TamunoUtils.bitfieldGet(charsetBitfield, chars[p])==0) {
                 return p;
             }
         }
-        return len;
+        return end;
     }
     
     public static void main(String args[]) {
@@ -217,7 +237,7 @@ public class SqlGenScanner {
             //ArrayList<SQLGenToken> tokens = scanner.scanString("SELECT @a, count(*) as @b:int, @c:Date FROM #table [WHERE { user_id=$user_id:int } [AND age>=$min_age:int]]");
             ArrayList<SQLGenToken> tokens = scanner.scanString("SELECT [] { @user_id:int, [ ?test 'O{K' as test, ] @user_name:String, @birthdate:Date } FROM users [ WHERE [user_name=$user_name] [AND] [active=$active:int] ] LIMIT 1;");
             for (SQLGenToken t : tokens) {
-                System.out.println(t.type.toString() + " '" + t.value+"' of type "+t.vartype);
+                System.out.println(t.type.toString() + " '" + t.value()+"' of type "+t.vartype);
             }
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -22,6 +22,8 @@ public class AutomaticGenerators {
         registry.put("Delete Row", new DeleteRowCGen());
         registry.put("Select Row", new SelectRowCGen());
         registry.put("List Rows", new ListRowsCGen());
+        registry.put("Seek Rows", new SeekRowsCGen());
+        registry.put("Scan Rows", new ScanRowsCGen());
         
     }
     
@@ -0,0 +1,78 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen.automate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Generates a statement which selects the rows of a range of the key, for scanning a table
+ * in parallel ranges (see org.tamuno.runtime.sql.PartitionedScan). The key is the one of 
+ * SeekRowsCGen, which has to be a single integer or timestamp column:
+ * <PRE>
+ *   scanUsers:=SELECT @user_id:int, @user_name FROM users 
+ *       WHERE user_id>=$from_user_id:int AND user_id&lt;$to_user_id:int
+ *       [AND user_name=$user_name];
+ * </PRE>
+ * If a column is named like one of the range variables, they are numbered as in SeekRowsCGen,
+ * e.g. from2_user_id and to2_user_id for a table with a from_user_id column.
+ * @author kai
+ */
+public class ScanRowsCGen implements ITableCodeGenerator {
+
+    public void appendCode(StringBuilder t, Connection connection, String catalog, String schema, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        ColumnInfo[] info = ColumnInfo.getColumnInfo(meta, catalog, schema, table);
+        List<ColumnInfo> key = SeekRowsCGen.getSeekKey(meta, catalog, schema, table, info);
+        String keyType = (key.size() == 1) ? key.get(0).getSQLGType() : null;
+        if (!("int".equals(keyType) || "long".equals(keyType) || "Timestamp".equals(keyType))) {
+            throw new SQLException("Table " + table + " has no single integer or timestamp key to scan ranges of");
+        }
+        appendCode(t, table, info, key.get(0));
+    }
+
+    /**
+     * Appends the statement selecting a range of the given key column
+     */
+    void appendCode(StringBuilder t, String table, ColumnInfo info[], ColumnInfo key) {
+        // The input variables of the range must not be those of the columns
+        HashSet<String> columnNames = new HashSet<String>();
+        for (ColumnInfo column : info) {
+            columnNames.add(column.name.toLowerCase());
+        }
+        List<ColumnInfo> keys = Collections.singletonList(key);
+        String from = "from_";
+        String to = "to_";
+        for (int n = 2; SeekRowsCGen.containsAny(columnNames, from, keys) || SeekRowsCGen.containsAny(columnNames, to, keys); n++) {
+            from = "from" + n + "_";
+            to = "to" + n + "_";
+        }
+        String k = key.name;
+        String keySuffix = SeekRowsCGen.typeSuffix(key);
+        t.append("scan");
+        t.append(TamunoUtils.capitalize(table)+":=SELECT \n");
+        int c = 0;
+        for (ColumnInfo column : info) {
+            if (c++>0) {
+                t.append(",\n");
+            }
+            t.append("\t\t@" + column.name + SeekRowsCGen.typeSuffix(column));
+        }
+        t.append("\n\tFROM "+table + "\n");
+        t.append("\tWHERE " + k + ">=$" + from + k + keySuffix + " AND " + k + "<$" + to + k + keySuffix + "\n");
+        for (ColumnInfo column : info) {
+            t.append("\t\t[AND " + column.name+ "=$"+column.name + SeekRowsCGen.typeSuffix(column) + "]\n");
+        }
+        t.setLength(t.length() - 1);
+        t.append(";\n");
+    }
+
+}
@@ -0,0 +1,189 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen.automate;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Generates a statement which pages through a table by keyset (seek) pagination:
+ * instead of skipping offset rows, every page starts right after the key of the last row
+ * of the previous page, so fetching a page takes the same time anywhere within the table.
+ *
+ * The rows are ordered by the primary key, or, if there is none, by the shortest unique
+ * index on non null columns. The key of the last row of a page is the token of the next
+ * page, and is passed as the after_ input variables:
+ * <PRE>
+ *   seekUsers:=SELECT @user_id:int, @user_name FROM users WHERE 1=1
+ *       [AND (user_id>$after_user_id:int)]
+ *       [AND user_name=$user_name]
+ *       ORDER BY user_id
+ *       LIMIT #limit:int;
+ * </PRE>
+ * If a column is named like one of these variables, they are numbered instead, e.g. after2_user_id
+ * for a table with an after_user_id column, or limit2 for one with a limit column.
+ * @author kai
+ */
+public class SeekRowsCGen implements ITableCodeGenerator {
+
+    public void appendCode(StringBuilder t, Connection connection, String catalog, String schema, String table) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        ColumnInfo[] info = ColumnInfo.getColumnInfo(meta, catalog, schema, table);
+        List<ColumnInfo> key = getSeekKey(meta, catalog, schema, table, info);
+        if (key.isEmpty()) {
+            throw new SQLException("Table " + table + " has neither a primary key nor a unique index on non null columns to seek by");
+        }
+        appendCode(t, table, info, key);
+    }
+
+    /**
+     * Appends the statement seeking by the given key columns
+     */
+    void appendCode(StringBuilder t, String table, ColumnInfo info[], List<ColumnInfo> key) {
+        // The input variables of the key and the limit must not be those of the columns
+        HashSet<String> columnNames = new HashSet<String>();
+        for (ColumnInfo column : info) {
+            columnNames.add(column.name.toLowerCase());
+        }
+        String after = "after_";
+        for (int n = 2; containsAny(columnNames, after, key); n++) {
+            after = "after" + n + "_";
+        }
+        String limit = "limit";
+        for (int n = 2; columnNames.contains(limit); n++) {
+            limit = "limit" + n;
+        }
+        t.append("seek");
+        t.append(TamunoUtils.capitalize(table)+":=SELECT \n");
+        int c = 0;
+        for (ColumnInfo column : info) {
+            if (c++>0) {
+                t.append(",\n");
+            }
+            t.append("\t\t@" + column.name + typeSuffix(column));
+        }
+        t.append("\n\tFROM "+table + " WHERE 1=1\n");
+        // (k1>$after_k1 OR (k1=$after_k1 AND k2>$after_k2) OR ...), as row value comparisons are not supported everywhere
+        t.append("\t\t[AND (");
+        for (int i = 0; i < key.size(); i++) {
+            if (i > 0) {
+                t.append(" OR (");
+                for (int j = 0; j < i; j++) {
+                    t.append(key.get(j).name + "=$" + after + key.get(j).name + typeSuffix(key.get(j)) + " AND ");
+                }
+            }
+            t.append(key.get(i).name + ">$" + after + key.get(i).name + typeSuffix(key.get(i)));
+            if (i > 0) {
+                t.append(")");
+            }
+        }
+        t.append(")]\n");
+        for (ColumnInfo column : info) {
+            t.append("\t\t[AND " + column.name+ "=$"+column.name + typeSuffix(column) + "]\n");
+        }
+        t.append("\tORDER BY ");
+        for (int i = 0; i < key.size(); i++) {
+            t.append(((i > 0) ? ", " : "") + key.get(i).name);
+        }
+        t.append("\n\tLIMIT #" + limit + ":int;\n");
+    }
+
+    /**
+     * Returns true if any of the names of the key columns with the given prefix is in names
+     */
+    static boolean containsAny(Set<String> names, String prefix, List<ColumnInfo> key) {
+        for (ColumnInfo column : key) {
+            if (names.contains((prefix + column.name).toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the columns to order and seek by: the primary key, or the unique index with the
+     * fewest columns, all of which are non null. Empty if there are none.
+     */
+    static List<ColumnInfo> getSeekKey(DatabaseMetaData meta, String catalog, String schema, String table, ColumnInfo info[]) throws SQLException {
+        HashMap<String, ColumnInfo> columns = new HashMap<String, ColumnInfo>();
+        ArrayList<ColumnInfo> result = new ArrayList<ColumnInfo>();
+        for (ColumnInfo column : info) {
+            columns.put(column.name, column);
+        }
+        TreeMap<Integer, String> primaryKey = new TreeMap<Integer, String>();
+        ResultSet rs = meta.getPrimaryKeys(catalog, schema, table);
+        try {
+            while (rs.next()) {
+                primaryKey.put(rs.getInt("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        if (addColumns(primaryKey.values(), columns, result)) {
+            return result;
+        }
+        Map<String, TreeMap<Integer, String>> indices = new LinkedHashMap<String, TreeMap<Integer, String>>();
+        rs = meta.getIndexInfo(catalog, schema, table, true, true);
+        try {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                if ((index == null) || (rs.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) || rs.getBoolean("NON_UNIQUE")) {
+                    continue;
+                }
+                TreeMap<Integer, String> indexColumns = indices.get(index);
+                if (indexColumns == null) {
+                    indexColumns = new TreeMap<Integer, String>();
+                    indices.put(index, indexColumns);
+                }
+                indexColumns.put((int) rs.getShort("ORDINAL_POSITION"), rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        ArrayList<ColumnInfo> candidate = new ArrayList<ColumnInfo>();
+        for (TreeMap<Integer, String> indexColumns : indices.values()) {
+            candidate.clear();
+            if (addColumns(indexColumns.values(), columns, candidate) && ((result.isEmpty()) || (candidate.size() < result.size()))) {
+                result.clear();
+                result.addAll(candidate);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the named columns to result.
+     * @return false if there are none, or any of them is unknown or can be null, as nulls can not be sought.
+     */
+    private static boolean addColumns(Iterable<String> names, Map<String, ColumnInfo> columns, List<ColumnInfo> result) {
+        for (String name : names) {
+            ColumnInfo column = columns.get(name);
+            if ((column == null) || (column.canBeNull)) {
+                result.clear();
+                return false;
+            }
+            result.add(column);
+        }
+        return !result.isEmpty();
+    }
+
+    static String typeSuffix(ColumnInfo column) {
+        String type = column.getSQLGType();
+        return "String".equals(type) ? "" : ":" + type;
+    }
+
+}
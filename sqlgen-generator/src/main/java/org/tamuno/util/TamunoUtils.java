@@ -44,21 +44,57 @@ public class TamunoUtils {
         if (!file.exists()) {
             return null;
         }
-        int size = (int) file.length();
-        byte[] buf = new byte[size];
+        return new String(loadFile(file), encoding);
+    }
+
+    /**
+     * Loads a Text file into a char array, using a given char encoding. 
+     * Avoids the intermediate String copy of loadTextFile
+     */
+    public static char[] loadTextFileChars(File file, String encoding) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        java.nio.CharBuffer chars = java.nio.charset.Charset.forName(encoding).decode(java.nio.ByteBuffer.wrap(loadFile(file)));
+        if (chars.hasArray() && (chars.arrayOffset() == 0) && (chars.array().length == chars.remaining())) {
+            return chars.array();
+        }
+        char result[] = new char[chars.remaining()];
+        chars.get(result);
+        return result;
+    }
+
+    private static byte[] loadFile(File file) throws IOException {
+        byte[] buf = new byte[(int) file.length()];
         FileInputStream in = new FileInputStream(file);
         try {
             int rsize = 0;
-            int r = 0;
-            while (r >= 0 && rsize < file.length()) {
-                r = in.read(buf);
-                r += rsize;
+            while (rsize < buf.length) {
+                int r = in.read(buf, rsize, buf.length - rsize);
+                if (r < 0) {
+                    return Arrays.copyOf(buf, rsize);
+                }
+                rsize += r;
             }
         } finally {
             in.close();
         }
-        String ttext = new String(buf, encoding);
-        return ttext;
+        return buf;
+    }
+
+    /**
+     * Returns the path of file relative to the directory baseDir, with / as separator on all
+     * platforms. Returns the absolute path of file if there is no relative path 
+     * (e.g. if both are on different drives).
+     */
+    public static String relativePath(File baseDir, File file) {
+        java.nio.file.Path base = baseDir.toPath().toAbsolutePath().normalize();
+        java.nio.file.Path path = file.toPath().toAbsolutePath().normalize();
+        try {
+            return base.relativize(path).toString().replace(File.separatorChar, '/');
+        } catch (IllegalArgumentException ex) {
+            return path.toString();
+        }
     }
 
     /**
@@ -86,6 +122,54 @@ public class TamunoUtils {
         }
     }
 
+    /**
+     * Saves a String into a Text file, using a given char encoding, unless the file
+     * already has exactly that content. Leaves the modification time of unchanged files alone.
+     * The file is replaced atomically (see saveFileAtomically).
+     * @return true if the file has been written
+     */
+    public static boolean saveTextFileIfChanged(File file, String text, String encoding) throws IOException {
+        byte[] buf = text.getBytes(encoding);
+        if (file.isFile() && (file.length() == buf.length) && Arrays.equals(loadFile(file), buf)) {
+            return false;
+        }
+        saveFileAtomically(file, buf);
+        return true;
+    }
+
+    /**
+     * Writes the data into a temporary file next to the given file, which then replaces the file.
+     * Where the file system supports it, the file is replaced atomically, so readers either
+     * see the old or the new content, but never a partially written file.
+     */
+    public static void saveFileAtomically(File file, byte data[]) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        File tmp = File.createTempFile("." + file.getName(), ".tmp", dir);
+        try {
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(data);
+            } finally {
+                out.close();
+            }
+            replaceAtomically(tmp, file);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Moves a temporary file, usually created next to the given file, over that file, 
+     * atomically where the file system supports it.
+     */
+    public static void replaceAtomically(File tmp, File file) throws IOException {
+        try {
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE, java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        } catch (java.nio.file.AtomicMoveNotSupportedException ex) {
+            java.nio.file.Files.move(tmp.toPath(), file.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     /**
      * Sets a given bit in a given int array bitfield.
      * @param field array of ints, to be used as a bitfield.
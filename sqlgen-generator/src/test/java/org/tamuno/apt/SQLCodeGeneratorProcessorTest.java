@@ -0,0 +1,121 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.apt;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+import org.tamuno.annotations.SQLGenSources;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * The processor has to generate the classes of the sources named by SQLGenSources within javac,
+ * the base class of a Base.Dialect source only once for all dialects, and report parse errors
+ * against the annotated element.
+ */
+public class SQLCodeGeneratorProcessorTest {
+
+    private static final String SOURCE = "selectUser:=SELECT @user_id:int, @user_name FROM users [WHERE user_name=$user_name];\n";
+
+    private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+    private static File tempDir() throws Exception {
+        File dir = File.createTempFile("sqlgenapt", "");
+        dir.delete();
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static String path(Class<?> type) throws Exception {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    /**
+     * Compiles the package-info.java of package p within dir/src with the processor, into dir/classes
+     * and dir/generated.
+     */
+    private boolean compile(File dir, String annotation, String... sources) throws Exception {
+        File src = new File(dir, "src/p");
+        src.mkdirs();
+        TamunoUtils.saveTextFile(new File(src, "package-info.java"), annotation + "\npackage p;\n\nimport org.tamuno.annotations.SQLGenSources;\n", "UTF-8");
+        for (int i = 0; i < sources.length; i += 2) {
+            TamunoUtils.saveTextFile(new File(src, sources[i]), sources[i + 1], "UTF-8");
+        }
+        new File(dir, "classes").mkdirs();
+        new File(dir, "generated").mkdirs();
+        String classpath = path(SQLGenSources.class) + File.pathSeparator + path(SQLCodeGeneratorProcessor.class);
+        List<String> options = new ArrayList<String>(Arrays.asList(
+                "-classpath", classpath, "-processorpath", classpath,
+                "-processor", SQLCodeGeneratorProcessor.class.getName(),
+                "-sourcepath", new File(dir, "src").getPath(),
+                "-d", new File(dir, "classes").getPath(),
+                "-s", new File(dir, "generated").getPath()));
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null);
+        try {
+            return compiler.getTask(null, files, diagnostics, options, null, files.getJavaFileObjects(new File(src, "package-info.java"))).call();
+        } finally {
+            files.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void generate() throws Exception {
+        File dir = tempDir();
+        try {
+            assertTrue(diagnostics.getDiagnostics().toString(), compile(dir, "@SQLGenSources({\"Users.sqlg\", \"Shared.MySQL.sqlg\", \"Shared.PostgreSQL.sqlg\"})",
+                    "Users.sqlg", SOURCE, "Shared.MySQL.sqlg", SOURCE, "Shared.PostgreSQL.sqlg", SOURCE));
+            for (String name : new String[]{"Users", "Shared", "SharedMySQL", "SharedPostgreSQL"}) {
+                assertTrue(name, new File(dir, "generated/p/" + name + ".java").isFile());
+                assertTrue(name, new File(dir, "classes/p/" + name + ".class").isFile());
+                assertTrue(name, new File(dir, "classes/META-INF/native-image/org.tamuno.sqlgen/p." + name + "/serialization-config.json").isFile());
+            }
+            assertTrue(TamunoUtils.loadTextFile(new File(dir, "generated/p/SharedMySQL.java")).contains("extends Shared "));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void parseError() throws Exception {
+        File dir = tempDir();
+        try {
+            assertFalse(compile(dir, "@SQLGenSources(\"Broken.sqlg\")", "Broken.sqlg", "broken:=SELECT @a:int FROM t [WHERE a=$a;\n"));
+            Diagnostic<? extends JavaFileObject> error = null;
+            for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+                if (d.getKind() == Diagnostic.Kind.ERROR) {
+                    error = d;
+                }
+            }
+            assertNotNull(error);
+            assertTrue(error.getMessage(null), error.getMessage(null).startsWith("Parse error in p/Broken.sqlg"));
+            assertTrue(error.getSource().getName().endsWith("package-info.java"));
+            assertFalse(new File(dir, "generated/p/Broken.java").exists());
+        } finally {
+            delete(dir);
+        }
+    }
+}
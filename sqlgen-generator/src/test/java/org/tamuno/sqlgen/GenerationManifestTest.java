@@ -0,0 +1,50 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import org.junit.Test;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs sharing a manifest must not remove each other's outputs, only those of deleted sources.
+ */
+public class GenerationManifestTest {
+
+    @Test
+    public void removeStale() throws Exception {
+        File dir = File.createTempFile("manifest", "");
+        dir.delete();
+        dir.mkdirs();
+        File a = new File(dir, "A.sqlg");
+        File b = new File(dir, "B.sqlg");
+        File aOut = new File(dir, "A.java");
+        File bOut = new File(dir, "B.java");
+        for (File f : new File[] {a, b, aOut, bOut}) {
+            TamunoUtils.saveTextFile(f, f.getName(), "UTF-8");
+        }
+        File file = new File(dir, "manifest.properties");
+        GenerationManifest manifest = new GenerationManifest(file, "");
+        manifest.update(a, manifest.hash(a), aOut);
+        manifest.update(b, manifest.hash(b), bOut);
+        manifest.save();
+        // A run which only generates A
+        manifest = new GenerationManifest(file, "");
+        assertTrue(manifest.isUpToDate(a, manifest.hash(a), aOut));
+        assertTrue(manifest.removeStale().isEmpty());
+        assertTrue(bOut.isFile());
+        b.delete();
+        assertEquals(1, manifest.removeStale().size());
+        assertFalse(bOut.exists());
+        assertTrue(aOut.isFile());
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+}
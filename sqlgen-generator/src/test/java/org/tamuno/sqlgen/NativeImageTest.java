@@ -0,0 +1,127 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+import org.tamuno.runtime.sql.BaseSQLApi;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * A small app using generated code has to build into a native image with the generated
+ * serialization config and the native-image.properties of the runtime, and print the same as on
+ * the JVM. Skipped unless native-image is on the PATH.
+ */
+public class NativeImageTest {
+
+    private static final String MAIN = "package app;\n\n"
+            + "import java.io.*;\n\n"
+            + "public class Main {\n"
+            + "    public static void main(String args[]) throws Exception {\n"
+            + "        SQLCode sqlCode = new SQLCode();\n"
+            + "        sqlCode.setSqlDialect(\"PostgreSQL\");\n"
+            + "        System.out.println(sqlCode.selectUser(\"it's\", 1));\n"
+            + "        System.out.println(sqlCode.selectUser().forShape(sqlCode.selectUser().getShapes()[1]));\n"
+            + "        SQLCode.SelectUserRow row = new SQLCode.SelectUserRow();\n"
+            + "        row.user_id = 42;\n"
+            + "        row.user_name = \"kai\";\n"
+            + "        row.birthdate = new java.sql.Date(0L);\n"
+            + "        ByteArrayOutputStream bytes = new ByteArrayOutputStream();\n"
+            + "        ObjectOutputStream out = new ObjectOutputStream(bytes);\n"
+            + "        out.writeObject(row);\n"
+            + "        out.close();\n"
+            + "        SQLCode.SelectUserRow copy = (SQLCode.SelectUserRow) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();\n"
+            + "        System.out.println(copy.user_id + \" \" + copy.user_name + \" \" + copy.birthdate.getTime());\n"
+            + "    }\n"
+            + "}\n";
+
+    private static File findOnPath(String name) {
+        String path = System.getenv("PATH");
+        if (path == null) {
+            return null;
+        }
+        for (String dir : path.split(File.pathSeparator)) {
+            for (String suffix : new String[]{"", ".cmd", ".exe"}) {
+                File file = new File(dir, name + suffix);
+                if (file.isFile() && file.canExecute()) {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String run(File dir, String... command) throws Exception {
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream in = process.getInputStream();
+        byte buffer[] = new byte[8192];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            output.write(buffer, 0, n);
+        }
+        String result = output.toString("UTF-8");
+        assertEquals(Arrays.toString(command) + "\n" + result, 0, process.waitFor());
+        return result;
+    }
+
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    @Test
+    public void nativeImage() throws Exception {
+        File nativeImage = findOnPath("native-image");
+        assumeTrue(nativeImage != null);
+        File dir = File.createTempFile("sqlgennative", "");
+        dir.delete();
+        File src = new File(dir, "src/app");
+        File classes = new File(dir, "classes");
+        src.mkdirs();
+        classes.mkdirs();
+        try {
+            File source = new File(new File(".").getCanonicalPath() + "/src/test/java/org/tamuno/sqlgen/test/input/SQLCode.sqlg");
+            SQLCodeGenerator cgen = new SQLCodeGenerator();
+            cgen.generateSQLCode(source, new File(src, "SQLCode.java"), "app", "SQLCode", null, false);
+            cgen.generateNativeImageConfigIfChanged(source, new File(classes, SQLCodeGenerator.nativeImageConfigPath("app", "SQLCode")), "app", "SQLCode", null, false);
+            TamunoUtils.saveTextFile(new File(src, "Main.java"), MAIN, "UTF-8");
+
+            String runtime = new File(BaseSQLApi.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            String classpath = classes.getPath() + File.pathSeparator + runtime;
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+            try {
+                List<String> options = Arrays.asList("-classpath", runtime, "-d", classes.getPath(), "-proc:none");
+                assertTrue(compiler.getTask(null, files, null, options, null, files.getJavaFileObjects(new File(src, "SQLCode.java"), new File(src, "Main.java"))).call());
+            } finally {
+                files.close();
+            }
+
+            File java = new File(System.getProperty("java.home"), "bin/java");
+            String expected = run(dir, java.getPath(), "-cp", classpath, "app.Main");
+            assertTrue(expected, expected.contains("42 kai 0"));
+            run(dir, nativeImage.getPath(), "--no-fallback", "-cp", classpath, "-o", new File(dir, "app").getPath(), "app.Main");
+            assertEquals(expected, run(dir, new File(dir, "app").getPath()));
+        } finally {
+            delete(dir);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+
+
+package org.tamuno.sqlgen;
+
+//~--- non-JDK imports --------------------------------------------------------
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+//~--- JDK imports ------------------------------------------------------------
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.tamuno.runtime.sql.BaseSQLApi;
+import org.tamuno.runtime.sql.ShapeProfile;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ *
+ * @author kai
+ */
+public class SQLCodeGeneratorTest {
+    static String currentPath;
+    static String expectedPath;
+    static File   outDir;
+    static String outPath;
+    static String srcPath;
+
+    public SQLCodeGeneratorTest() {}
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        currentPath = new File(".").getCanonicalPath();
+        outPath     = currentPath + "/src/test/java/org/tamuno/sqlgen/test/results/";
+
+        outDir      = new File(outPath);
+        outDir.mkdirs();
+        // Delete resulting files from last run. These could spoil the correctness of the test.
+        File remnants[] = outDir.listFiles();
+        for (File remnant : remnants) {
+            if (remnant.isFile()) {
+                remnant.delete();
+            }
+        }
+        srcPath      = currentPath + "/src/test/java/org/tamuno/sqlgen/test/input/";
+        expectedPath = currentPath + "/src/test/java/org/tamuno/sqlgen/test/expected/";
+    }
+
+    @AfterClass
+    public static void checkResults() throws Exception {
+        System.err.println("Comparing contents of test.results directory against contents of test.expected");
+        File expdir = new File(expectedPath);
+        File contents[] = expdir.listFiles();
+        if (contents!=null) {
+            for (File expected : contents) {
+                File result = new File(outDir, expected.getName());
+                System.err.println("Compare Check "+expected.getName()+ " generated VS expected version");
+                assertTrue(result.exists());
+                assertTrue(TamunoUtils.loadTextFile(result).equals(TamunoUtils.loadTextFile(expected)));
+
+            }
+        }
+    }
+    
+    /**
+     * Test of generateSQLCode method, of class SQLCodeGenerator.
+     */
+    @Test
+    public void generateSQLCode() throws Exception {
+        System.out.println("generateSQLCode");
+
+        File             sourceFile           = null;
+        File             targetJavaSourceFile = null;
+        String           packagename          = "";
+        String           classname            = "";
+        String           baseclass            = "";
+        SQLCodeGenerator instance             = new SQLCodeGenerator();
+
+        instance.generateSQLCode(new File(srcPath+"SQLCode.sqlg"), new File(outPath+"SQLCode.java.txt"), "org.tamuno.sqlgen.test.results", "SQLCode", null, false);
+        //assertTrue(TamunoUtils.loadTextFile(new File(outPath+"SQLCode.java.txt"))!=null);
+    }
+
+    /**
+     * Test of generateSQLCode method with a statement of more than 64 input variables.
+     */
+    @Test
+    public void generateSQLCodeWide() throws Exception {
+        new SQLCodeGenerator().generateSQLCode(new File(srcPath+"Wide.sqlg"), new File(outPath+"Wide.java.txt"), "org.tamuno.sqlgen.test.results", "Wide", null, false);
+        String code = TamunoUtils.loadTextFile(new File(outPath+"Wide.java.txt"));
+        assertTrue(code.contains("class SelectWide implements RoutableStatement, "));
+        assertFalse(code.contains("getShapes()"));
+        // Only shaped statements are listed for warming up
+        assertTrue(code.contains("return new ShapedStatement[] {};"));
+        assertTrue(code.contains("public long[] calcAvailableParamsBitset() {"));
+        assertTrue(code.contains("result[0] |= -9223372036854775808L;"));
+        assertTrue(code.contains("result[1] |= 1L;"));
+        // The condition on c62, c63 and c64 spans both words
+        assertTrue(code.contains("if (((available[0] & -4611686018427387904L)==-4611686018427387904L) && ((available[1] & 1L)==1L)) {"));
+        assertTrue(code.contains("if (((available[1] & 6L)==6L)) {"));
+
+        // Compile the generated code, and render it with variables on both sides of the boundary
+        File dir = File.createTempFile("sqlgenwide", "");
+        dir.delete();
+        File src = new File(dir, "org/tamuno/sqlgen/test/results/Wide.java");
+        src.getParentFile().mkdirs();
+        TamunoUtils.saveTextFile(src, code, "UTF-8");
+        try {
+            String runtime = new File(BaseSQLApi.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+            try {
+                List<String> options = Arrays.asList("-classpath", runtime, "-d", dir.getPath(), "-proc:none");
+                assertTrue(compiler.getTask(null, files, null, options, null, files.getJavaFileObjects(src)).call());
+            } finally {
+                files.close();
+            }
+            URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, BaseSQLApi.class.getClassLoader());
+            try {
+                Object api = loader.loadClass("org.tamuno.sqlgen.test.results.Wide").newInstance();
+                Object statement = api.getClass().getMethod("selectWide").invoke(api);
+                Class<?> type = statement.getClass();
+                type.getField("c1").set(statement, 1);
+                type.getField("c63").set(statement, 63);
+                type.getField("c64").set(statement, 64);
+                type.getField("c65").set(statement, 65);
+                assertArrayEquals(new long[]{(1L << 1) | (1L << 63), 1L | (1L << 1)}, (long[]) type.getMethod("calcAvailableParamsBitset").invoke(statement));
+                String sql = statement.toString();
+                assertTrue(sql, sql.contains("AND c1=1"));
+                assertFalse(sql, sql.contains("c62"));
+                assertFalse(sql, sql.contains("c65"));
+                type.getField("c62").set(statement, 62);
+                type.getField("c66").set(statement, 66);
+                sql = statement.toString();
+                assertTrue(sql, sql.contains("AND c62=62 AND c63=63 AND c64=64"));
+                assertTrue(sql, sql.contains("AND (c65=65 OR c66=66)"));
+            } finally {
+                loader.close();
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * A parse error must not leave a truncated target file behind.
+     */
+    @Test
+    public void generateSQLCodeParseError() throws Exception {
+        File dir = File.createTempFile("sqlgen", "");
+        dir.delete();
+        dir.mkdirs();
+        File source = new File(dir, "Out.sqlg");
+        File target = new File(dir, "Out.java");
+        TamunoUtils.saveTextFile(source, "a:=SELECT @a:int FROM t;\n\nb:=SELECT @b:int FROM t [WHERE b=$b;\n", "UTF-8");
+        try {
+            new SQLCodeGenerator().generateSQLCode(source, target, "", "Out", null, false);
+            fail("Unclosed bracket accepted");
+        } catch (SQLGenParseException e) {
+            // expected
+        }
+        assertFalse(target.exists());
+        assertEquals(1, dir.listFiles().length);
+        source.delete();
+        dir.delete();
+    }
+
+    /**
+     * Test of generateSQLCode method with a profile, of class SQLCodeGenerator.
+     */
+    @Test
+    public void generateSQLCodeProfiled() throws Exception {
+        ShapeProfile profile = new ShapeProfile();
+        profile.load(new File(srcPath+"SQLCode.profile"));
+        SQLCodeGenerator instance = new SQLCodeGenerator();
+        instance.setProfile(profile);
+        instance.generateSQLCode(new File(srcPath+"SQLCode.sqlg"), new File(outPath+"SQLCodeProfiled.java.txt"), "org.tamuno.sqlgen.test.results", "SQLCodeProfiled", null, false);
+        assertEquals("[]", instance.findUnusedStatements(TamunoUtils.loadTextFile(new File(srcPath+"SQLCode.sqlg")).toCharArray(), "org.tamuno.sqlgen.test.results", "SQLCodeProfiled").toString());
+        profile = new ShapeProfile();
+        profile.record("org.tamuno.sqlgen.test.results.SQLCodeProfiled.selectUser", 1L, 1L);
+        profile.record("org.tamuno.sqlgen.test.results.SQLCode.countUsers", 1L, 1L);
+        instance.setProfile(profile);
+        assertEquals("[selectUserLogin, countUsers]", instance.findUnusedStatements(TamunoUtils.loadTextFile(new File(srcPath+"SQLCode.sqlg")).toCharArray(), "org.tamuno.sqlgen.test.results", "SQLCodeProfiled").toString());
+    }
+
+    /**
+     * Test of generateNativeImageConfig method, of class SQLCodeGenerator.
+     */
+    @Test
+    public void generateNativeImageConfig() throws Exception {
+        SQLCodeGenerator instance = new SQLCodeGenerator();
+        instance.generateNativeImageConfigIfChanged(new File(srcPath+"SQLCode.sqlg"), new File(outPath+"SQLCode.serialization-config.json.txt"), "org.tamuno.sqlgen.test.results", "SQLCode", null, false);
+        assertEquals("[\n\n]\n", instance.generateNativeImageConfig(TamunoUtils.loadTextFile(new File(srcPath+"SQLCode.sqlg")).toCharArray(), "org.tamuno.sqlgen.test.results", "SQLCodeMySQL", "SQLCode", true));
+        assertEquals("META-INF/native-image/org.tamuno.sqlgen/org.tamuno.sqlgen.test.results.SQLCode/serialization-config.json", SQLCodeGenerator.nativeImageConfigPath("org.tamuno.sqlgen.test.results", "SQLCode"));
+    }
+
+    /**
+     * Test of collapseWhitespace method, of class SQLCodeGenerator.
+     */
+    @Test
+    public void collapseWhitespace() {
+        assertEquals("SELECT a, b FROM t WHERE c='x  \n y' ", SQLCodeGenerator.collapseWhitespace("SELECT a,\n\t b  FROM t\r\n WHERE c='x  \n y' \n"));
+        assertEquals("SELECT a -- keep  this\n FROM t", SQLCodeGenerator.collapseWhitespace("SELECT a -- keep  this\n    FROM t"));
+        assertEquals("WHERE a=\"it\\\"s  here\" ", SQLCodeGenerator.collapseWhitespace("WHERE a=\"it\\\"s  here\"  "));
+    }
+
+
+    private static boolean isReadOnly(String sql) throws Exception {
+        SQLGenParseContext ctx = new SQLGenParseContext(null, false);
+        char source[] = sql.toCharArray();
+        ctx.parse(source, 0, source.length, SQLCodeGenerator.targetTypeMap);
+        return ctx.isReadOnly();
+    }
+
+    /**
+     * Only SELECTs which neither write nor lock rows nor depend on the session may run on replicas.
+     */
+    @Test
+    public void readOnly() throws Exception {
+        assertTrue(isReadOnly("SELECT @a FROM t WHERE b='FOR UPDATE' -- FOR UPDATE\n [AND c=$for_update]"));
+        assertTrue(isReadOnly("select @a from t /* into */ where \"into\"=$into"));
+        assertTrue(isReadOnly("SELECT @a FROM t FOR XML AUTO"));
+        assertTrue(isReadOnly("SELECT @a FROM t WHERE b='it\\'s FOR UPDATE'"));
+        assertFalse(isReadOnly("UPDATE t SET a=$a"));
+        assertFalse(isReadOnly("WITH d AS (DELETE FROM t RETURNING a) SELECT @a FROM d"));
+        assertFalse(isReadOnly("SELECT @a FROM t FOR\nUPDATE"));
+        assertFalse(isReadOnly("SELECT @a FROM t FOR  SHARE"));
+        assertFalse(isReadOnly("SELECT @a FROM t FOR NO KEY UPDATE"));
+        assertFalse(isReadOnly("SELECT @a FROM t FOR KEY SHARE"));
+        assertFalse(isReadOnly("SELECT @a FROM t LOCK IN SHARE MODE"));
+        assertFalse(isReadOnly("SELECT a INTO t2 FROM t"));
+        assertFalse(isReadOnly("SELECT @a:long FROM (SELECT nextval('s') a) x"));
+        assertFalse(isReadOnly("SELECT setval('s', $v:long)"));
+        assertFalse(isReadOnly("SELECT NEXT VALUE FOR s"));
+        assertFalse(isReadOnly("SELECT @a FROM t WITH (UPDLOCK) WHERE b=$b"));
+        assertFalse(isReadOnly("SELECT pg_advisory_lock($id:long)"));
+    }
+
+    /**
+     * Parallel generation has to produce exactly the same code as sequential generation.
+     */
+    @Test
+    public void generateSQLCodeParallel() throws Exception {
+        String source = TamunoUtils.loadTextFile(new File(srcPath+"SQLCode.sqlg"));
+        SQLCodeGenerator instance = new SQLCodeGenerator();
+        String sequential = instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCode", null, false);
+        String dialectSequential = instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCodeMySQL", "SQLCode", true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            instance.setForkJoinPool(pool);
+            assertEquals(sequential, instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCode", null, false));
+            assertEquals(dialectSequential, instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCodeMySQL", "SQLCode", true));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Called from within another pool, statements have to be generated on the configured pool.
+     */
+    @Test
+    public void generateSQLCodeWithinOtherPool() throws Exception {
+        final String source = TamunoUtils.loadTextFile(new File(srcPath+"SQLCode.sqlg"));
+        final SQLCodeGenerator instance = new SQLCodeGenerator();
+        final String sequential = instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCode", null, false);
+        final AtomicInteger workers = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(2, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                workers.incrementAndGet();
+                return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            }
+        }, null, false);
+        ForkJoinPool other = new ForkJoinPool(2);
+        try {
+            instance.setForkJoinPool(pool);
+            assertEquals(sequential, other.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    return instance.generateSQLCode("SQLCode.sqlg", source, "org.tamuno.sqlgen.test.results", "SQLCode", null, false);
+                }
+            }).get());
+            assertTrue(workers.get() > 0);
+        } finally {
+            pool.shutdown();
+            other.shutdown();
+        }
+    }
+
+}
+
+
+//~ Formatted by Jindent --- http://www.jindent.com
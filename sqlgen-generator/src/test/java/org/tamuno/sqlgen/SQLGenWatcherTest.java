@@ -0,0 +1,164 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * The watcher has to generate changed sources, remove the classes of deleted sources, pick up
+ * sources in new directories, and generate everything again when the events overflowed.
+ */
+public class SQLGenWatcherTest {
+
+    private static final String USERS = "selectUser:=SELECT @user_id:int, @user_name FROM users [WHERE user_name=$user_name];\n";
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private File dir;
+    private File sources;
+    private File target;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("sqlgenwatch", "");
+        dir.delete();
+        sources = new File(dir, "sqlg");
+        target = new File(dir, "java");
+        new File(sources, "app").mkdirs();
+        target.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private File source(String name, String content) throws Exception {
+        File file = new File(sources, name);
+        file.getParentFile().mkdirs();
+        TamunoUtils.saveTextFile(file, content, "UTF-8");
+        return file;
+    }
+
+    private static boolean contains(File file, String text) throws Exception {
+        return file.isFile() && TamunoUtils.loadTextFile(file).contains(text);
+    }
+
+    private static void awaitContains(File file, String text) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!contains(file, text)) {
+            assertTrue(file + " does not contain " + text, System.currentTimeMillis() < end);
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitDeleted(File file) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (file.exists()) {
+            assertTrue(file + " has not been deleted", System.currentTimeMillis() < end);
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    public void watch() throws Exception {
+        final SQLGenWatcher watcher = new SQLGenWatcher(new SQLCodeGenerator(), target, sources);
+        final Exception failure[] = new Exception[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    watcher.watch();
+                } catch (InterruptedException ex) {
+                    // Done
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            }
+        });
+        thread.start();
+        try {
+            // The source is written again until the watcher has registered its directory
+            File users = new File(target, "app/Users.java");
+            long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+            while (!users.isFile()) {
+                assertTrue("Users.sqlg has not been generated", System.currentTimeMillis() < end);
+                source("app/Users.sqlg", USERS);
+                Thread.sleep(100);
+            }
+            assertTrue(contains(users, "class SelectUser "));
+
+            source("app/Users.sqlg", USERS + "\ncountUsers:=SELECT count(*) AS @cnt:long FROM users;\n");
+            awaitContains(users, "class CountUsers ");
+
+            // The sources of a new directory are generated even when written before it is registered
+            source("app/sub/Shared.MySQL.sqlg", USERS);
+            awaitContains(new File(target, "app/sub/SharedMySQL.java"), "extends Shared ");
+            awaitContains(new File(target, "app/sub/Shared.java"), "class Shared ");
+            source("app/sub/Orders.sqlg", "selectOrder:=SELECT @order_id:int FROM orders;\n");
+            awaitContains(new File(target, "app/sub/Orders.java"), "class SelectOrder ");
+
+            new File(sources, "app/Users.sqlg").delete();
+            awaitDeleted(users);
+            new File(sources, "app/sub/Shared.MySQL.sqlg").delete();
+            awaitDeleted(new File(target, "app/sub/SharedMySQL.java"));
+            assertTrue(new File(target, "app/sub/Shared.java").isFile());
+        } finally {
+            thread.interrupt();
+            thread.join(TIMEOUT_MILLIS);
+        }
+        assertFalse(thread.isAlive());
+        assertNull(failure[0]);
+    }
+
+    @Test
+    public void overflow() throws Exception {
+        source("app/Users.sqlg", USERS);
+        source("app/sub/Orders.sqlg", "selectOrder:=SELECT @order_id:int FROM orders;\n");
+        SQLGenWatcher watcher = new SQLGenWatcher(new SQLCodeGenerator(), target, sources);
+        WatchEvent<Object> overflow = new WatchEvent<Object>() {
+            public WatchEvent.Kind<Object> kind() {
+                return StandardWatchEventKinds.OVERFLOW;
+            }
+
+            public int count() {
+                return 1;
+            }
+
+            public Object context() {
+                return null;
+            }
+        };
+        Map<Path, Path> changed = new LinkedHashMap<Path, Path>();
+        List<WatchEvent<?>> events = Collections.<WatchEvent<?>>singletonList(overflow);
+        watcher.collectChanges(new File(sources, "app").toPath(), events, changed);
+        assertTrue(changed.isEmpty());
+        assertTrue(contains(new File(target, "app/Users.java"), "class SelectUser "));
+        assertTrue(contains(new File(target, "app/sub/Orders.java"), "class SelectOrder "));
+    }
+}
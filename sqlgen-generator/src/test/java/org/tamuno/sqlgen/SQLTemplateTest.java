@@ -0,0 +1,242 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import org.junit.Test;
+import org.tamuno.runtime.sql.GenericSQLDialectUtil;
+import org.tamuno.runtime.sql.ISQLDialectUtil;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * The interpreted statements have to render exactly the same SQL as the generated code
+ * (see test/expected/SQLCode.java.txt)
+ */
+public class SQLTemplateTest {
+    private static final ISQLDialectUtil dialect = GenericSQLDialectUtil.instance;
+    private static final String srcPath = "src/test/java/org/tamuno/sqlgen/test/input/";
+
+    private static Map<String, SQLTemplate> load() throws Exception {
+        return SQLTemplatePack.compile(TamunoUtils.loadTextFile(new File(srcPath + "SQLCode.sqlg")), false);
+    }
+
+    @Test
+    public void render() throws Exception {
+        Map<String, SQLTemplate> templates = load();
+        assertEquals("[selectUserLogin, selectUser, countUsers]", templates.keySet().toString());
+
+        SQLTemplate login = templates.get("selectUserLogin");
+        assertTrue(login.isSelect());
+        assertEquals("[user_name, password]", java.util.Arrays.toString(login.getParameterNames()));
+        assertEquals("[user_id, user_name, birthdate]", java.util.Arrays.toString(login.getColumnNames()));
+        assertEquals("SELECT user_id, user_name, birthdate \n        FROM users \n        WHERE \n            user_name='kai' AND password_hash=md5('it\\'s') \n        LIMIT 1",
+                login.render(dialect, "kai", "it's"));
+
+        SQLTemplate user = templates.get("selectUser");
+        String head = "SELECT user_id, ';' user_name, birthdate \n        FROM users \n            ";
+        String tail = " \n        LIMIT 1";
+        assertEquals(head + tail, user.render(dialect, null, null));
+        assertEquals(head + " WHERE \n                user_name='kai'  \n            " + tail, user.render(dialect, "kai", null));
+        assertEquals(head + " WHERE \n                  active=1\n            " + tail, user.render(dialect, null, 1));
+        assertEquals(head + " WHERE \n                user_name='kai' AND active=1\n            " + tail, user.render(dialect, "kai", 1));
+        assertEquals(head + " WHERE \n                user_name='x' AND active=0\n            " + tail, user.render(dialect, "x", 0));
+        assertEquals(4, user.getPlanCount());
+
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put("active", 1);
+        assertEquals(user.render(dialect, null, 1), user.render(dialect, user.parameters(params)));
+
+        assertEquals("SELECT count(*) AS cnt\n        FROM users", templates.get("countUsers").render(dialect));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingRequiredArguments() throws Exception {
+        load().get("selectUserLogin").render(dialect, "kai", null);
+    }
+
+    @Test
+    public void combiners() throws Exception {
+        SQLTemplate t = SQLTemplate.compile("t", "SELECT * FROM t [WHERE [a=$a:int] [AND] [b=$b:int] {} [OR] [c=$c:int]] [LIMIT #limit:int]", true);
+        assertEquals("SELECT * FROM t  ", t.render(dialect, null, null, null, null));
+        assertEquals("SELECT * FROM t WHERE a=1 AND b=2   c=3 LIMIT 10", t.render(dialect, 1, 2, 3, 10));
+        assertEquals("SELECT * FROM t WHERE   b=2   c=3 ", t.render(dialect, null, 2, 3, null));
+    }
+
+    /**
+     * Every combination of available variables has to render one of the shapes, and all shapes have to differ.
+     */
+    @Test
+    public void shapes() throws Exception {
+        SQLTemplate t = SQLTemplate.compile("t", "SELECT * FROM t [WHERE [a=$a:int] [AND] [b=$b:int] {} [OR] [c=$c:int]] [LIMIT #limit:int]", true);
+        long shapes[] = t.getShapes();
+        java.util.HashSet<String> rendered = new java.util.HashSet<String>();
+        for (long shape : shapes) {
+            assertTrue(rendered.add(t.render(dialect, sample(shape, 4))));
+        }
+        for (long available = 0; available < 16; available++) {
+            assertTrue(rendered.contains(t.render(dialect, sample(available, 4))));
+        }
+        assertEquals(0L, shapes[0]);
+        assertEquals("[3]", java.util.Arrays.toString(load().get("selectUserLogin").getShapes()));
+        assertEquals("[0, 1, 2, 3]", java.util.Arrays.toString(load().get("selectUser").getShapes()));
+    }
+
+    @Test
+    public void shapeReport() throws Exception {
+        StringBuilder filters = new StringBuilder("search:=SELECT * FROM t WHERE 1=1");
+        for (int i = 0; i < 20; i++) {
+            filters.append(" [AND f" + i + "=$f" + i + "]");
+        }
+        String source = TamunoUtils.loadTextFile(new File(srcPath + "SQLCode.sqlg")) + "\n" + filters + ";\n"
+                + "t:=SELECT * FROM t [WHERE [a=$a:int] [AND] [b=$b:int] {} [OR] [c=$c:int]] [LIMIT #limit:int];\n";
+        ShapeReport report = ShapeReport.analyze("test.sqlg", source.toCharArray(), false);
+        java.util.List<ShapeReport.Entry> entries = report.getEntries();
+        assertEquals(5, entries.size());
+        assertEquals(1L, entries.get(0).shapes);
+        assertEquals(4L, entries.get(1).shapes);
+        assertTrue(entries.get(1).exact);
+        assertEquals("[ WHERE [user_name=$user_name] [AND] [active=$active] ]", entries.get(1).sections.get(0).text);
+        assertEquals(4L, entries.get(1).sections.get(0).factor);
+        assertEquals(1L << 20, entries.get(3).shapes);
+        assertFalse(entries.get(3).exact);
+        assertEquals(20, entries.get(3).sections.size());
+        assertEquals(t(source).getShapes().length, entries.get(4).shapes);
+        assertEquals("[search]", names(report.getEntriesExceeding(1000)));
+    }
+
+    /**
+     * Statements with more than 64 input variables, which do not fit into a long bitset
+     */
+    @Test
+    public void wide() throws Exception {
+        StringBuilder source = new StringBuilder("SELECT * FROM t WHERE 1=1");
+        for (int i = 0; i < 70; i++) {
+            source.append(" [AND f" + i + "=$f" + i + ":int]");
+        }
+        source.append(" [ORDER BY #order]");
+        SQLTemplate t = SQLTemplate.compile("t", source.toString());
+        assertTrue(t.isWide());
+        Object params[] = new Object[71];
+        params[33] = 1;
+        params[66] = 2;
+        assertEquals("SELECT * FROM t WHERE 1=1" + spaces(34) + "AND f33=1" + spaces(33) + "AND f66=2" + spaces(4), t.render(dialect, params));
+        params[70] = "f1";
+        assertEquals("SELECT * FROM t WHERE 1=1" + spaces(34) + "AND f33=1" + spaces(33) + "AND f66=2" + spaces(4) + "ORDER BY f1", t.render(dialect, params));
+        assertEquals(2, t.getPlanCount());
+        ShapeReport report = ShapeReport.analyze("test.sqlg", ("t:=SELECT * FROM t WHERE 1=1 [AND x=$x]" + source.substring(25).replace("[AND", "AND").replace(":int]", ":int") + ";\n").toCharArray(), false);
+        assertEquals(4L, report.getEntries().get(0).shapes);
+        assertTrue(report.getEntries().get(0).exact);
+    }
+
+    /**
+     * Combinations of available variables rendering the same SQL share one plan, and the number
+     * of cached combinations is bounded.
+     */
+    @Test
+    public void planCache() throws Exception {
+        SQLTemplate t = SQLTemplate.compile("t", "SELECT * FROM t [WHERE a=$a:int AND b=$b:int]");
+        assertEquals("SELECT * FROM t ", t.render(dialect, null, null));
+        assertEquals("SELECT * FROM t ", t.render(dialect, 1, null));
+        assertEquals("SELECT * FROM t ", t.render(dialect, null, 2));
+        assertEquals(1, t.getPlanCount());
+        assertEquals("SELECT * FROM t WHERE a=1 AND b=2", t.render(dialect, 1, 2));
+        assertEquals(2, t.getPlanCount());
+
+        StringBuilder source = new StringBuilder("SELECT * FROM t WHERE 1=1");
+        for (int i = 0; i < 70; i++) {
+            source.append(" [AND f" + i + "=$f" + i + ":int]");
+        }
+        SQLTemplate wide = SQLTemplate.compile("wide", source.toString());
+        int rendered = 0;
+        for (int i = 0; (i < 70) && (rendered < SQLTemplate.MAX_PLANS + 100); i++) {
+            for (int j = i + 1; j < 70; j++, rendered++) {
+                Object params[] = new Object[70];
+                params[i] = i;
+                params[j] = j;
+                assertEquals("SELECT * FROM t WHERE 1=1" + spaces(i + 1) + "AND f" + i + "=" + i + spaces(j - i) + "AND f" + j + "=" + j + spaces(69 - j), wide.render(dialect, params));
+            }
+        }
+        assertEquals(SQLTemplate.MAX_PLANS, wide.getPlanCount());
+    }
+
+    private static String spaces(int count) {
+        char result[] = new char[count];
+        java.util.Arrays.fill(result, ' ');
+        return new String(result);
+    }
+
+    private static SQLTemplate t(String source) throws Exception {
+        return SQLTemplatePack.compile(source, false).get("t");
+    }
+
+    private static String names(java.util.List<ShapeReport.Entry> entries) {
+        java.util.ArrayList<String> result = new java.util.ArrayList<String>();
+        for (ShapeReport.Entry entry : entries) {
+            result.add(entry.statement);
+        }
+        return result.toString();
+    }
+
+    private static Object[] sample(long available, int count) {
+        Object params[] = new Object[count];
+        for (int i = 0; i < count; i++) {
+            params[i] = ((available & (1L << i)) != 0L) ? Integer.valueOf(1) : null;
+        }
+        return params;
+    }
+
+    @Test
+    public void reload() throws Exception {
+        File file = File.createTempFile("templates", ".sqlg");
+        try {
+            TamunoUtils.saveTextFile(file, "a:=SELECT 1;\nb:=SELECT 2;\n", "UTF-8");
+            SQLTemplatePack pack = new SQLTemplatePack(file);
+            pack.setCheckInterval(0);
+            SQLTemplate b = pack.get("b");
+            assertEquals("SELECT 1", pack.get("a").render(dialect));
+            TamunoUtils.saveTextFile(file, "a:=SELECT 11;\nb:=SELECT 2;\n", "UTF-8");
+            assertEquals("SELECT 11", pack.get("a").render(dialect));
+            assertSame(b, pack.get("b"));
+            TamunoUtils.saveTextFile(file, "a:=SELECT [ 1;\nb:=SELECT 2;\n", "UTF-8");
+            final List<LogRecord> warnings = new ArrayList<LogRecord>();
+            Handler handler = new Handler() {
+                public void publish(LogRecord record) {
+                    warnings.add(record);
+                }
+
+                public void flush() {
+                }
+
+                public void close() {
+                }
+            };
+            Logger logger = Logger.getLogger(SQLTemplatePack.class.getName());
+            logger.addHandler(handler);
+            try {
+                assertEquals("SELECT 11", pack.get("a").render(dialect));
+                // The broken file is reported once, until it changes
+                assertEquals("SELECT 11", pack.get("a").render(dialect));
+                assertEquals(1, warnings.size());
+                assertFalse(pack.reload());
+            } finally {
+                logger.removeHandler(handler);
+            }
+            TamunoUtils.saveTextFile(file, "a:=SELECT 1111;\nb:=SELECT 2;\n", "UTF-8");
+            assertEquals("SELECT 1111", pack.get("a").render(dialect));
+        } finally {
+            file.delete();
+        }
+    }
+}
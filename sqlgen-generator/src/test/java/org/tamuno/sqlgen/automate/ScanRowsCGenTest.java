@@ -0,0 +1,47 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen.automate;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+import org.tamuno.sqlgen.SQLTemplate;
+
+import static org.junit.Assert.*;
+
+/**
+ * The input variables of the range must not collide with those of the columns.
+ */
+public class ScanRowsCGenTest {
+
+    private static ColumnInfo column(String name, int type) {
+        ColumnInfo column = new ColumnInfo();
+        column.name = name;
+        column.type = type;
+        return column;
+    }
+
+    private static String scan(ColumnInfo... info) throws Exception {
+        StringBuilder t = new StringBuilder();
+        new ScanRowsCGen().appendCode(t, "users", info, info[0]);
+        String source = t.toString();
+        String names[] = SQLTemplate.compile("scanUsers", source.substring(source.indexOf(":=") + 2, source.lastIndexOf(';'))).getParameterNames();
+        assertEquals(Arrays.toString(names), names.length, new HashSet<String>(Arrays.asList(names)).size());
+        return source;
+    }
+
+    @Test
+    public void appendCode() throws Exception {
+        assertEquals("scanUsers:=SELECT \n\t\t@id:int,\n\t\t@user_name\n\tFROM users\n"
+                + "\tWHERE id>=$from_id:int AND id<$to_id:int\n\t\t[AND id=$id:int]\n\t\t[AND user_name=$user_name];\n",
+                scan(column("id", Types.INTEGER), column("user_name", Types.VARCHAR)));
+        assertEquals("scanUsers:=SELECT \n\t\t@id:int,\n\t\t@from_id:int,\n\t\t@TO2_ID:int\n\tFROM users\n"
+                + "\tWHERE id>=$from3_id:int AND id<$to3_id:int\n\t\t[AND id=$id:int]\n\t\t[AND from_id=$from_id:int]\n"
+                + "\t\t[AND TO2_ID=$TO2_ID:int];\n",
+                scan(column("id", Types.INTEGER), column("from_id", Types.INTEGER), column("TO2_ID", Types.INTEGER)));
+    }
+}
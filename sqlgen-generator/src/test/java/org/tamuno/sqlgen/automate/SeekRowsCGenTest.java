@@ -0,0 +1,49 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen.automate;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+import org.tamuno.sqlgen.SQLTemplate;
+
+import static org.junit.Assert.*;
+
+/**
+ * The input variables of the seek key and the limit must not collide with those of the columns.
+ */
+public class SeekRowsCGenTest {
+
+    private static ColumnInfo column(String name, int type) {
+        ColumnInfo column = new ColumnInfo();
+        column.name = name;
+        column.type = type;
+        return column;
+    }
+
+    private static String seek(ColumnInfo... info) throws Exception {
+        StringBuilder t = new StringBuilder();
+        new SeekRowsCGen().appendCode(t, "users", info, Arrays.asList(info[0]));
+        String source = t.toString();
+        String names[] = SQLTemplate.compile("seekUsers", source.substring(source.indexOf(":=") + 2, source.lastIndexOf(';'))).getParameterNames();
+        assertEquals(Arrays.toString(names), names.length, new HashSet<String>(Arrays.asList(names)).size());
+        return source;
+    }
+
+    @Test
+    public void appendCode() throws Exception {
+        assertEquals("seekUsers:=SELECT \n\t\t@id:int,\n\t\t@user_name\n\tFROM users WHERE 1=1\n"
+                + "\t\t[AND (id>$after_id:int)]\n\t\t[AND id=$id:int]\n\t\t[AND user_name=$user_name]\n"
+                + "\tORDER BY id\n\tLIMIT #limit:int;\n",
+                seek(column("id", Types.INTEGER), column("user_name", Types.VARCHAR)));
+        assertEquals("seekUsers:=SELECT \n\t\t@id:int,\n\t\t@after_id:int,\n\t\t@after2_id:int,\n\t\t@LIMIT:int\n\tFROM users WHERE 1=1\n"
+                + "\t\t[AND (id>$after3_id:int)]\n\t\t[AND id=$id:int]\n\t\t[AND after_id=$after_id:int]\n"
+                + "\t\t[AND after2_id=$after2_id:int]\n\t\t[AND LIMIT=$LIMIT:int]\n"
+                + "\tORDER BY id\n\tLIMIT #limit2:int;\n",
+                seek(column("id", Types.INTEGER), column("after_id", Types.INTEGER), column("after2_id", Types.INTEGER), column("LIMIT", Types.INTEGER)));
+    }
+}
@@ -0,0 +1,5 @@
+org.tamuno.sqlgen.test.results.SQLCodeProfiled.countUsers.0=12
+org.tamuno.sqlgen.test.results.SQLCodeProfiled.selectUser.0=3
+org.tamuno.sqlgen.test.results.SQLCodeProfiled.selectUser.1=120
+org.tamuno.sqlgen.test.results.SQLCodeProfiled.selectUser.3=40
+org.tamuno.sqlgen.test.results.SQLCodeProfiled.selectUserLogin.3=500
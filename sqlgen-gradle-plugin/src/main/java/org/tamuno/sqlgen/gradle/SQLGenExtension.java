@@ -0,0 +1,41 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.gradle;
+
+import org.gradle.api.provider.Property;
+
+/**
+ * The sqlgen extension, which holds the defaults of all SQL Code Generator tasks of a project.
+ * <PRE>
+ *   sqlgen {
+ *       collapseWhitespace = true
+ *   }
+ * </PRE>
+ */
+public abstract class SQLGenExtension {
+    
+    /**
+     * Collapse runs of whitespace in the generated SQL into a single space (defaults to false)
+     */
+    public abstract Property<Boolean> getCollapseWhitespace();
+    
+    /**
+     * Base class of the classes generated from sources without dialect (optional)
+     */
+    public abstract Property<String> getBaseclass();
+}
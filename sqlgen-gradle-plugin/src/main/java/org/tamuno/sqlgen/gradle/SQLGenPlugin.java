@@ -0,0 +1,86 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.gradle;
+
+import org.gradle.api.Action;
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.Transformer;
+import org.gradle.api.file.ConfigurableFileTree;
+import org.gradle.api.file.Directory;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.SourceSet;
+import org.gradle.api.tasks.SourceSetContainer;
+import org.gradle.api.tasks.TaskProvider;
+
+/**
+ * Gradle plugin for the SQL Code Generator.
+ * 
+ * Adds a SQLGenTask for every source set of a java project, which generates the .sqlg sources
+ * within src/&lt;source set&gt;/sqlg into build/generated/sources/sqlgen/&lt;source set&gt;. 
+ * The generated sources are added to the java sources of the source set, so they are generated
+ * before compilation. The task of the main source set is called generateSqlg.
+ * <PRE>
+ *   plugins {
+ *       id 'java'
+ *       id 'org.tamuno.sqlgen' version '1.0'
+ *   }
+ * </PRE>
+ */
+public class SQLGenPlugin implements Plugin<Project> {
+
+    @Override
+    public void apply(final Project project) {
+        final SQLGenExtension extension = project.getExtensions().create("sqlgen", SQLGenExtension.class);
+        extension.getCollapseWhitespace().convention(false);
+        project.getPlugins().withType(JavaPlugin.class, new Action<JavaPlugin>() {
+            @Override
+            public void execute(JavaPlugin javaPlugin) {
+                project.getExtensions().getByType(SourceSetContainer.class).all(new Action<SourceSet>() {
+                    @Override
+                    public void execute(SourceSet sourceSet) {
+                        configureSourceSet(project, extension, sourceSet);
+                    }
+                });
+            }
+        });
+    }
+    
+    private void configureSourceSet(final Project project, final SQLGenExtension extension, final SourceSet sourceSet) {
+        TaskProvider<SQLGenTask> task = project.getTasks().register(sourceSet.getTaskName("generate", "Sqlg"), SQLGenTask.class, new Action<SQLGenTask>() {
+            @Override
+            public void execute(SQLGenTask task) {
+                task.setDescription("Generates the SQL Code Generator sources of the " + sourceSet.getName() + " source set.");
+                ConfigurableFileTree sources = project.fileTree("src/" + sourceSet.getName() + "/sqlg");
+                sources.include("**/*.sqlg");
+                task.getSource().from(sources);
+                task.getCollapseWhitespace().convention(extension.getCollapseWhitespace());
+                task.getBaseclass().convention(extension.getBaseclass());
+                task.getOutputDirectory().convention(project.getLayout().getBuildDirectory().dir("generated/sources/sqlgen/" + sourceSet.getName()));
+            }
+        });
+        Provider<Directory> outputDirectory = task.flatMap(new Transformer<Provider<Directory>, SQLGenTask>() {
+            @Override
+            public Provider<Directory> transform(SQLGenTask t) {
+                return t.getOutputDirectory();
+            }
+        });
+        sourceSet.getJava().srcDir(outputDirectory);
+    }
+}
@@ -0,0 +1,221 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.gradle;
+
+import java.io.File;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import javax.inject.Inject;
+import org.gradle.api.Action;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.FileType;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.DeleteSpec;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.SkipWhenEmpty;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.work.ChangeType;
+import org.gradle.work.FileChange;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
+import org.tamuno.sqlgen.SQLCodeGenerator;
+import org.tamuno.util.TamunoUtils;
+
+/**
+ * Generates Java classes from SQL Code Generator sources (.sqlg files).
+ * 
+ * The package of a generated class is given by the path of its source relative to the
+ * source directory. Like with the Ant task, a source named Base.Dialect.sqlg creates the 
+ * abstract base class Base and its dialect specific subclass BaseDialect.
+ * 
+ * The task is incremental: Only changed sources are generated again, and the classes of removed 
+ * sources are deleted. The generated code only depends on the relative paths and the content of 
+ * the sources, so its outputs can be taken from the build cache. All classes are generated in 
+ * parallel through the worker API.
+ */
+@CacheableTask
+public abstract class SQLGenTask extends DefaultTask {
+    
+    /**
+     * The .sqlg sources, usually a file tree of the source directory. Changes are processed incrementally.
+     */
+    @InputFiles
+    @SkipWhenEmpty
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract ConfigurableFileCollection getSource();
+    
+    /**
+     * Collapse runs of whitespace in the generated SQL into a single space
+     */
+    @Input
+    public abstract Property<Boolean> getCollapseWhitespace();
+    
+    /**
+     * Base class of the classes generated from sources without dialect
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getBaseclass();
+    
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+    
+    /**
+     * Version of the generated code. Outputs of other generator versions are not reused.
+     */
+    @Input
+    public String getGeneratorVersion() {
+        return SQLCodeGenerator.VERSION;
+    }
+    
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+    
+    @Inject
+    protected abstract FileSystemOperations getFileSystemOperations();
+
+    @TaskAction
+    public void generate(InputChanges changes) {
+        final File outDir = getOutputDirectory().get().getAsFile();
+        // All sources by relative path, sorted so the source of a shared base class is always the same
+        final Map<String, File> sources = new TreeMap<String, File>();
+        getSource().getAsFileTree().visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails details) {
+                sources.put(details.getRelativePath().getPathString(), details.getFile());
+            }
+        });
+        TreeSet<String> changed = new TreeSet<String>();
+        TreeSet<String> changedBases = new TreeSet<String>();
+        if (!changes.isIncremental()) {
+            getFileSystemOperations().delete(new Action<DeleteSpec>() {
+                @Override
+                public void execute(DeleteSpec spec) {
+                    spec.delete((Object[]) outDir.listFiles());
+                }
+            });
+            changed.addAll(sources.keySet());
+        } else {
+            for (FileChange change : changes.getFileChanges(getSource())) {
+                if (change.getFileType() == FileType.DIRECTORY) {
+                    continue;
+                }
+                String path = change.getNormalizedPath();
+                if (change.getChangeType() == ChangeType.REMOVED) {
+                    new File(outDir, javaPath(path, className(path))).delete();
+                } else {
+                    changed.add(path);
+                }
+                if (baseName(path) != null) {
+                    changedBases.add(javaPath(path, baseName(path)));
+                }
+            }
+        }
+        WorkQueue queue = getWorkerExecutor().noIsolation();
+        for (String path : changed) {
+            String base = baseName(path);
+            submit(queue, sources.get(path), path, className(path), base, base != null);
+            if (base != null) {
+                changedBases.add(javaPath(path, base));
+            }
+        }
+        // A base class is generated from the first of its dialect sources, or deleted with the last one
+        for (String baseJavaPath : changedBases) {
+            String source = null;
+            for (String path : sources.keySet()) {
+                if ((baseName(path) != null) && javaPath(path, baseName(path)).equals(baseJavaPath)) {
+                    source = path;
+                    break;
+                }
+            }
+            if (source == null) {
+                new File(outDir, baseJavaPath).delete();
+            } else {
+                submit(queue, sources.get(source), source, baseName(source), null, true);
+            }
+        }
+    }
+    
+    private void submit(WorkQueue queue, final File source, final String path, final String classname, final String baseclass, final boolean withDialects) {
+        int spos = path.lastIndexOf('/');
+        if (spos < 0) {
+            throw new GradleException("SQL Code Generator source " + path + " is not within a package directory");
+        }
+        final String packagename = path.substring(0, spos).replace('/', '.');
+        final File target = new File(getOutputDirectory().get().getAsFile(), javaPath(path, classname));
+        queue.submit(SQLGenWorkAction.class, new Action<SQLGenWorkAction.Parameters>() {
+            @Override
+            public void execute(SQLGenWorkAction.Parameters p) {
+                p.getSourceFile().set(source);
+                p.getSourceName().set(path);
+                p.getTargetFile().set(target);
+                p.getPackagename().set(packagename);
+                p.getClassname().set(classname);
+                p.getBaseclass().set(withDialects ? baseclass : getBaseclass().getOrNull());
+                p.getWithDialects().set(withDialects);
+                p.getCollapseWhitespace().set(getCollapseWhitespace());
+            }
+        });
+    }
+    
+    /**
+     * Returns the name of the class generated from the source with the given relative path
+     */
+    static String className(String path) {
+        String fname = path.substring(path.lastIndexOf('/') + 1);
+        int cpos = fname.lastIndexOf('.');
+        int dpos = fname.lastIndexOf('.', cpos - 1);
+        if (dpos < 0) {
+            return fname.substring(0, cpos);
+        }
+        return fname.substring(0, dpos) + TamunoUtils.capitalize(fname.substring(dpos + 1, cpos));
+    }
+    
+    /**
+     * Returns the name of the base class of a dialect source, or null if it is none.
+     */
+    static String baseName(String path) {
+        String fname = path.substring(path.lastIndexOf('/') + 1);
+        int cpos = fname.lastIndexOf('.');
+        int dpos = fname.lastIndexOf('.', cpos - 1);
+        return (dpos < 0) ? null : fname.substring(0, dpos);
+    }
+    
+    /**
+     * Returns the relative path of the java source of the given class in the package of the source
+     */
+    static String javaPath(String path, String classname) {
+        return path.substring(0, path.lastIndexOf('/') + 1) + classname + ".java";
+    }
+}
@@ -0,0 +1,64 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.sqlgen.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+import org.tamuno.sqlgen.SQLCodeGenerator;
+import org.tamuno.sqlgen.SQLGenParseException;
+
+/**
+ * Generates a single Java class from a SQL Code Generator source. Run through the worker API,
+ * so the classes of a SQLGenTask are generated in parallel.
+ */
+public abstract class SQLGenWorkAction implements WorkAction<SQLGenWorkAction.Parameters> {
+    
+    public interface Parameters extends WorkParameters {
+        RegularFileProperty getSourceFile();
+        /** Name of the source within the generated code, its path relative to the source directory */
+        Property<String> getSourceName();
+        RegularFileProperty getTargetFile();
+        Property<String> getPackagename();
+        Property<String> getClassname();
+        Property<String> getBaseclass();
+        Property<Boolean> getWithDialects();
+        Property<Boolean> getCollapseWhitespace();
+    }
+
+    @Override
+    public void execute() {
+        Parameters p = getParameters();
+        SQLCodeGenerator cgen = new SQLCodeGenerator();
+        cgen.setCollapseWhitespace(p.getCollapseWhitespace().get());
+        File target = p.getTargetFile().get().getAsFile();
+        target.getParentFile().mkdirs();
+        try {
+            cgen.generateSQLCodeIfChanged(p.getSourceFile().get().getAsFile(), p.getSourceName().get(), target, 
+                    p.getPackagename().get(), p.getClassname().get(), p.getBaseclass().getOrNull(), p.getWithDialects().get());
+        } catch (SQLGenParseException ex) {
+            throw new GradleException("SQL Code Generator: Parse error in " + p.getSourceName().get() + ": " + ex.getMessage(), ex);
+        } catch (IOException ex) {
+            throw new GradleException("Could not generate " + target, ex);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.sqlgen.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tamuno.util.TamunoUtils;
+
+import static org.junit.Assert.*;
+
+/**
+ * Functional tests of the plugin: sources have to be generated incrementally, the outputs of
+ * deleted sources removed, a shared base class generated from the first of its dialect sources,
+ * and the outputs taken from the build cache in a project at another location.
+ */
+public class SQLGenPluginTest {
+
+    private static final String USERS = "selectUser:=SELECT @user_id:int, @user_name FROM users [WHERE user_name=$user_name];\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("sqlgengradle", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    private static void delete(File file) {
+        File children[] = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Creates a project using the plugin, with a local build cache shared by all projects of this test
+     */
+    private File project(String name) throws IOException {
+        File project = new File(dir, name);
+        project.mkdirs();
+        TamunoUtils.saveTextFile(new File(project, "settings.gradle"), "buildCache {\n    local {\n        directory = file('../cache')\n    }\n}\n", "UTF-8");
+        TamunoUtils.saveTextFile(new File(project, "build.gradle"), "plugins {\n    id 'java'\n    id 'org.tamuno.sqlgen'\n}\n", "UTF-8");
+        return project;
+    }
+
+    private static void source(File project, String name, String content) throws IOException {
+        File file = new File(project, "src/main/sqlg/app/" + name);
+        file.getParentFile().mkdirs();
+        TamunoUtils.saveTextFile(file, content, "UTF-8");
+    }
+
+    private static File output(File project, String name) {
+        return new File(project, "build/generated/sources/sqlgen/main/app/" + name);
+    }
+
+    private static TaskOutcome generate(File project) {
+        BuildResult result = GradleRunner.create().withProjectDir(project).withPluginClasspath()
+                .withArguments("generateSqlg", "--build-cache", "--stacktrace").build();
+        return result.task(":generateSqlg").getOutcome();
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        File project = project("a");
+        source(project, "Users.sqlg", USERS);
+        source(project, "Shared.MySQL.sqlg", USERS);
+        source(project, "Shared.PostgreSQL.sqlg", USERS);
+        assertEquals(TaskOutcome.SUCCESS, generate(project));
+        for (String name : new String[]{"Users.java", "Shared.java", "SharedMySQL.java", "SharedPostgreSQL.java"}) {
+            assertTrue(name, output(project, name).isFile());
+        }
+        assertTrue(TamunoUtils.loadTextFile(output(project, "Shared.java")).contains("from=\"app/Shared.MySQL.sqlg\""));
+        assertEquals(TaskOutcome.UP_TO_DATE, generate(project));
+
+        // Only the changed source is generated again
+        long unchanged = output(project, "SharedPostgreSQL.java").lastModified();
+        output(project, "SharedPostgreSQL.java").setLastModified(unchanged - 10000);
+        source(project, "Users.sqlg", USERS + "\ncountUsers:=SELECT count(*) AS @cnt:long FROM users;\n");
+        assertEquals(TaskOutcome.SUCCESS, generate(project));
+        assertTrue(TamunoUtils.loadTextFile(output(project, "Users.java")).contains("class CountUsers "));
+        assertEquals(unchanged - 10000, output(project, "SharedPostgreSQL.java").lastModified());
+
+        // The base class moves on to the next dialect source, and is removed with the last one
+        new File(project, "src/main/sqlg/app/Shared.MySQL.sqlg").delete();
+        assertEquals(TaskOutcome.SUCCESS, generate(project));
+        assertFalse(output(project, "SharedMySQL.java").exists());
+        assertTrue(TamunoUtils.loadTextFile(output(project, "Shared.java")).contains("from=\"app/Shared.PostgreSQL.sqlg\""));
+        new File(project, "src/main/sqlg/app/Shared.PostgreSQL.sqlg").delete();
+        assertEquals(TaskOutcome.SUCCESS, generate(project));
+        assertFalse(output(project, "SharedPostgreSQL.java").exists());
+        assertFalse(output(project, "Shared.java").exists());
+        assertTrue(output(project, "Users.java").isFile());
+    }
+
+    @Test
+    public void relocatable() throws Exception {
+        File a = project("a");
+        source(a, "Users.sqlg", USERS);
+        source(a, "Shared.MySQL.sqlg", USERS);
+        assertEquals(TaskOutcome.SUCCESS, generate(a));
+        File b = project("b");
+        source(b, "Users.sqlg", USERS);
+        source(b, "Shared.MySQL.sqlg", USERS);
+        assertEquals(TaskOutcome.FROM_CACHE, generate(b));
+        for (String name : new String[]{"Users.java", "Shared.java", "SharedMySQL.java"}) {
+            assertEquals(name, TamunoUtils.loadTextFile(output(a, name)), TamunoUtils.loadTextFile(output(b, name)));
+        }
+    }
+}
@@ -9,6 +9,10 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -17,9 +21,14 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.model.Resource;
 import org.apache.maven.project.MavenProject;
+import org.tamuno.runtime.sql.ShapeProfile;
+import org.tamuno.sqlgen.GenerationManifest;
 import org.tamuno.sqlgen.SQLCodeGenerator;
 import org.tamuno.sqlgen.SQLGenParseException;
+import org.tamuno.sqlgen.ShapeReport;
+import org.tamuno.util.TamunoUtils;
 
 @Mojo(name = "sqlgen")
 public class SQLCodeGeneratorMojo extends AbstractMojo {
@@ -36,6 +45,57 @@ public class SQLCodeGeneratorMojo extends AbstractMojo {
     @Parameter(required = false)
     protected String baseclass;
 
+    /**
+     * Collapse runs of whitespace in the generated SQL into a single space
+     */
+    @Parameter(defaultValue = "false")
+    protected boolean collapseWhitespace;
+
+    /**
+     * Number of threads used to generate files, and statements within files, in parallel.
+     * 0 (the default) uses one thread per available processor, 1 generates sequentially.
+     */
+    @Parameter(property = "sqlgen.threads", defaultValue = "0")
+    protected int threads;
+
+    /**
+     * Manifest of the hashes of all generated sources. Sources are only generated again if
+     * their content, the generator version or the generator options changed.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/sqlgen/manifest.properties")
+    protected File manifestFile;
+
+    /**
+     * Resource directory, which receives the GraalVM native-image configuration of the generated
+     * classes. It is added to the project resources, so the configuration ends up in the jar.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/generated-resources/sqlgen")
+    protected File nativeImageConfigDirectory;
+
+    /**
+     * Shape profile recorded at runtime (see org.tamuno.runtime.sql.ShapeProfile), which the
+     * generated code is optimized for. Statements which have never been executed according
+     * to the profile are reported.
+     */
+    @Parameter(property = "sqlgen.profile", required = false)
+    protected File profile;
+
+    private ShapeProfile shapeProfile;
+
+    /**
+     * Report of the number of distinct SQL shapes every statement can render, and the optional
+     * sections multiplying them (see org.tamuno.sqlgen.ShapeReport).
+     */
+    @Parameter(defaultValue = "${project.build.directory}/sqlgen/shape-report.txt")
+    protected File shapeReport;
+
+    /**
+     * Statements which can render more distinct SQL shapes fail the build, as each of them takes
+     * a plan cache entry of its own within the database. 0 (the default) disables the check.
+     */
+    @Parameter(property = "sqlgen.maxShapes", defaultValue = "0")
+    protected long maxShapes;
+
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
 
@@ -43,26 +103,133 @@ public class SQLCodeGeneratorMojo extends AbstractMojo {
             getLog().info("Source root: " + srcroot.toString());
         }
 
+        ArrayList<File> sqlgFiles = new ArrayList<File>();
+        ArrayList<String> sqlgPackage = new ArrayList<String>();
+        ArrayList<File> sqlgBasepath = new ArrayList<File>();
+        for (Object srcroot : this.project.getCompileSourceRoots()) {
+            getLog().info("Source root: " + srcroot.toString());
+            File basepath = new File(srcroot.toString());
+            generateCodeRecursive(basepath, sqlgFiles, sqlgPackage, ".sqlg", basepath);
+            while (sqlgBasepath.size() < sqlgFiles.size()) {
+                sqlgBasepath.add(basepath);
+            }
+        }
+        Resource resource = new Resource();
+        resource.setDirectory(nativeImageConfigDirectory.getAbsolutePath());
+        this.project.addResource(resource);
+        String options = "baseclass=" + baseclass + ";collapseWhitespace=" + collapseWhitespace;
+        if (profile != null) {
+            shapeProfile = new ShapeProfile();
+            try {
+                shapeProfile.load(profile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Could not read profile " + profile, e);
+            }
+            options += ";profile=" + Integer.toHexString(shapeProfile.toString().hashCode());
+        }
+        final GenerationManifest manifest;
+        try {
+            manifest = new GenerationManifest(manifestFile, options);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not read " + manifestFile, e);
+        }
         try {
-            ArrayList<File> sqlgFiles = new ArrayList<File>();
-            ArrayList<String> sqlgPackage = new ArrayList<String>();
-            for (Object srcroot : this.project.getCompileSourceRoots()) {
-                getLog().info("Source root: " + srcroot.toString());
-                generateCodeRecursive(new File(srcroot.toString()), sqlgFiles, sqlgPackage, ".sqlg", new File(srcroot.toString()));
+            generateJavaCode(manifest, sqlgFiles, sqlgPackage, sqlgBasepath);
+            reportShapes(sqlgFiles);
+            for (File removed : manifest.removeStale()) {
+                getLog().info("Removed " + removed.getPath() + ", its source no longer exists");
+            }
+        } finally {
+            try {
+                manifest.save();
+            } catch (IOException e) {
+                // Not fatal, all sources will be generated again next time
+                getLog().warn("Could not write " + manifestFile + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private void generateJavaCode(final GenerationManifest manifest, List<File> sqlgFiles, List<String> sqlgPackage, List<File> sqlgBasepath) throws MojoExecutionException, MojoFailureException {
+        int nthreads = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        final SQLCodeGenerator cgen = new SQLCodeGenerator();
+        cgen.setCollapseWhitespace(this.collapseWhitespace);
+        cgen.setProfile(shapeProfile);
+        if (nthreads == 1) {
+            for (int i = 0; i < sqlgFiles.size(); i++) {
+                generateJavaCode(cgen, manifest, sqlgFiles.get(i), sqlgPackage.get(i), sqlgBasepath.get(i));
+            }
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(nthreads);
+        try {
+            cgen.setForkJoinPool(pool);
+            ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < sqlgFiles.size(); i++) {
+                final File src = sqlgFiles.get(i);
+                final String pack = sqlgPackage.get(i);
+                final File outPath = sqlgBasepath.get(i);
+                tasks.add(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        generateJavaCode(cgen, manifest, src, pack, outPath);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                try {
+                    f.get();
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof MojoFailureException) {
+                        throw (MojoFailureException) ex.getCause();
+                    }
+                    throw new MojoExecutionException("Could not generate Java source code!", ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while generating Java source code", ex);
+        } finally {
+            pool.shutdown();
+        }
+    }
 
+    /**
+     * Writes the shape report of all sources, and fails if a statement has more than maxShapes shapes.
+     */
+    private void reportShapes(List<File> sqlgFiles) throws MojoExecutionException, MojoFailureException {
+        StringBuilder report = new StringBuilder();
+        StringBuilder exceeding = new StringBuilder();
+        try {
+            for (File src : sqlgFiles) {
+                ShapeReport shapes = ShapeReport.analyze(src.getPath(), TamunoUtils.loadTextFileChars(src, "UTF-8"), collapseWhitespace);
+                report.append(shapes);
+                if (maxShapes > 0) {
+                    for (ShapeReport.Entry entry : shapes.getEntriesExceeding(maxShapes)) {
+                        exceeding.append("\n  ").append(entry.statement).append(" of ").append(src.getPath()).append(": ").append(entry.shapes);
+                    }
+                }
             }
+            shapeReport.getParentFile().mkdirs();
+            TamunoUtils.saveTextFileIfChanged(shapeReport, report.toString(), "UTF-8");
+        } catch (SQLGenParseException ex) {
+            throw new MojoFailureException("SQL Code Generator: Parse error: " + ex.getMessage(), ex);
         } catch (IOException e) {
-            throw new MojoExecutionException("Could not generate Java source code!", e);
+            throw new MojoExecutionException("Could not write " + shapeReport, e);
+        }
+        if (exceeding.length() > 0) {
+            throw new MojoFailureException("Statements with more than " + maxShapes + " SQL shapes, see " + shapeReport + ":" + exceeding);
         }
     }
 
-    protected void generateCodeRecursive(File src, List<File> result, List<String> packages, String extension, File basepath) throws IOException, MojoFailureException {
+    /**
+     * Collects all source files with the given extension below src, and their package names.
+     */
+    protected void generateCodeRecursive(File src, List<File> result, List<String> packages, String extension, File basepath) {
         if (src.isFile() && src.getName().toLowerCase().endsWith(extension)) {
             result.add(src);
             String pack = src.getParentFile().getAbsolutePath().substring(basepath.getAbsolutePath().length()+1).replace('/', '.').replace('\\', '.');
             packages.add(pack);
             getLog().info("Found " + src.getAbsolutePath() + " within "+ src.getParentFile().getAbsolutePath() + " for package " + pack);
-            generateJavaCode(src, pack, basepath);
             return;
         }
         if (src.isDirectory()) {
@@ -72,21 +239,33 @@ public class SQLCodeGeneratorMojo extends AbstractMojo {
         }
     }
 
-    private void generateJavaCode(File src, String pack, File outPath) throws IOException, MojoFailureException {
-        SQLCodeGenerator cgen = new SQLCodeGenerator();
-
+    private void generateJavaCode(SQLCodeGenerator cgen, GenerationManifest manifest, File src, String pack, File outPath) throws MojoExecutionException, MojoFailureException {
         String name = src.getName().substring(0, src.getName().length() - 5);
         File srcTarget = new File(outPath.getAbsolutePath() + File.separator + pack.replace('.', File.separatorChar) + File.separator + name + ".java");
-        getLog().info("Creating " + srcTarget.getPath() + " from " + src.getPath() + " baseclass="+this.baseclass);
+        File configTarget = new File(nativeImageConfigDirectory, SQLCodeGenerator.nativeImageConfigPath(pack, name));
         try {
-            if (!srcTarget.exists() || (src.lastModified() > srcTarget.lastModified())) {
-                srcTarget.getParentFile().mkdirs();
-                cgen.generateSQLCode(src, srcTarget, pack, name, this.baseclass, false);
+            if (shapeProfile != null) {
+                for (String statement : cgen.findUnusedStatements(TamunoUtils.loadTextFileChars(src, "UTF-8"), pack, name)) {
+                    getLog().warn("Statement " + statement + " of " + src.getPath() + " has never been executed according to " + profile);
+                }
             }
-
+            String hash = manifest.hash(src);
+            if (manifest.isUpToDate(src, hash, srcTarget, configTarget)) {
+                getLog().debug(srcTarget.getPath() + " is up to date");
+                return;
+            }
+            getLog().info("Creating " + srcTarget.getPath() + " from " + src.getPath() + " baseclass="+this.baseclass);
+            srcTarget.getParentFile().mkdirs();
+            if (!cgen.generateSQLCodeIfChanged(src, srcTarget, pack, name, this.baseclass, false)) {
+                getLog().info(srcTarget.getPath() + " is unchanged");
+            }
+            cgen.generateNativeImageConfigIfChanged(src, configTarget, pack, name, this.baseclass, false);
+            manifest.update(src, hash, srcTarget, configTarget);
         } catch (SQLGenParseException ex) {
             getLog().error("SQL Code Generator: Parse error in " + src.toString() + ":" + ex.getMessage());
             throw new MojoFailureException("SQL Code Generator: Parse error in " + src.toString() + ":" + ex.getMessage(), ex);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not generate Java source code!", e);
         }
 
     }
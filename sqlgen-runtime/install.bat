@@ -0,0 +1,2 @@
+
+mvn clean package install:install
\ No newline at end of file
@@ -0,0 +1,2 @@
+#!/bin/bash
+mvn clean package install:install
\ No newline at end of file
@@ -0,0 +1,46 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.annotations;
+
+import java.lang.annotation.*;
+
+/**
+ * Names SQL Code Generator sources (.sqlg files) to be generated by the annotation processor
+ * org.tamuno.apt.SQLCodeGeneratorProcessor during compilation. Usually placed on a package-info.java.
+ * 
+ * The sources are resolved relative to the package of the annotated element, on the source path
+ * or the class path. Like with the Ant task, a source named Base.Dialect.sqlg creates the
+ * abstract base class Base and its dialect specific subclass BaseDialect.
+ * 
+ * <PRE>
+ *   &#64;SQLGenSources({"SQLCode.sqlg"})
+ *   package org.example.db;
+ * </PRE>
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.PACKAGE, ElementType.TYPE})
+public @interface SQLGenSources { 
+    /** Names of the .sqlg sources, relative to the package of the annotated element */
+    public String[] value();
+    
+    /** Base class of the generated classes. Only used for sources without dialect */
+    public String baseclass() default "";
+    
+    /** Collapse runs of whitespace in the generated SQL into a single space */
+    public boolean collapseWhitespace() default false;
+}
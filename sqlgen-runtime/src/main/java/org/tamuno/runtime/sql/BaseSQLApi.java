@@ -0,0 +1,148 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ *
+ * @author kai
+ * @TODO Documentation
+ */
+public class BaseSQLApi {
+    
+    protected DBConnectionProvider connectionProvider;
+    protected ISQLDialectUtil sqlDialectUtil = GenericSQLDialectUtil.instance;
+
+    public void setConnectionProvider(DBConnectionProvider connectionProvider) {
+        this.connectionProvider = connectionProvider;
+    }
+
+    public void setSqlDialectUtil(ISQLDialectUtil sqlDialectUtil) {
+        this.sqlDialectUtil = sqlDialectUtil;
+    }
+
+    public ISQLDialectUtil getSqlDialectUtil() {
+        return sqlDialectUtil;
+    }
+
+    /**
+     * Selects the SQL Dialect by name, e.g. MySQL, PostgreSQL, H2 or SQLServer
+     * @see SQLDialects
+     */
+    public void setSqlDialect(String name) {
+        this.sqlDialectUtil = SQLDialects.forName(name);
+    }
+
+    /**
+     * Selects the SQL Dialect matching the database behind the connection provider.
+     * @see SQLDialects#forConnection(Connection)
+     */
+    public void detectSqlDialect() throws SQLException {
+        this.sqlDialectUtil = SQLDialects.forConnection(connectionProvider.getConnection());
+    }
+
+    /**
+     * Returns the connection to run the given statement on, which the connection provider chooses
+     * by the statement if it is a StatementConnectionProvider. Used by the generated code.
+     */
+    protected Connection getConnection(RoutableStatement statement) throws SQLException {
+        if (connectionProvider instanceof StatementConnectionProvider) {
+            return ((StatementConnectionProvider) connectionProvider).getConnection(statement);
+        }
+        return connectionProvider.getConnection();
+    }
+
+    /**
+     * Returns new instances of all statements of this API. Overridden by the generated code.
+     */
+    public ShapedStatement[] getStatements() {
+        return new ShapedStatement[0];
+    }
+
+    /**
+     * Renders the first maxShapes shapes of every statement with sample values, and prepares them
+     * on the connection the statement would run on, without executing them. Meant to be called at
+     * startup, so the first requests do not pay for rendering code which is not yet compiled, and
+     * for connection and catalog setup within the driver and the database. Shapes which can not be
+     * prepared, e.g. because a # variable does not accept the sample value, or routed, e.g. by a
+     * ShardRouter without default shard when their routing key is not available, are skipped.
+     * <P>
+     * The connection is chosen by getConnection(RoutableStatement) for the statement with the sample
+     * values, so a StatementConnectionProvider warms up only the connections it routes those to: a
+     * ReadWriteSplitter one of its replicas for each read-only shape, a ShardRouter the shard of
+     * the sample key. To warm up every connection, call warmUp on an API for each of them.
+     * @return the number of shapes prepared
+     * @see ShapedStatement#getShapes()
+     */
+    public int warmUp(int maxShapes) throws SQLException {
+        int count = 0;
+        for (ShapedStatement statement : getStatements()) {
+            long shapes[] = statement.getShapes();
+            for (int i = 0; (i < shapes.length) && (i < maxShapes); i++) {
+                ShapedStatement shape = statement.forShape(shapes[i]);
+                String sql = shape.toString();
+                try {
+                    getConnection(shape).prepareStatement(sql).close();
+                    count++;
+                } catch (SQLException ex) {
+                    Logger.getLogger(BaseSQLApi.class.getName()).log(Level.FINE, "Could not prepare " + sql, ex);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sample value of an input variable type, used by the generated forShape methods.
+     */
+    protected static <T> T sampleValue(Class<T> type) {
+        Object value;
+        if (type == String.class) {
+            value = "1";
+        } else if (type == Integer.class) {
+            value = 1;
+        } else if (type == Long.class) {
+            value = 1L;
+        } else if (type == Short.class) {
+            value = (short) 1;
+        } else if (type == Byte.class) {
+            value = (byte) 1;
+        } else if (type == Double.class) {
+            value = 1.0;
+        } else if (type == Float.class) {
+            value = 1.0f;
+        } else if (type == Boolean.class) {
+            value = Boolean.TRUE;
+        } else if (type == java.math.BigDecimal.class) {
+            value = java.math.BigDecimal.ONE;
+        } else if (type == byte[].class) {
+            value = new byte[]{1};
+        } else if (type == java.sql.Date.class) {
+            value = new java.sql.Date(0L);
+        } else if (type == java.sql.Time.class) {
+            value = new java.sql.Time(0L);
+        } else if (type == java.sql.Timestamp.class) {
+            value = new java.sql.Timestamp(0L);
+        } else if (type == java.net.URL.class) {
+            try {
+                value = new java.net.URL("http://localhost/");
+            } catch (java.net.MalformedURLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        } else {
+            throw new IllegalArgumentException("No sample value for " + type.getName());
+        }
+        return type.cast(value);
+    }
+   
+
+}
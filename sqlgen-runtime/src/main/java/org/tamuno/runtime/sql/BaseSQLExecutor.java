@@ -0,0 +1,48 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * @author kai
+ * @TODO Documentation of class BaseSQLExecutor
+ */
+public class BaseSQLExecutor {
+        
+        protected ShapeProfile profile;
+        
+        /**
+         * Records the shapes of all statements executed from now on in the given profile, 
+         * null to stop recording.
+         */
+        public void setProfile(ShapeProfile profile) {
+            this.profile = profile;
+        }
+        
+        public ShapeProfile getProfile() {
+            return profile;
+        }
+        
+        public int executeUpdate(Statement st, Object sql) throws SQLException {
+            record(sql);
+            return st.executeUpdate(sql.toString());
+        }
+        
+        public ResultSet executeQuery(Statement st, Object sql) throws SQLException {
+            record(sql);
+            return ReadWriteSplitter.executeQuery(st, sql);
+        }
+        
+        private void record(Object sql) {
+            ShapeProfile p = profile;
+            if ((p != null) && (sql instanceof ShapedStatement)) {
+                p.record((ShapedStatement) sql);
+            }
+        }
+}
@@ -0,0 +1,372 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+
+/**
+ * Result row of a statement whose columns are only known at runtime. The counterpart of the
+ * Row classes of generated statements, for rows of SQLTemplates and other dynamically defined queries.
+ * 
+ * The columns are described by name and by the type names used for output variables of the
+ * SQL Code Generator, like int, String or Date. Values of integral types (including boolean) are
+ * stored unboxed in a long[], floating point values in a double[], all others in an Object[].
+ * As with generated code, primitive values are 0 or false for SQL NULL.
+ * 
+ * loadResultSetRow of this class interprets the column types. RowLoaders creates subclasses 
+ * with one straight line of ResultSet getter calls instead, which load rows just as fast as
+ * generated Row classes. Those are serialized as plain DynamicRows, as the spun classes can not
+ * be looked up by name when deserializing.
+ * 
+ * @see RowLoaders#newRow
+ */
+public class DynamicRow implements TypedRow, Cloneable, Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    static final int KIND_LONG = 0;
+    static final int KIND_DOUBLE = 1;
+    static final int KIND_OBJECT = 2;
+    
+    /**
+     * Supported types: type name, ResultSet getter, getter descriptor, storage kind 
+     */
+    static final Object TYPES[][] = {
+        {"String", "getString", "(I)Ljava/lang/String;", KIND_OBJECT},
+        {"int", "getInt", "(I)I", KIND_LONG},
+        {"long", "getLong", "(I)J", KIND_LONG},
+        {"double", "getDouble", "(I)D", KIND_DOUBLE},
+        {"float", "getFloat", "(I)F", KIND_DOUBLE},
+        {"short", "getShort", "(I)S", KIND_LONG},
+        {"boolean", "getBoolean", "(I)Z", KIND_LONG},
+        {"byte", "getByte", "(I)B", KIND_LONG},
+        {"bytes", "getBytes", "(I)[B", KIND_OBJECT},
+        {"decimal", "getBigDecimal", "(I)Ljava/math/BigDecimal;", KIND_OBJECT},
+        {"URL", "getURL", "(I)Ljava/net/URL;", KIND_OBJECT},
+        {"Date", "getDate", "(I)Ljava/sql/Date;", KIND_OBJECT},
+        {"Time", "getTime", "(I)Ljava/sql/Time;", KIND_OBJECT},
+        {"Timestamp", "getTimestamp", "(I)Ljava/sql/Timestamp;", KIND_OBJECT},
+        {"Blob", "getBlob", "(I)Ljava/sql/Blob;", KIND_OBJECT},
+        {"Clob", "getClob", "(I)Ljava/sql/Clob;", KIND_OBJECT}
+    };
+    private static final HashMap<String, Integer> typeIndices = new HashMap<String, Integer>();
+    
+    static {
+        for (int i = 0; i < TYPES.length; i++) {
+            typeIndices.put((String) TYPES[i][0], i);
+        }
+    }
+    
+    /**
+     * Names and types of the columns of a statement, shared by all of its rows.
+     */
+    public static final class Columns implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String names[];
+        final String types[];
+        /** Index into TYPES of every column */
+        final int typeIndices[];
+        /** Index of every column within the array of its storage kind */
+        final int slots[];
+        final int counts[] = new int[3];
+        final String signature;
+        private final HashMap<String, Integer> indices = new HashMap<String, Integer>();
+        
+        /**
+         * @param names column names
+         * @param types SQL Code Generator type names of the columns, like int, String or Date
+         * @throws IllegalArgumentException for unknown types
+         */
+        public Columns(String names[], String types[]) {
+            if (names.length != types.length) {
+                throw new IllegalArgumentException("Got " + names.length + " column names, but " + types.length + " types");
+            }
+            this.names = names.clone();
+            this.types = types.clone();
+            this.typeIndices = new int[names.length];
+            this.slots = new int[names.length];
+            StringBuilder t = new StringBuilder();
+            for (int i = 0; i < names.length; i++) {
+                Integer type = DynamicRow.typeIndices.get(types[i]);
+                if (type == null) {
+                    throw new IllegalArgumentException("Column " + names[i] + " is of unknown type: " + types[i]);
+                }
+                typeIndices[i] = type;
+                slots[i] = counts[kind(i)]++;
+                indices.put(names[i], i);
+                t.append(types[i]).append(',');
+            }
+            signature = t.toString();
+        }
+        
+        int kind(int column) {
+            return (Integer) TYPES[typeIndices[column]][3];
+        }
+        
+        /**
+         * Returns the comma separated column types. Rows of columns with the same signature load
+         * the same way, whatever the names of the columns are.
+         */
+        public String getSignature() {
+            return signature;
+        }
+        
+        public int size() {
+            return names.length;
+        }
+        
+        /**
+         * Returns the index of the named column, or -1 if there is no such column
+         */
+        public int indexOf(String name) {
+            Integer idx = indices.get(name);
+            return (idx == null) ? -1 : idx;
+        }
+    }
+    
+    protected final Columns columns;
+    protected long longs[];
+    protected double doubles[];
+    protected Object objects[];
+    
+    public DynamicRow(Columns columns) {
+        this.columns = columns;
+        this.longs = new long[columns.counts[KIND_LONG]];
+        this.doubles = new double[columns.counts[KIND_DOUBLE]];
+        this.objects = new Object[columns.counts[KIND_OBJECT]];
+    }
+    
+    public void loadResultSetRow(ResultSet rs) throws SQLException {
+        int typeIndices[] = columns.typeIndices;
+        int slots[] = columns.slots;
+        for (int i = 0; i < typeIndices.length; i++) {
+            int col = i + 1;
+            int slot = slots[i];
+            switch (typeIndices[i]) {
+                case 0:
+                    objects[slot] = rs.getString(col);
+                    break;
+                case 1:
+                    longs[slot] = rs.getInt(col);
+                    break;
+                case 2:
+                    longs[slot] = rs.getLong(col);
+                    break;
+                case 3:
+                    doubles[slot] = rs.getDouble(col);
+                    break;
+                case 4:
+                    doubles[slot] = rs.getFloat(col);
+                    break;
+                case 5:
+                    longs[slot] = rs.getShort(col);
+                    break;
+                case 6:
+                    longs[slot] = rs.getBoolean(col) ? 1L : 0L;
+                    break;
+                case 7:
+                    longs[slot] = rs.getByte(col);
+                    break;
+                case 8:
+                    objects[slot] = rs.getBytes(col);
+                    break;
+                case 9:
+                    objects[slot] = rs.getBigDecimal(col);
+                    break;
+                case 10:
+                    objects[slot] = rs.getURL(col);
+                    break;
+                case 11:
+                    objects[slot] = rs.getDate(col);
+                    break;
+                case 12:
+                    objects[slot] = rs.getTime(col);
+                    break;
+                case 13:
+                    objects[slot] = rs.getTimestamp(col);
+                    break;
+                case 14:
+                    objects[slot] = rs.getBlob(col);
+                    break;
+                default:
+                    objects[slot] = rs.getClob(col);
+            }
+        }
+    }
+    
+    public Columns getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of columns
+     */
+    public int size() {
+        return columns.names.length;
+    }
+    
+    /**
+     * Returns the name of the column with the given index (starting at 0)
+     */
+    public String getName(int index) {
+        return columns.names[index];
+    }
+    
+    /**
+     * Returns the type of the column with the given index, like String or int
+     */
+    public String getType(int index) {
+        return columns.types[index];
+    }
+    
+    /**
+     * Returns the index of the named column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    public int indexOf(String name) {
+        int idx = columns.indexOf(name);
+        if (idx == -1) {
+            throw new IllegalArgumentException("Unknown column " + name);
+        }
+        return idx;
+    }
+    
+    /**
+     * Returns the value of the column with the given index (starting at 0), boxed if it is of a primitive type
+     */
+    public Object get(int index) {
+        int slot = columns.slots[index];
+        switch (columns.typeIndices[index]) {
+            case 1:
+                return (int) longs[slot];
+            case 2:
+                return longs[slot];
+            case 3:
+                return doubles[slot];
+            case 4:
+                return (float) doubles[slot];
+            case 5:
+                return (short) longs[slot];
+            case 6:
+                return longs[slot] != 0L;
+            case 7:
+                return (byte) longs[slot];
+            default:
+                return objects[slot];
+        }
+    }
+    
+    public Object get(String name) {
+        return get(indexOf(name));
+    }
+    
+    /**
+     * Returns the value of an integral column (int, long, short, byte or boolean as 0 or 1), without boxing
+     */
+    public long getLong(int index) {
+        checkKind(index, KIND_LONG);
+        return longs[columns.slots[index]];
+    }
+    
+    public long getLong(String name) {
+        return getLong(indexOf(name));
+    }
+    
+    public int getInt(int index) {
+        return (int) getLong(index);
+    }
+    
+    public int getInt(String name) {
+        return (int) getLong(indexOf(name));
+    }
+    
+    public boolean getBoolean(int index) {
+        return getLong(index) != 0L;
+    }
+    
+    public boolean getBoolean(String name) {
+        return getLong(indexOf(name)) != 0L;
+    }
+    
+    /**
+     * Returns the value of a double or float column, without boxing
+     */
+    public double getDouble(int index) {
+        checkKind(index, KIND_DOUBLE);
+        return doubles[columns.slots[index]];
+    }
+    
+    public double getDouble(String name) {
+        return getDouble(indexOf(name));
+    }
+    
+    public String getString(int index) {
+        return (String) get(index);
+    }
+    
+    public String getString(String name) {
+        return (String) get(indexOf(name));
+    }
+    
+    private void checkKind(int index, int kind) {
+        if (columns.kind(index) != kind) {
+            throw new ClassCastException("Column " + columns.names[index] + " is of type " + columns.types[index]);
+        }
+    }
+    
+    /**
+     * Replaces rows of spun classes by plain DynamicRows with the same values when serializing
+     */
+    protected Object writeReplace() {
+        if (getClass() == DynamicRow.class) {
+            return this;
+        }
+        DynamicRow result = new DynamicRow(columns);
+        result.longs = longs.clone();
+        result.doubles = doubles.clone();
+        result.objects = objects.clone();
+        return result;
+    }
+    
+    public Object clone() {
+        try {
+            DynamicRow result = (DynamicRow) super.clone();
+            result.longs = longs.clone();
+            result.doubles = doubles.clone();
+            result.objects = objects.clone();
+            return result;
+        } catch (CloneNotSupportedException cns) {
+            throw new IllegalStateException(cns);
+        }
+    }
+    
+    public String toString() {
+        StringBuilder t = new StringBuilder("{");
+        for (int i = 0; i < columns.names.length; i++) {
+            if (i > 0) {
+                t.append(", ");
+            }
+            t.append(columns.names[i]).append('=').append(get(i));
+        }
+        return t.append('}').toString();
+    }
+}
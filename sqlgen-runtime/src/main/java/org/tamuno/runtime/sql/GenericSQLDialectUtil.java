@@ -0,0 +1,387 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Generic SQL Dialect, and base class of the dialect specific implementations.
+ * 
+ * Strings are quoted with ', and ' is escaped as \'. Dates and times are written
+ * as quoted strings, binary values as X'..' hex literals.
+ * 
+ * All escaping is done in a single pass, appending directly to the target StringBuilder.
+ * The escapeValue methods are implemented in terms of the appendEscaped methods, so
+ * derived classes only need to override the latter.
+ * 
+ * @author kai
+ * @see SQLDialects
+ */
+public class GenericSQLDialectUtil implements ISQLDialectUtil {
+
+    public static final GenericSQLDialectUtil instance = new GenericSQLDialectUtil();
+    
+    private static final char hexDigits[] = "0123456789ABCDEF".toCharArray();
+    
+    /**
+     * If true, dates and times are written as typed literals, like DATE '2007-05-25'
+     */
+    protected boolean typedDatetimeLiterals = false;
+    
+    /**
+     * Maximum number of fractional second digits written for timestamps
+     */
+    protected int maxFractionalDigits = 9;
+    
+    // Singleton which may be helpful for derived classes. Therefore protected constructor.
+    protected GenericSQLDialectUtil() {
+    }
+    
+    /**
+     * Escapes a string value in such a way that it can be safely used within sql strings. That is,
+     * ' is replaced by \'
+     * @param value String value to be escaped
+     * @return escaped String
+     */
+    public  String escapeValue(String value) {
+        return appendEscaped(new StringBuilder(value.length() + 8), value).toString();
+    }
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Integer value) {
+        return value.toString();
+    }
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Long value) {
+        return value.toString();
+    }
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Short value) {
+        return value.toString();
+    }
+    
+    /**
+     * Returns the value as an approximate numeric literal
+     * @throws IllegalArgumentException for NaN and infinite values, which have no SQL literal
+     */
+    public  String escapeValue(Double value) {
+        return appendEscaped(new StringBuilder(24), value).toString();
+    }
+    
+    /**
+     * Returns the value as an approximate numeric literal
+     * @throws IllegalArgumentException for NaN and infinite values, which have no SQL literal
+     */
+    public  String escapeValue(Float value) {
+        return appendEscaped(new StringBuilder(16), value).toString();
+    }
+    
+    /**
+     * Returns the value as a date literal of the SQL dialect
+     */
+    public  String escapeValue(Date value) {
+        return appendEscaped(new StringBuilder(20), value).toString();
+    }
+    
+    /**
+     * Returns the value as a time literal of the SQL dialect
+     */
+    public  String escapeValue(Time value) {
+        return appendEscaped(new StringBuilder(20), value).toString();
+    }
+    
+    /**
+     * Returns the value as a timestamp literal of the SQL dialect
+     */
+    public  String escapeValue(Timestamp value) {
+        return appendEscaped(new StringBuilder(40), value).toString();
+    }
+    
+    /**
+     * Returns the value as an exact numeric literal of the SQL dialect
+     */
+    public  String escapeValue(BigDecimal value) {
+        return value.toPlainString();
+    }
+    
+    /**
+     * Returns the value as a binary (hex) literal of the SQL dialect
+     */
+    public  String escapeValue(byte[] value) {
+        return appendEscaped(new StringBuilder(value.length * 2 + 8), value).toString();
+    }
+    
+    /**
+     * Escapes the value according to its runtime type, that is, via one of the typed
+     * escapeValue methods, or via escapeValue(value.toString()) for any other type.
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Object value) {
+        return appendEscaped(new StringBuilder(), value).toString();
+    }
+    
+    /**
+     * Appends the escaped string value to the given StringBuilder in a single pass. That is,
+     * ' is replaced by \'
+     * @param t StringBuilder to append to
+     * @param value String value to be escaped
+     * @return t
+     */
+    public StringBuilder appendEscaped(StringBuilder t, String value) {
+        int len = value.length();
+        t.append('\'');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) == '\'') {
+                t.append(value, start, i);
+                t.append("\\'");
+                start = i + 1;
+            }
+        }
+        t.append(value, start, len);
+        t.append('\'');
+        return t;
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Integer value) {
+        return t.append(value.intValue());
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Long value) {
+        return t.append(value.longValue());
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Short value) {
+        return t.append(value.shortValue());
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @throws IllegalArgumentException for NaN and infinite values, which have no SQL literal
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Double value) {
+        checkFinite(value);
+        return t.append(value.doubleValue());
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @throws IllegalArgumentException for NaN and infinite values, which have no SQL literal
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Float value) {
+        checkFinite(value.doubleValue());
+        return t.append(value.floatValue());
+    }
+    
+    private static void checkFinite(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException(value + " can not be written as SQL literal");
+        }
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(Date)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Date value) {
+        t.append(typedDatetimeLiterals ? "DATE '" : "'");
+        appendDate(t, value);
+        return t.append('\'');
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(Time)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Time value) {
+        t.append(typedDatetimeLiterals ? "TIME '" : "'");
+        appendTime(t, value);
+        return t.append('\'');
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(Timestamp)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Timestamp value) {
+        t.append(typedDatetimeLiterals ? "TIMESTAMP '" : "'");
+        appendTimestamp(t, value);
+        return t.append('\'');
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(BigDecimal)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, BigDecimal value) {
+        return t.append(value.toPlainString());
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(byte[])
+     */
+    public StringBuilder appendEscaped(StringBuilder t, byte[] value) {
+        t.append("X'");
+        appendHex(t, value);
+        return t.append('\'');
+    }
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(Object)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Object value) {
+        if (value instanceof String) {
+            return appendEscaped(t, (String) value);
+        } else if (value instanceof Integer) {
+            return appendEscaped(t, (Integer) value);
+        } else if (value instanceof Long) {
+            return appendEscaped(t, (Long) value);
+        } else if (value instanceof Short) {
+            return appendEscaped(t, (Short) value);
+        } else if (value instanceof Double) {
+            return appendEscaped(t, (Double) value);
+        } else if (value instanceof Float) {
+            return appendEscaped(t, (Float) value);
+        } else if (value instanceof Date) {
+            return appendEscaped(t, (Date) value);
+        } else if (value instanceof Time) {
+            return appendEscaped(t, (Time) value);
+        } else if (value instanceof Timestamp) {
+            return appendEscaped(t, (Timestamp) value);
+        } else if (value instanceof BigDecimal) {
+            return appendEscaped(t, (BigDecimal) value);
+        } else if (value instanceof byte[]) {
+            return appendEscaped(t, (byte[]) value);
+        }
+        return appendEscaped(t, value.toString());
+    }
+    
+    /**
+     * Appends the value quoted with ', doubling any contained '. This is the 
+     * escaping defined by the SQL standard.
+     */
+    protected static StringBuilder appendQuoteDoubled(StringBuilder t, String value) {
+        int len = value.length();
+        t.append('\'');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (value.charAt(i) == '\'') {
+                t.append(value, start, i + 1);
+                t.append('\'');
+                start = i + 1;
+            }
+        }
+        t.append(value, start, len);
+        t.append('\'');
+        return t;
+    }
+    
+    /**
+     * Appends the date as yyyy-mm-dd
+     */
+    @SuppressWarnings("deprecation")
+    protected static void appendDate(StringBuilder t, java.util.Date value) {
+        appendDigits(t, value.getYear() + 1900, 4);
+        t.append('-');
+        appendDigits(t, value.getMonth() + 1, 2);
+        t.append('-');
+        appendDigits(t, value.getDate(), 2);
+    }
+    
+    /**
+     * Appends the time as hh:mm:ss
+     */
+    @SuppressWarnings("deprecation")
+    protected static void appendTime(StringBuilder t, java.util.Date value) {
+        appendDigits(t, value.getHours(), 2);
+        t.append(':');
+        appendDigits(t, value.getMinutes(), 2);
+        t.append(':');
+        appendDigits(t, value.getSeconds(), 2);
+    }
+    
+    /**
+     * Appends the timestamp as yyyy-mm-dd hh:mm:ss[.fffffffff], with at most maxFractionalDigits 
+     * fractional digits, and without trailing zeroes.
+     */
+    protected void appendTimestamp(StringBuilder t, Timestamp value) {
+        appendDate(t, value);
+        t.append(' ');
+        appendTime(t, value);
+        int nanos = value.getNanos();
+        int digits = 9;
+        while (digits > maxFractionalDigits) {
+            nanos /= 10;
+            digits--;
+        }
+        while ((digits > 0) && (nanos % 10 == 0)) {
+            nanos /= 10;
+            digits--;
+        }
+        if (digits > 0) {
+            t.append('.');
+            appendDigits(t, nanos, digits);
+        }
+    }
+    
+    /**
+     * Appends the value in decimal, padded with leading zeroes to the given number of digits.
+     */
+    protected static void appendDigits(StringBuilder t, int value, int digits) {
+        if (value < 0) {
+            t.append('-');
+            value = -value;
+        }
+        int limit = 10;
+        for (int d = 1; d < digits; d++) {
+            if (value < limit) {
+                t.append('0');
+            }
+            limit *= 10;
+        }
+        t.append(value);
+    }
+    
+    /**
+     * Appends the value as (upper case) hex digits
+     */
+    protected static void appendHex(StringBuilder t, byte[] value) {
+        t.ensureCapacity(t.length() + value.length * 2);
+        for (int i = 0; i < value.length; i++) {
+            int b = value[i];
+            t.append(hexDigits[(b >> 4) & 0xF]);
+            t.append(hexDigits[b & 0xF]);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * SQL Dialect for the H2 Database
+ * 
+ * H2 follows the SQL standard: ' is doubled within strings, backslashes are taken literally.
+ */
+public class H2DialectUtil extends GenericSQLDialectUtil {
+
+    public static final H2DialectUtil instance = new H2DialectUtil();
+
+    protected H2DialectUtil() {
+        typedDatetimeLiterals = true;
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, String value) {
+        return appendQuoteDoubled(t, value);
+    }
+}
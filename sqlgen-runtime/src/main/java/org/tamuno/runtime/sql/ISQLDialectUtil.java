@@ -0,0 +1,158 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+/**
+ *
+ * @author kai
+ */
+public interface ISQLDialectUtil {
+    
+    /**
+     * Escapes a string value in such a way that it can be safely used within sql strings. That is,
+     * ' is replaced by \'
+     * @param value String value to be escaped
+     * @return escaped String
+     */
+    public String escapeValue(String value);
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Integer value);
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Long value);
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Short value);
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Double value);
+    
+    /**
+     * equivalent to escapeValue(value.toString())
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Float value);
+    
+    /**
+     * Escapes the value according to its runtime type, that is, via one of the typed
+     * escapeValue methods, or via escapeValue(value.toString()) for any other type.
+     * @see escapeValue(String)
+     */
+    public  String escapeValue(Object value);
+
+    /**
+     * Returns the value as a date literal of the SQL dialect
+     */
+    public  String escapeValue(java.sql.Date value);
+    
+    /**
+     * Returns the value as a time literal of the SQL dialect
+     */
+    public  String escapeValue(java.sql.Time value);
+    
+    /**
+     * Returns the value as a timestamp literal of the SQL dialect
+     */
+    public  String escapeValue(java.sql.Timestamp value);
+    
+    /**
+     * Returns the value as a exact numeric literal of the SQL dialect
+     */
+    public  String escapeValue(java.math.BigDecimal value);
+    
+    /**
+     * Returns the value as a binary (hex) literal of the SQL dialect
+     */
+    public  String escapeValue(byte[] value);
+    
+    /**
+     * Appends the escaped string value to the given StringBuilder, without creating
+     * intermediate Strings. The result is equivalent to t.append(escapeValue(value))
+     * @param t StringBuilder to append to
+     * @param value String value to be escaped
+     * @return t
+     */
+    public StringBuilder appendEscaped(StringBuilder t, String value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Integer value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Long value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Short value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Double value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see appendEscaped(StringBuilder, String)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Float value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(Object)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, Object value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(java.sql.Date)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, java.sql.Date value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(java.sql.Time)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, java.sql.Time value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(java.sql.Timestamp)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, java.sql.Timestamp value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(java.math.BigDecimal)
+     */
+    public StringBuilder appendEscaped(StringBuilder t, java.math.BigDecimal value);
+    
+    /**
+     * equivalent to t.append(escapeValue(value))
+     * @see escapeValue(byte[])
+     */
+    public StringBuilder appendEscaped(StringBuilder t, byte[] value);
+}
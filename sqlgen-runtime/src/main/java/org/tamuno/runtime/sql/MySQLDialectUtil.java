@@ -0,0 +1,83 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * SQL Dialect for MySQL and MariaDB
+ * 
+ * Strings are escaped like mysql_real_escape_string() does it: NUL, newline, carriage return,
+ * backslash, both quote chars and Ctrl-Z are backslash-escaped. Note that this relies on the
+ * NO_BACKSLASH_ESCAPES SQL mode being disabled, which is the default.
+ */
+public class MySQLDialectUtil extends GenericSQLDialectUtil {
+
+    public static final MySQLDialectUtil instance = new MySQLDialectUtil();
+
+    protected MySQLDialectUtil() {
+        typedDatetimeLiterals = true;
+        maxFractionalDigits = 6;
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, String value) {
+        int len = value.length();
+        t.append('\'');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c > '\\') {
+                // all characters to escape are below the backslash
+                continue;
+            }
+            char replacement;
+            switch (c) {
+                case 0:
+                    replacement = '0';
+                    break;
+                case '\n':
+                    replacement = 'n';
+                    break;
+                case '\r':
+                    replacement = 'r';
+                    break;
+                case '\\':
+                    replacement = '\\';
+                    break;
+                case '\'':
+                    replacement = '\'';
+                    break;
+                case '"':
+                    replacement = '"';
+                    break;
+                case '\032':
+                    replacement = 'Z';
+                    break;
+                default:
+                    continue;
+            }
+            t.append(value, start, i);
+            t.append('\\');
+            t.append(replacement);
+            start = i + 1;
+        }
+        t.append(value, start, len);
+        t.append('\'');
+        return t;
+    }
+}
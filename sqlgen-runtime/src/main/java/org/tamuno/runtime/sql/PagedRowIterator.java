@@ -0,0 +1,178 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import javax.sql.DataSource;
+
+/**
+ * Iterates over all rows of a seek (keyset pagination) statement, like those generated by the
+ * "Seek Rows" automatic generator, by querying one page after the other as the rows are consumed.
+ * 
+ * Every page is read completely and its statement closed before the first of its rows is returned,
+ * and given a DataSource, its connection is closed (returned to the pool) as well. So walking a 
+ * whole table never holds a cursor, or a connection, while the application processes the rows.
+ * The next page is queried with the last row of the previous one, whose key the Page sets as the
+ * key bound of the statement. A page with less than pageSize rows is the last one.
+ * 
+ * Usage:
+ * <PRE>
+ *   for (SeekItemsRow row : new PagedRowIterator&lt;SeekItemsRow&gt;(dataSource, 1000, new PagedRowIterator.Page&lt;SeekItemsRow&gt;() {
+ *       public RowIterator&lt;SeekItemsRow&gt; query(Statement st, SeekItemsRow lastRow, int limit) throws SQLException {
+ *           SQLCode.SeekItems seek = sqlCode.seekItems();
+ *           seek.after_id = (lastRow == null) ? null : lastRow.id;
+ *           seek.limit = limit;
+ *           return seek.query(st);
+ *       }
+ *   })) {
+ *       ...
+ *   }
+ * </PRE>
+ * Unlike those of a RowIterator, the returned rows are not reused. SQLExceptions while querying 
+ * any but the first page are thrown as RuntimeExceptions, with the SQLException as their cause.
+ */
+public class PagedRowIterator<T extends TypedRow> implements Iterator<T>, Iterable<T> {
+    
+    /**
+     * Queries a single page
+     */
+    public interface Page<T extends TypedRow> {
+        
+        /**
+         * Queries the rows following lastRow in the order of the key, at most limit of them.
+         * @param st Statement to query with, closed by the PagedRowIterator
+         * @param lastRow last row of the previous page, null for the first page
+         */
+        RowIterator<T> query(Statement st, T lastRow, int limit) throws SQLException;
+    }
+    
+    private final DataSource dataSource;
+    private final DBConnectionProvider connectionProvider;
+    private final int pageSize;
+    private final Page<T> page;
+    private ArrayList<T> rows = new ArrayList<T>();
+    private int pos = 0;
+    private int pageCount = 0;
+    
+    /**
+     * Queries every page on a connection of its own, which is closed after reading the page.
+     */
+    public PagedRowIterator(DataSource dataSource, int pageSize, Page<T> page) throws SQLException {
+        this(dataSource, null, pageSize, page);
+    }
+    
+    /**
+     * Queries every page on the connection of the provider, which stays open. Only the statement 
+     * is closed after reading the page.
+     */
+    public PagedRowIterator(DBConnectionProvider connectionProvider, int pageSize, Page<T> page) throws SQLException {
+        this(null, connectionProvider, pageSize, page);
+    }
+    
+    private PagedRowIterator(DataSource dataSource, DBConnectionProvider connectionProvider, int pageSize, Page<T> page) throws SQLException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size has to be positive, not " + pageSize);
+        }
+        this.dataSource = dataSource;
+        this.connectionProvider = connectionProvider;
+        this.pageSize = pageSize;
+        this.page = page;
+        fetch(null);
+    }
+    
+    /**
+     * Replaces the rows by the page following lastRow
+     */
+    private void fetch(T lastRow) throws SQLException {
+        Connection connection = (dataSource != null) ? dataSource.getConnection() : connectionProvider.getConnection();
+        try {
+            Statement st = connection.createStatement();
+            try {
+                ArrayList<T> next = new ArrayList<T>(Math.min(pageSize, 1024));
+                RowIterator<T> it = page.query(st, lastRow, pageSize);
+                try {
+                    while ((next.size() < pageSize) && it.hasNext()) {
+                        T row = it.next();
+                        if (it.getSqlException() != null) {
+                            throw it.getSqlException();
+                        }
+                        // clone() returns an instance of the class of row, which is a T
+                        @SuppressWarnings("unchecked")
+                        T copy = (T) row.clone();
+                        next.add(copy);
+                    }
+                } finally {
+                    it.close();
+                }
+                rows = next;
+                pos = 0;
+                pageCount++;
+            } finally {
+                st.close();
+            }
+        } finally {
+            if (dataSource != null) {
+                connection.close();
+            }
+        }
+    }
+    
+    /**
+     * Returns the number of pages queried so far
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public boolean hasNext() {
+        if (pos < rows.size()) {
+            return true;
+        }
+        if (rows.size() < pageSize) {
+            return false;
+        }
+        try {
+            fetch(rows.get(rows.size() - 1));
+        } catch (SQLException ex) {
+            rows = new ArrayList<T>();
+            throw new RuntimeException(ex);
+        }
+        return pos < rows.size();
+    }
+
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return rows.get(pos++);
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException("Removal not supported");
+    }
+
+    public Iterator<T> iterator() {
+        return this;
+    }
+}
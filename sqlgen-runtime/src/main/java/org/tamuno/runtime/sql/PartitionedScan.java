@@ -0,0 +1,464 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+
+/**
+ * Scans a table in parallel, split into ranges of an integer (or time) key, like those of the
+ * statements generated by the "Scan Rows" automatic generator. Every range is queried on a 
+ * connection of its own, concurrently, and the rows are either passed to a RowHandler from the
+ * thread of their range, or merged into a single Iterator in no particular order.
+ * 
+ * The ranges are given by their boundaries: range i holds the keys from boundaries[i] (inclusive) 
+ * to boundaries[i+1] (exclusive). Evenly spaced boundaries between the MIN and MAX of the key suit
+ * keys without gaps, like auto increment ids. Boundaries taken from a sample of the keys suit 
+ * skewed keys, like timestamps. Times are given as milliseconds.
+ * 
+ * Usage:
+ * <PRE>
+ *   long minMax[] = PartitionedScan.minMax(connection, "items", "id");
+ *   PartitionedScan&lt;ScanItemsRow&gt; scan = new PartitionedScan&lt;ScanItemsRow&gt;(dataSource, 
+ *           PartitionedScan.boundaries(minMax[0], minMax[1], 8), new PartitionedScan.Range&lt;ScanItemsRow&gt;() {
+ *       public RowIterator&lt;ScanItemsRow&gt; query(Statement st, long from, long to) throws SQLException {
+ *           SQLCode.ScanItems range = sqlCode.scanItems();
+ *           range.from_id = from;
+ *           range.to_id = to;
+ *           return range.query(st);
+ *       }
+ *   });
+ *   scan.scan(new PartitionedScan.RowHandler&lt;ScanItemsRow&gt;() {
+ *       public void handle(int range, ScanItemsRow row) throws SQLException {
+ *           ...
+ *       }
+ *   });
+ * </PRE>
+ */
+public class PartitionedScan<T extends TypedRow> {
+    
+    /**
+     * Queries a single range
+     */
+    public interface Range<T extends TypedRow> {
+        
+        /**
+         * Queries the rows with keys from from (inclusive) to to (exclusive)
+         * @param st Statement to query with, closed by the PartitionedScan
+         */
+        RowIterator<T> query(Statement st, long from, long to) throws SQLException;
+    }
+    
+    /**
+     * Receives the rows of a scan. Called concurrently by the threads of the ranges.
+     */
+    public interface RowHandler<T extends TypedRow> {
+        
+        /**
+         * Handles a single row. The row object is reused for the next row of the same range.
+         * @param range index of the range of the row
+         */
+        void handle(int range, T row) throws SQLException;
+    }
+    
+    /** Marks the end of a range within the queue of merged rows */
+    private static final Object END = new Object();
+    
+    private final DataSource dataSource;
+    private final long boundaries[];
+    private final Range<T> range;
+    private ExecutorService executorService;
+    private int maxThreads = 16;
+    
+    /**
+     * @param dataSource source of the connections, one for each range
+     * @param boundaries ascending boundaries of the ranges, see boundaries
+     * @param range queries a single range
+     */
+    public PartitionedScan(DataSource dataSource, long boundaries[], Range<T> range) {
+        if (boundaries.length < 2) {
+            throw new IllegalArgumentException("At least 2 boundaries are needed for a range");
+        }
+        this.dataSource = dataSource;
+        this.boundaries = boundaries.clone();
+        this.range = range;
+    }
+    
+    /**
+     * Sets the ExecutorService which queries the ranges. By default, each scan starts a thread
+     * for every range, up to maxThreads.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    /**
+     * Sets the maximum number of threads, and so of connections, each scan starts if there is no
+     * ExecutorService. Further ranges are queried once others are done. 16 by default.
+     */
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+    
+    public int getRangeCount() {
+        return boundaries.length - 1;
+    }
+    
+    /**
+     * Queries MIN and MAX of the given column.
+     * @return min and max, null if the table is empty. Dates and times as milliseconds.
+     */
+    public static long[] minMax(Connection connection, String table, String column) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT MIN(" + column + "), MAX(" + column + ") FROM " + table);
+            try {
+                if (!rs.next()) {
+                    return null;
+                }
+                Object min = rs.getObject(1);
+                Object max = rs.getObject(2);
+                if ((min == null) || (max == null)) {
+                    return null;
+                }
+                return new long[]{toLong(min), toLong(max)};
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+    
+    private static long toLong(Object value) {
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        return ((Number) value).longValue();
+    }
+    
+    /**
+     * Returns the boundaries of count ranges of (nearly) equal width, holding all keys from min to max.
+     * @throws IllegalArgumentException if max is Long.MAX_VALUE, as there is no exclusive bound above it
+     */
+    public static long[] boundaries(long min, long max, int count) {
+        if ((count < 1) || (max < min) || (max == Long.MAX_VALUE)) {
+            throw new IllegalArgumentException("No " + count + " ranges from " + min + " to " + max);
+        }
+        BigInteger width = BigInteger.valueOf(max).subtract(BigInteger.valueOf(min)).add(BigInteger.ONE);
+        if (width.compareTo(BigInteger.valueOf(count)) < 0) {
+            count = width.intValue();
+        }
+        long result[] = new long[count + 1];
+        for (int i = 0; i <= count; i++) {
+            result[i] = BigInteger.valueOf(min).add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count))).longValue();
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the boundaries of (at most) count ranges holding about the same number of keys,
+     * given a sample of the keys, and all keys from min to max. Keys which occur often within
+     * the sample may result in less ranges.
+     */
+    public static long[] boundaries(long sample[], long min, long max, int count) {
+        long bounds[] = boundaries(min, max, 1);
+        long sorted[] = sample.clone();
+        Arrays.sort(sorted);
+        long result[] = new long[count + 1];
+        int n = 0;
+        result[n++] = bounds[0];
+        for (int i = 1; i < count; i++) {
+            long bound = (sorted.length > 0) ? sorted[(int) ((long) i * sorted.length / count)] : bounds[0];
+            if ((bound > result[n - 1]) && (bound < bounds[1])) {
+                result[n++] = bound;
+            }
+        }
+        result[n++] = bounds[1];
+        return Arrays.copyOf(result, n);
+    }
+    
+    /**
+     * Queries all ranges concurrently, passing their rows to the handler.
+     * If any range fails, the queries of the others are cancelled.
+     * @return the number of rows handled
+     */
+    public long scan(final RowHandler<T> handler) throws SQLException {
+        ArrayList<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+        final Set<Statement> statements = statementSet();
+        for (int i = 0; i < getRangeCount(); i++) {
+            final int index = i;
+            tasks.add(new Callable<Long>() {
+                public Long call() throws Exception {
+                    return scan(index, handler, statements);
+                }
+            });
+        }
+        long count = 0;
+        for (Long n : run(tasks, statements)) {
+            count += n;
+        }
+        return count;
+    }
+    
+    /**
+     * Queries a single range on a connection of its own, passing its rows to the handler.
+     * @param statements the statements of the running ranges, to cancel them
+     * @return the number of rows handled
+     */
+    private long scan(int index, RowHandler<T> handler, Set<Statement> statements) throws SQLException {
+        long count = 0;
+        Connection connection = dataSource.getConnection();
+        try {
+            Statement st = connection.createStatement();
+            statements.add(st);
+            try {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new SQLException("Cancelled");
+                }
+                RowIterator<T> it = range.query(st, boundaries[index], boundaries[index + 1]);
+                try {
+                    while (it.hasNext()) {
+                        T row = it.next();
+                        if (it.getSqlException() != null) {
+                            throw it.getSqlException();
+                        }
+                        handler.handle(index, row);
+                        count++;
+                    }
+                } finally {
+                    it.close();
+                }
+            } finally {
+                statements.remove(st);
+                st.close();
+            }
+        } finally {
+            connection.close();
+        }
+        return count;
+    }
+    
+    /**
+     * Queries all ranges concurrently, and returns their rows merged in no particular order.
+     * The rows are copies, which are not reused. The ranges block while capacity rows are waiting.
+     * SQLExceptions are thrown by the Iterator as RuntimeExceptions, with the SQLException as their cause.
+     * @param capacity number of rows buffered between the ranges and the consumer
+     */
+    public Rows iterator(int capacity) {
+        final Rows rows = new Rows(capacity);
+        final RowHandler<T> handler = new RowHandler<T>() {
+            public void handle(int range, T row) throws SQLException {
+                try {
+                    rows.queue.put(row.clone());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted", ex);
+                }
+            }
+        };
+        ExecutorService executor = (executorService != null) ? executorService : Executors.newFixedThreadPool(Math.min(getRangeCount(), maxThreads));
+        try {
+            for (int i = 0; i < getRangeCount(); i++) {
+                final int index = i;
+                rows.futures.add(executor.submit(new Callable<Long>() {
+                    public Long call() throws Exception {
+                        try {
+                            scan(index, handler, rows.statements);
+                            rows.queue.put(END);
+                        } catch (Exception ex) {
+                            rows.queue.put(ex);
+                        }
+                        return null;
+                    }
+                }));
+            }
+        } finally {
+            if (executor != executorService) {
+                executor.shutdown();
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Runs the tasks concurrently. As soon as one of them fails, the others and their statements
+     * are cancelled.
+     * @return the results in no particular order
+     */
+    private <V> List<V> run(List<Callable<V>> tasks, Set<Statement> statements) throws SQLException {
+        if (tasks.size() == 1) {
+            try {
+                return Arrays.asList(tasks.get(0).call());
+            } catch (SQLException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                throw new SQLException(ex);
+            }
+        }
+        ExecutorService executor = (executorService != null) ? executorService : Executors.newFixedThreadPool(Math.min(tasks.size(), maxThreads));
+        ExecutorCompletionService<V> completion = new ExecutorCompletionService<V>(executor);
+        ArrayList<Future<V>> futures = new ArrayList<Future<V>>();
+        try {
+            for (Callable<V> task : tasks) {
+                futures.add(completion.submit(task));
+            }
+            ArrayList<V> result = new ArrayList<V>();
+            for (int i = 0; i < futures.size(); i++) {
+                result.add(completion.take().get());
+            }
+            return result;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } finally {
+            cancel(futures, statements);
+            if (executor != executorService) {
+                executor.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * Cancels the statements of the running futures, as interrupting them does not stop a blocked
+     * JDBC call, and then the futures. The statements have to be cancelled first, as an interrupted
+     * range may remove its statement before it is cancelled. Those registered in the meantime are
+     * cancelled by a second pass, or see the interrupt before they query.
+     */
+    private static void cancel(List<? extends Future<?>> futures, Set<Statement> statements) {
+        cancel(statements);
+        for (Future<?> f : futures) {
+            f.cancel(true);
+        }
+        cancel(statements);
+    }
+    
+    private static void cancel(Set<Statement> statements) {
+        synchronized (statements) {
+            for (Statement st : statements) {
+                try {
+                    st.cancel();
+                } catch (SQLException ex) {
+                    // closed in the meantime
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns a synchronized set of statements by identity
+     */
+    private static Set<Statement> statementSet() {
+        return Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Statement, Boolean>()));
+    }
+    
+    /**
+     * The merged rows of all ranges. Has to be closed if it is not iterated to its end.
+     */
+    public class Rows implements Iterator<T>, Iterable<T> {
+        private final BlockingQueue<Object> queue;
+        private final ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        private final Set<Statement> statements = statementSet();
+        private int running = getRangeCount();
+        private Object next;
+        
+        Rows(int capacity) {
+            queue = new ArrayBlockingQueue<Object>(capacity);
+        }
+        
+        public boolean hasNext() {
+            while ((next == null) && (running > 0)) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw new IllegalStateException("Interrupted", ex);
+                }
+                if (next == END) {
+                    running--;
+                    next = null;
+                } else if (next instanceof Exception) {
+                    Exception ex = (Exception) next;
+                    close();
+                    throw (ex instanceof RuntimeException) ? (RuntimeException) ex : new RuntimeException(ex);
+                }
+            }
+            return next != null;
+        }
+        
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            // Only clones of rows of T, END and exceptions are queued, and those two never get here
+            @SuppressWarnings("unchecked")
+            T row = (T) next;
+            next = null;
+            return row;
+        }
+        
+        /**
+         * Cancels the queries of all ranges
+         */
+        public void close() {
+            running = 0;
+            next = null;
+            cancel(futures, statements);
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException("Removal not supported");
+        }
+        
+        public Iterator<T> iterator() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * SQL Dialect for PostgreSQL
+ * 
+ * Strings are written as standard conforming strings (the default since PostgreSQL 9.1),
+ * that is, ' is doubled and backslashes are taken literally. PostgreSQL text values
+ * cannot contain NUL characters, so these are rejected with an IllegalArgumentException.
+ * Binary values are written as bytea hex literals.
+ */
+public class PostgreSQLDialectUtil extends GenericSQLDialectUtil {
+
+    public static final PostgreSQLDialectUtil instance = new PostgreSQLDialectUtil();
+
+    protected PostgreSQLDialectUtil() {
+        typedDatetimeLiterals = true;
+        maxFractionalDigits = 6;
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, String value) {
+        int len = value.length();
+        t.append('\'');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c == '\'') {
+                t.append(value, start, i + 1);
+                t.append('\'');
+                start = i + 1;
+            } else if (c == 0) {
+                throw new IllegalArgumentException("PostgreSQL strings cannot contain NUL characters");
+            }
+        }
+        t.append(value, start, len);
+        t.append('\'');
+        return t;
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, byte[] value) {
+        t.append("'\\x");
+        appendHex(t, value);
+        return t.append("'::bytea");
+    }
+}
@@ -0,0 +1,495 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.runtime.sql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connection provider, which sends generated SELECT statements to replicas of the primary
+ * database, and everything else to the primary:
+ * <PRE>
+ *   ReadWriteSplitter splitter = new ReadWriteSplitter(new ThreadDBConnectionProvider(primary));
+ *   splitter.addReplica(new ThreadDBConnectionProvider(replica1));
+ *   splitter.addReplica(new ThreadDBConnectionProvider(replica2));
+ *   sqlCode.setConnectionProvider(splitter);
+ * </PRE>
+ * A statement runs on a replica if it is read only (a SELECT without FOR UPDATE or FOR SHARE, see
+ * RoutableStatement.isReadOnly) and the thread is not within an explicit transaction, i.e. the
+ * primary connection it got last has auto commit switched off. getConnection() always returns the
+ * primary connection, so transactions are begun on it.
+ * 
+ * Of the replicas, the one with the fewest queries outstanding is chosen. A replica which fails to
+ * provide a connection is left out for the retry interval, and, given a LagProbe, one lagging
+ * behind the primary by more than the maximum lag is left out until it caught up. Without any
+ * replica left, reads go to the primary.
+ * 
+ * Only statements executed by execute() and query() without a Statement are split, like with the
+ * ShardRouter, which a ReadWriteSplitter can be a shard of.
+ * 
+ * Latency critical statements can be hedged (see setHedged): if the replica of such a query has not
+ * answered within the 95th percentile of the latencies of all replica queries, the query is sent
+ * to a second replica as well. The first result wins, and the other query is cancelled. Every
+ * replica query earns the hedging budget percent of a hedge, so hedges never add more than that
+ * percentage to the load of the replicas.
+ */
+public class ReadWriteSplitter implements StatementConnectionProvider {
+    
+    /**
+     * Measures how far a replica lags behind the primary, e.g. by the age of a heartbeat row
+     * the primary updates every second.
+     */
+    public interface LagProbe {
+        
+        /**
+         * Returns the replication lag of the replica of the given connection in milliseconds
+         */
+        long getLag(Connection replica) throws SQLException;
+    }
+    
+    /** Number of latencies the hedging delay is derived from */
+    private static final int LATENCY_SAMPLES = 256;
+    /** Minimum number of latencies before hedging starts */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    /** Cost of a hedge in the budget, in hundredths of a percent of a query */
+    private static final long HEDGE_COST = 100 * 100;
+    /** Maximum number of hedges saved up by the budget */
+    private static final long MAX_SAVED_HEDGES = 10;
+    
+    /** Splitter and replica which provided the connection of the last read of the thread, and that connection */
+    private static final ThreadLocal<Object[]> lastRead = new ThreadLocal<Object[]>();
+    
+    private final DBConnectionProvider primary;
+    private final CopyOnWriteArrayList<Replica> replicas = new CopyOnWriteArrayList<Replica>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final ThreadLocal<Connection> primaryConnection = new ThreadLocal<Connection>();
+    private volatile long retryInterval = 5000;
+    private volatile LagProbe lagProbe;
+    private volatile long maxLag;
+    private volatile long probeInterval;
+    private final Set<String> hedged = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile long hedgingBudget = 5 * 100;
+    private long hedgingCredit = 0;
+    private final AtomicLong hedges = new AtomicLong();
+    private final long latencies[] = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+    private volatile long hedgingDelay = -1;
+    private ExecutorService executorService;
+    
+    public ReadWriteSplitter(DBConnectionProvider primary) {
+        this.primary = primary;
+    }
+    
+    public void addReplica(DBConnectionProvider replica) {
+        replicas.add(new Replica(replica));
+    }
+    
+    /**
+     * Sets how long a replica, which failed to provide a connection, is left out. 5 seconds by default.
+     */
+    public void setRetryInterval(long millis) {
+        this.retryInterval = millis;
+    }
+    
+    /**
+     * Leaves out replicas lagging by more than maxLag milliseconds. Every replica is probed at 
+     * most once per probeInterval milliseconds, on the connection of the read which is due.
+     * A null probe disables the check.
+     */
+    public void setLagProbe(LagProbe probe, long maxLag, long probeInterval) {
+        this.maxLag = maxLag;
+        this.probeInterval = probeInterval;
+        this.lagProbe = probe;
+    }
+    
+    /**
+     * Hedges the queries of the generated statement of the given name, or stops hedging them
+     */
+    public void setHedged(String statementName, boolean hedge) {
+        if (hedge) {
+            hedged.add(statementName);
+        } else {
+            hedged.remove(statementName);
+        }
+    }
+    
+    /**
+     * Sets the maximum percentage of replica queries which may be hedged, 5 by default
+     */
+    public void setHedgingBudget(double percent) {
+        this.hedgingBudget = Math.round(percent * 100);
+    }
+    
+    /**
+     * Returns the number of queries hedged so far
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+    
+    /**
+     * Sets the ExecutorService which runs hedged queries. By default, the splitter starts daemon
+     * threads as needed.
+     */
+    public synchronized void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    private synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            executorService = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "ReadWriteSplitter hedging");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executorService;
+    }
+    
+    /**
+     * Returns the primary connection
+     */
+    public Connection getConnection() throws SQLException {
+        lastRead.remove();
+        Connection connection = primary.getConnection();
+        primaryConnection.set(connection);
+        return connection;
+    }
+    
+    /**
+     * Returns the connection of a replica for read only statements outside of transactions, 
+     * the primary connection otherwise.
+     */
+    public Connection getConnection(RoutableStatement statement) throws SQLException {
+        if (!statement.isReadOnly() || inTransaction()) {
+            return getConnection();
+        }
+        Object[] read = connect(null);
+        if (read == null) {
+            return getConnection();
+        }
+        lastRead.set(read);
+        return (Connection) read[2];
+    }
+    
+    /**
+     * Returns this splitter, the available replica with the fewest outstanding queries other
+     * than the excluded one, and a connection of it, or null if there is none.
+     */
+    private Object[] connect(Replica exclude) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = pick(now, exclude);
+            if (replica == null) {
+                break;
+            }
+            Connection connection;
+            try {
+                connection = replica.provider.getConnection();
+                if (replica.isLagging(connection, now)) {
+                    continue;
+                }
+            } catch (SQLException e) {
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Replica not available", e);
+                replica.downUntil = now + retryInterval;
+                continue;
+            }
+            return new Object[] {this, replica, connection};
+        }
+        return null;
+    }
+    
+    /**
+     * Returns true if the primary connection the thread got last has auto commit switched off
+     */
+    private boolean inTransaction() {
+        Connection connection = primaryConnection.get();
+        try {
+            return (connection != null) && !connection.isClosed() && !connection.getAutoCommit();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Returns the available replica with the fewest outstanding queries, starting round robin 
+     * to spread ties, or null if there is none.
+     */
+    private Replica pick(long now, Replica exclude) {
+        Replica best = null;
+        int count = replicas.size();
+        int start = next.getAndIncrement() & Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            if ((replica != exclude) && replica.isAvailable(now) && ((best == null) || (replica.outstanding.get() < best.outstanding.get()))) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Executes a query, which is counted as outstanding on its replica while it runs, and hedged 
+     * if its statement is. Used by BaseSQLExecutor for all queries.
+     */
+    public static ResultSet executeQuery(Statement st, Object sql) throws SQLException {
+        Object[] last = lastRead.get();
+        if ((last == null) || (last[2] != st.getConnection())) {
+            return st.executeQuery(sql.toString());
+        }
+        return ((ReadWriteSplitter) last[0]).executeQuery((Replica) last[1], st, sql);
+    }
+    
+    private ResultSet executeQuery(Replica replica, Statement st, Object sql) throws SQLException {
+        synchronized (this) {
+            hedgingCredit = Math.min(hedgingCredit + hedgingBudget, MAX_SAVED_HEDGES * HEDGE_COST);
+        }
+        long delay = hedgingDelay;
+        if ((delay < 0) || !(sql instanceof RoutableStatement) || !hedged.contains(((RoutableStatement) sql).getStatementName())) {
+            long start = System.nanoTime();
+            replica.outstanding.incrementAndGet();
+            try {
+                ResultSet rs = st.executeQuery(sql.toString());
+                recordLatency(System.nanoTime() - start);
+                return rs;
+            } finally {
+                replica.outstanding.decrementAndGet();
+            }
+        }
+        return hedge(replica, st, sql.toString(), delay);
+    }
+    
+    /**
+     * Runs the query on a thread of the executor, and once it took longer than delay nanoseconds,
+     * on a second replica as well, if the budget allows. Returns the first result.
+     */
+    private ResultSet hedge(Replica replica, Statement st, String sql, long delay) throws SQLException {
+        ExecutorCompletionService<ResultSet> completion = new ExecutorCompletionService<ResultSet>(getExecutorService());
+        AtomicReference<Attempt> winner = new AtomicReference<Attempt>();
+        Attempt first = new Attempt(replica, st, sql, winner, false);
+        Attempt second = null;
+        completion.submit(first);
+        int pending = 1;
+        SQLException failure = null;
+        try {
+            Future<ResultSet> done = completion.poll(delay, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                second = startHedge(replica, sql, winner);
+                if (second != null) {
+                    completion.submit(second);
+                    pending++;
+                }
+            }
+            while (pending-- > 0) {
+                if (done == null) {
+                    done = completion.take();
+                }
+                try {
+                    // The loser's result is null, and may be there before the winner's
+                    ResultSet rs = done.get();
+                    if (rs != null) {
+                        Attempt loser = (winner.get() == first) ? second : first;
+                        if (loser != null) {
+                            loser.cancel();
+                        }
+                        return rs;
+                    }
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = (e.getCause() instanceof SQLException) ? (SQLException) e.getCause() : new SQLException(e.getCause());
+                    }
+                }
+                done = null;
+            }
+            throw failure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            first.cancel();
+            if (second != null) {
+                second.cancel();
+            }
+            throw new SQLException("Interrupted while waiting for a hedged query", e);
+        }
+    }
+    
+    /**
+     * Returns the query on a second replica, or null if there is none or the budget is used up
+     */
+    private Attempt startHedge(Replica exclude, String sql, AtomicReference<Attempt> winner) {
+        synchronized (this) {
+            if (hedgingCredit < HEDGE_COST) {
+                return null;
+            }
+            hedgingCredit -= HEDGE_COST;
+        }
+        Object[] read = connect(exclude);
+        if (read != null) {
+            try {
+                Statement st = ((Connection) read[2]).createStatement();
+                st.closeOnCompletion();
+                hedges.incrementAndGet();
+                return new Attempt((Replica) read[1], st, sql, winner, true);
+            } catch (SQLException e) {
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Could not hedge query", e);
+            }
+        }
+        synchronized (this) {
+            hedgingCredit += HEDGE_COST;
+        }
+        return null;
+    }
+    
+    /**
+     * Records the latency of a replica query, and updates the hedging delay every 32 queries
+     */
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[latencyCount++ % LATENCY_SAMPLES] = nanos;
+            if ((latencyCount >= MIN_LATENCY_SAMPLES) && ((latencyCount == MIN_LATENCY_SAMPLES) || (latencyCount % 32 == 0))) {
+                long sorted[] = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+                Arrays.sort(sorted);
+                hedgingDelay = sorted[(sorted.length * 95 + 99) / 100 - 1];
+            }
+            if (latencyCount == 2 * LATENCY_SAMPLES) {
+                latencyCount = LATENCY_SAMPLES;
+            }
+        }
+    }
+    
+    /**
+     * A hedged query, or the original query it hedges
+     */
+    private class Attempt implements Callable<ResultSet> {
+        final Replica replica;
+        final Statement st;
+        final String sql;
+        final AtomicReference<Attempt> winner;
+        /** The statement was created for the hedge, and is closed if it loses */
+        final boolean hedge;
+        
+        Attempt(Replica replica, Statement st, String sql, AtomicReference<Attempt> winner, boolean hedge) {
+            this.replica = replica;
+            this.st = st;
+            this.sql = sql;
+            this.winner = winner;
+            this.hedge = hedge;
+        }
+        
+        public ResultSet call() throws SQLException {
+            if (winner.get() != null) {
+                lost(null);
+                return null;
+            }
+            long start = System.nanoTime();
+            replica.outstanding.incrementAndGet();
+            ResultSet rs = null;
+            try {
+                rs = st.executeQuery(sql);
+            } catch (SQLException e) {
+                lost(null);
+                throw e;
+            } finally {
+                replica.outstanding.decrementAndGet();
+            }
+            if (!winner.compareAndSet(null, this)) {
+                lost(rs);
+                return null;
+            }
+            recordLatency(System.nanoTime() - start);
+            return rs;
+        }
+        
+        private void lost(ResultSet rs) {
+            try {
+                if (rs != null) {
+                    rs.close();
+                }
+                if (hedge) {
+                    st.close();
+                }
+            } catch (SQLException e) {
+                Logger.getLogger(ReadWriteSplitter.class.getName()).log(Level.FINE, "Could not close lost query", e);
+            }
+        }
+        
+        void cancel() {
+            try {
+                st.cancel();
+            } catch (SQLException e) {
+                Logger.getLogger(ReadWriteSplitter.class.getName()).log(Level.FINE, "Could not cancel lost query", e);
+            }
+        }
+    }
+    
+    private class Replica {
+        final DBConnectionProvider provider;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile long downUntil = 0;
+        volatile long lag = 0;
+        volatile long lastProbe = 0;
+        
+        Replica(DBConnectionProvider provider) {
+            this.provider = provider;
+        }
+        
+        /**
+         * A replica is available unless it failed recently or lags, but is picked to be probed 
+         * again once its probe is due.
+         */
+        boolean isAvailable(long now) {
+            if (downUntil > now) {
+                return false;
+            }
+            return (lagProbe == null) || (lag <= maxLag) || (now - lastProbe >= probeInterval);
+        }
+        
+        boolean isLagging(Connection connection, long now) throws SQLException {
+            LagProbe probe = lagProbe;
+            if (probe == null) {
+                return false;
+            }
+            if (now - lastProbe >= probeInterval) {
+                lastProbe = now;
+                lag = probe.getLag(connection);
+            }
+            return lag > maxLag;
+        }
+    }
+}
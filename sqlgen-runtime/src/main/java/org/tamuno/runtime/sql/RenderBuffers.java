@@ -0,0 +1,75 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * Per-thread reusable StringBuilders for rendering generated SQL statements.
+ * 
+ * A generated statement's toString() acquires the buffer of the current thread, renders
+ * into it via renderTo(StringBuilder) and releases it again, which returns the resulting
+ * String. That way, rendering allocates nothing but the final String.
+ * 
+ * If the buffer of the current thread is already in use (i.e. when rendering is nested),
+ * or was not released due to an exception, a fresh StringBuilder is handed out instead.
+ */
+public final class RenderBuffers {
+    
+    /**
+     * Buffers grown beyond this capacity (in chars) are not kept for reuse.
+     */
+    public static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    
+    private static final int INITIAL_CAPACITY = 256;
+    
+    private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+    };
+    
+    private RenderBuffers() {
+    }
+    
+    /**
+     * Returns an empty StringBuilder for exclusive use by the caller, until it is handed back via release()
+     */
+    public static StringBuilder acquire() {
+        StringBuilder t = buffers.get();
+        if (t == null) {
+            return new StringBuilder(INITIAL_CAPACITY);
+        }
+        buffers.set(null);
+        t.setLength(0);
+        return t;
+    }
+    
+    /**
+     * Returns the contents of the given StringBuilder, and keeps it for reuse by the current thread.
+     * @param t StringBuilder obtained through acquire()
+     * @return t.toString()
+     */
+    public static String release(StringBuilder t) {
+        String result = t.toString();
+        if (t.capacity() <= MAX_RETAINED_CAPACITY) {
+            buffers.set(t);
+        }
+        return result;
+    }
+}
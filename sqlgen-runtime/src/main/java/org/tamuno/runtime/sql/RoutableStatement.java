@@ -0,0 +1,45 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.runtime.sql;
+
+/**
+ * A generated statement, whose input variables can be read by name, e.g. to route it to the 
+ * shard of one of them.
+ * 
+ * @see ShardRouter
+ * @see ReadWriteSplitter
+ */
+public interface RoutableStatement {
+    
+    /**
+     * Returns the name of this statement within its source
+     */
+    public String getStatementName();
+    
+    /**
+     * Returns true for SELECT statements which do not lock rows, and so may run on a replica
+     */
+    public boolean isReadOnly();
+    
+    /**
+     * Returns the value of the named input variable, null if it is not available, or if the
+     * statement has no such input variable
+     */
+    public Object getInputValue(String name);
+
+}
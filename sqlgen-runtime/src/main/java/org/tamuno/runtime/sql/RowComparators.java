@@ -0,0 +1,82 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.util.Comparator;
+
+/**
+ * Support of the comparators generated into the Row classes, one for each comparable column,
+ * like SelectUserRow.BY_USER_NAME. They order like ORDER BY on that column with a binary collation
+ * and NULLS FIRST: Strings are compared by String.compareTo, i.e. by their UTF-16 code units, like
+ * COLLATE "C" in PostgreSQL or a _bin collation in MySQL, and not case insensitively or by the
+ * rules of a language. Nulls come first in ascending order, while PostgreSQL and Oracle put them
+ * last unless the query says NULLS FIRST. If the order of the query differs, rows merged by these
+ * comparators, e.g. by ScatterGather, come out of order.
+ * Combined by thenBy and descending, they order like ORDER BY on several columns:
+ * <PRE>
+ *   Comparator&lt;SelectUserRow&gt; order = RowComparators.thenBy(SelectUserRow.BY_USER_NAME, RowComparators.descending(SelectUserRow.BY_USER_ID));
+ * </PRE>
+ */
+public final class RowComparators {
+    
+    private RowComparators() {
+    }
+    
+    /**
+     * Compares two values of a column, ordering nulls first
+     */
+    public static <T extends Comparable<? super T>> int compare(T a, T b) {
+        if (a == null) {
+            return (b == null) ? 0 : -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        return a.compareTo(b);
+    }
+    
+    /**
+     * Returns the comparator in reverse order, like ORDER BY ... DESC
+     */
+    public static <T> Comparator<T> descending(final Comparator<T> comparator) {
+        return new Comparator<T>() {
+            public int compare(T a, T b) {
+                return comparator.compare(b, a);
+            }
+        };
+    }
+    
+    /**
+     * Returns the comparator ordering by the first of the given comparators, then by the second, and so on
+     */
+    @SafeVarargs
+    public static <T> Comparator<T> thenBy(final Comparator<T>... comparators) {
+        return new Comparator<T>() {
+            public int compare(T a, T b) {
+                for (Comparator<T> comparator : comparators) {
+                    int result = comparator.compare(a, b);
+                    if (result != 0) {
+                        return result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+}
@@ -40,6 +40,16 @@ public class RowIterator<T extends TypedRow> implements Iterator<T>, Iterable<T>
          }
     }
 
+    /**
+     * Iterates over the rows of rs, loading each of them into the given row object.
+     * For row types which can not be created by their class alone.
+     */
+    public RowIterator(ResultSet rs, T row) throws SQLException {
+        this.rs = rs;
+        this.currentRow = row;
+        hasNext = (rs != null) && rs.next();
+    }
+
     public SQLException getSqlException() {
         return sqlException;
     }
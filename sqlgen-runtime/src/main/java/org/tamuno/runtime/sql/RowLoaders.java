@@ -0,0 +1,328 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates DynamicRows which load their columns as fast as generated Row classes, without a build step.
+ * 
+ * For every distinct column type signature, a subclass of DynamicRow is defined at runtime whose
+ * loadResultSetRow calls the ResultSet getter of every column in a single straight line of code,
+ * storing the values unboxed. The class is spun as byte code by this class, and defined as a hidden
+ * class (MethodHandles.Lookup.defineHiddenClass, Java 15 and later), which is invisible to class
+ * lookup by name. On older JVMs it is defined by a class loader of its own instead. The classes are
+ * cached by signature for the lifetime of the JVM, so there is one class per distinct signature.
+ * Their rows are serialized as plain DynamicRows (see DynamicRow.writeReplace).
+ * 
+ * If classes can not be defined at runtime at all, plain DynamicRows are created, which interpret
+ * the column types while loading. This is always the case within a GraalVM native image.
+ */
+public final class RowLoaders {
+    
+    private static final String SUPER_CLASS = "org/tamuno/runtime/sql/DynamicRow";
+    private static final String CLASS_NAME = "org/tamuno/runtime/sql/DynamicRow$Loader";
+    private static final String COLUMNS_DESCRIPTOR = "(Lorg/tamuno/runtime/sql/DynamicRow$Columns;)V";
+    private static final String ARRAYS[][] = {{"longs", "[J"}, {"doubles", "[D"}, {"objects", "[Ljava/lang/Object;"}};
+    
+    private static final ConcurrentHashMap<String, Constructor<? extends DynamicRow>> loaders = new ConcurrentHashMap<String, Constructor<? extends DynamicRow>>();
+    private static final AtomicInteger classCount = new AtomicInteger();
+    /** Native images have a closed world, so spinning is not even attempted there */
+    private static volatile boolean enabled = System.getProperty("org.graalvm.nativeimage.imagecode") == null;
+    
+    private RowLoaders() {
+    }
+    
+    /**
+     * Returns a new row for the given columns, of the row class spun for their type signature.
+     */
+    public static DynamicRow newRow(DynamicRow.Columns columns) {
+        if (enabled) {
+            Constructor<? extends DynamicRow> constructor = loaderFor(columns);
+            if (constructor != null) {
+                try {
+                    return constructor.newInstance(columns);
+                } catch (Exception ex) {
+                    disable(ex);
+                }
+            }
+        }
+        return new DynamicRow(columns);
+    }
+    
+    /**
+     * Returns the spun row class for the given columns, or null if classes can not be defined at runtime
+     */
+    public static Class<? extends DynamicRow> rowClassFor(DynamicRow.Columns columns) {
+        Constructor<? extends DynamicRow> constructor = enabled ? loaderFor(columns) : null;
+        return (constructor == null) ? null : constructor.getDeclaringClass();
+    }
+    
+    /**
+     * Returns the number of row classes spun so far
+     */
+    public static int getClassCount() {
+        return classCount.get();
+    }
+    
+    private static Constructor<? extends DynamicRow> loaderFor(DynamicRow.Columns columns) {
+        Constructor<? extends DynamicRow> constructor = loaders.get(columns.signature);
+        if (constructor == null) {
+            try {
+                Class<? extends DynamicRow> cls = defineClass(createClassFile(CLASS_NAME + classCount.incrementAndGet(), columns)).asSubclass(DynamicRow.class);
+                constructor = cls.getConstructor(DynamicRow.Columns.class);
+            } catch (Throwable ex) {
+                disable(ex);
+                return null;
+            }
+            Constructor<? extends DynamicRow> known = loaders.putIfAbsent(columns.signature, constructor);
+            if (known != null) {
+                constructor = known;
+            }
+        }
+        return constructor;
+    }
+    
+    private static void disable(Throwable ex) {
+        enabled = false;
+        Logger.getLogger(RowLoaders.class.getName()).log(Level.WARNING, "Can not define row classes at runtime, using interpreted rows", ex);
+    }
+    
+    private static Class<?> defineClass(byte classFile[]) throws Exception {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Method defineHiddenClass = null;
+        Object noOptions = null;
+        try {
+            Class<?> optionClass = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            noOptions = Array.newInstance(optionClass, 0);
+            defineHiddenClass = MethodHandles.Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, noOptions.getClass());
+        } catch (ClassNotFoundException ex) {
+            // before Java 15
+        } catch (NoSuchMethodException ex) {
+            // before Java 15
+        }
+        if (defineHiddenClass != null) {
+            MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, classFile, true, noOptions);
+            return hidden.lookupClass();
+        }
+        return new RowClassLoader(DynamicRow.class.getClassLoader()).define(classFile);
+    }
+    
+    /**
+     * Defines a single row class, for JVMs without hidden classes
+     */
+    private static class RowClassLoader extends ClassLoader {
+        RowClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+        
+        Class<?> define(byte classFile[]) {
+            return defineClass(null, classFile, 0, classFile.length);
+        }
+    }
+    
+    /**
+     * Creates the class file of a DynamicRow subclass with a constructor taking the Columns,
+     * and a loadResultSetRow method for the given columns:
+     * <PRE>
+     *   long l[] = this.longs; double d[] = this.doubles; Object o[] = this.objects;
+     *   l[0] = rs.getInt(1); o[0] = rs.getString(2); ...
+     * </PRE>
+     */
+    static byte[] createClassFile(String className, DynamicRow.Columns columns) throws IOException {
+        ConstantPool cp = new ConstantPool();
+        int thisClass = cp.classRef(className);
+        int superClass = cp.classRef(SUPER_CLASS);
+        int superInit = cp.methodRef(SUPER_CLASS, "<init>", COLUMNS_DESCRIPTOR, false);
+        int codeName = cp.utf8("Code");
+        int initName = cp.utf8("<init>");
+        int initDescriptor = cp.utf8(COLUMNS_DESCRIPTOR);
+        int loadName = cp.utf8("loadResultSetRow");
+        int loadDescriptor = cp.utf8("(Ljava/sql/ResultSet;)V");
+        
+        // <init>: super(columns)
+        ByteArrayOutputStream init = new ByteArrayOutputStream();
+        init.write(0x2a); // aload_0
+        init.write(0x2b); // aload_1
+        init.write(0xb7); // invokespecial
+        writeShort(init, superInit);
+        init.write(0xb1); // return
+        
+        // loadResultSetRow(rs): locals are this, rs, longs, doubles, objects
+        ByteArrayOutputStream load = new ByteArrayOutputStream();
+        for (int k = 0; k < ARRAYS.length; k++) {
+            load.write(0x2a); // aload_0
+            load.write(0xb4); // getfield
+            writeShort(load, cp.fieldRef(SUPER_CLASS, ARRAYS[k][0], ARRAYS[k][1]));
+            load.write(0x3a); // astore
+            load.write(2 + k);
+        }
+        for (int i = 0; i < columns.names.length; i++) {
+            Object type[] = DynamicRow.TYPES[columns.typeIndices[i]];
+            String descriptor = (String) type[2];
+            int kind = columns.kind(i);
+            load.write(0x19); // aload
+            load.write(2 + kind);
+            pushInt(load, columns.slots[i]);
+            load.write(0x2b); // aload_1
+            pushInt(load, i + 1);
+            load.write(0xb9); // invokeinterface
+            writeShort(load, cp.methodRef("java/sql/ResultSet", (String) type[1], descriptor, true));
+            load.write(2);
+            load.write(0);
+            char returnType = descriptor.charAt(3);
+            if (kind == DynamicRow.KIND_LONG) {
+                if (returnType != 'J') {
+                    load.write(0x85); // i2l
+                }
+                load.write(0x50); // lastore
+            } else if (kind == DynamicRow.KIND_DOUBLE) {
+                if (returnType == 'F') {
+                    load.write(0x8d); // f2d
+                }
+                load.write(0x52); // dastore
+            } else {
+                load.write(0x53); // aastore
+            }
+        }
+        load.write(0xb1); // return
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(51); // Java 7 class file: straight line code needs no stack map frames
+        cp.writeTo(out);
+        out.writeShort(0x0031); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(0); // interfaces
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, initName, initDescriptor, codeName, 2, 2, init.toByteArray());
+        writeMethod(out, loadName, loadDescriptor, codeName, 5, 5, load.toByteArray());
+        out.writeShort(0); // attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+    
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack, int maxLocals, byte code[]) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+    
+    private static void pushInt(ByteArrayOutputStream code, int value) {
+        if (value <= 5) {
+            code.write(0x03 + value); // iconst_<value>
+        } else if (value <= Byte.MAX_VALUE) {
+            code.write(0x10); // bipush
+            code.write(value);
+        } else {
+            code.write(0x11); // sipush
+            writeShort(code, value);
+        }
+    }
+    
+    private static void writeShort(ByteArrayOutputStream code, int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+    
+    /**
+     * Constant pool of a class file under construction. Equal entries are only added once.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+        private int count = 1;
+        
+        int utf8(String value) throws IOException {
+            Integer idx = entries.get("U" + value);
+            if (idx == null) {
+                out.writeByte(1);
+                out.writeUTF(value);
+                idx = add("U" + value);
+            }
+            return idx;
+        }
+        
+        int classRef(String name) throws IOException {
+            return ref(7, utf8(name), -1);
+        }
+        
+        int fieldRef(String owner, String name, String descriptor) throws IOException {
+            return ref(9, classRef(owner), nameAndType(name, descriptor));
+        }
+        
+        int methodRef(String owner, String name, String descriptor, boolean isInterface) throws IOException {
+            return ref(isInterface ? 11 : 10, classRef(owner), nameAndType(name, descriptor));
+        }
+        
+        private int nameAndType(String name, String descriptor) throws IOException {
+            return ref(12, utf8(name), utf8(descriptor));
+        }
+        
+        private int ref(int tag, int first, int second) throws IOException {
+            String key = tag + ":" + first + ":" + second;
+            Integer idx = entries.get(key);
+            if (idx == null) {
+                out.writeByte(tag);
+                out.writeShort(first);
+                if (second != -1) {
+                    out.writeShort(second);
+                }
+                idx = add(key);
+            }
+            return idx;
+        }
+        
+        private int add(String key) {
+            entries.put(key, count);
+            return count++;
+        }
+        
+        void writeTo(DataOutputStream target) throws IOException {
+            out.flush();
+            target.writeShort(count);
+            bytes.writeTo(target);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the available SQL Dialects, by name.
+ * 
+ * The names are matched against the database product name reported by the JDBC driver
+ * (DatabaseMetaData.getDatabaseProductName()), so a dialect can be detected from a connection.
+ * Additional dialects can be registered by register, also while dialects are being looked up.
+ * 
+ * @see BaseSQLApi#setSqlDialect(String)
+ * @see BaseSQLApi#detectSqlDialect()
+ */
+public class SQLDialects {
+    
+    public static final Map<String, ISQLDialectUtil> registry = new ConcurrentHashMap<String, ISQLDialectUtil>();
+    
+    static {
+        registry.put("MySQL", MySQLDialectUtil.instance);
+        registry.put("MariaDB", MySQLDialectUtil.instance);
+        registry.put("PostgreSQL", PostgreSQLDialectUtil.instance);
+        registry.put("H2", H2DialectUtil.instance);
+        registry.put("Microsoft SQL Server", SQLServerDialectUtil.instance);
+        registry.put("SQLServer", SQLServerDialectUtil.instance);
+        registry.put("SQLServer datetime", SQLServerDialectUtil.datetimeInstance);
+        registry.put("Generic", GenericSQLDialectUtil.instance);
+    }
+    
+    private SQLDialects() {
+    }
+    
+    /**
+     * Registers a dialect under the given name, replacing any dialect of that name
+     */
+    public static void register(String name, ISQLDialectUtil dialect) {
+        registry.put(name, dialect);
+    }
+    
+    /**
+     * Returns the dialect registered under the given name (ignoring case), or
+     * GenericSQLDialectUtil.instance if there is none.
+     * @param name dialect name or database product name
+     */
+    public static ISQLDialectUtil forName(String name) {
+        if (name != null) {
+            ISQLDialectUtil dialect = registry.get(name.trim());
+            if (dialect != null) {
+                return dialect;
+            }
+            for (Map.Entry<String, ISQLDialectUtil> e : registry.entrySet()) {
+                if (e.getKey().equalsIgnoreCase(name.trim())) {
+                    return e.getValue();
+                }
+            }
+        }
+        return GenericSQLDialectUtil.instance;
+    }
+    
+    /**
+     * Returns the dialect matching the database product name of the given connection.
+     */
+    public static ISQLDialectUtil forConnection(Connection connection) throws SQLException {
+        return forName(connection.getMetaData().getDatabaseProductName());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * SQL Dialect for Microsoft SQL Server
+ * 
+ * ' is doubled within strings. Strings containing non-ASCII characters are written as 
+ * N'..' unicode literals, other strings as plain '..' literals, so comparisons against
+ * varchar columns can still use their indexes. Dates and timestamps are written in the formats 
+ * which SQL Server reads the same way whatever DATEFORMAT and LANGUAGE are set, that is 'yyyymmdd'
+ * and ISO 8601 'yyyy-mm-ddThh:mm:ss[.fffffff]'. Timestamps have at most 7 fractional digits (as
+ * supported by datetime2), or 3 for legacy datetime columns, which reject more (see datetimeInstance).
+ * Binary values are written as 0x.. literals.
+ */
+public class SQLServerDialectUtil extends GenericSQLDialectUtil {
+
+    public static final SQLServerDialectUtil instance = new SQLServerDialectUtil();
+
+    /**
+     * Dialect for databases with legacy datetime instead of datetime2 columns
+     */
+    public static final SQLServerDialectUtil datetimeInstance = new SQLServerDialectUtil(3);
+
+    protected SQLServerDialectUtil() {
+        this(7);
+    }
+
+    /**
+     * @param maxFractionalDigits maximum number of fractional second digits of timestamps
+     */
+    protected SQLServerDialectUtil(int maxFractionalDigits) {
+        this.maxFractionalDigits = maxFractionalDigits;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public StringBuilder appendEscaped(StringBuilder t, java.sql.Date value) {
+        t.append('\'');
+        appendDigits(t, value.getYear() + 1900, 4);
+        appendDigits(t, value.getMonth() + 1, 2);
+        appendDigits(t, value.getDate(), 2);
+        return t.append('\'');
+    }
+
+    @Override
+    protected void appendTimestamp(StringBuilder t, java.sql.Timestamp value) {
+        int start = t.length();
+        super.appendTimestamp(t, value);
+        t.setCharAt(t.indexOf(" ", start), 'T');
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, String value) {
+        int len = value.length();
+        int quotePos = t.length();
+        boolean unicode = false;
+        t.append('\'');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c == '\'') {
+                t.append(value, start, i + 1);
+                t.append('\'');
+                start = i + 1;
+            } else if (c > 127) {
+                unicode = true;
+            }
+        }
+        t.append(value, start, len);
+        t.append('\'');
+        if (unicode) {
+            t.insert(quotePos, 'N');
+        }
+        return t;
+    }
+
+    @Override
+    public StringBuilder appendEscaped(StringBuilder t, byte[] value) {
+        t.append("0x");
+        appendHex(t, value);
+        return t;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a query against several shards with identical schemas concurrently, and merges their rows.
+ * 
+ * The query is started on all shards at once, so the rows are available as soon as the slowest
+ * shard answers. Given a comparator, like the ones generated into the Row classes (see 
+ * RowComparators), the rows of the shards, each sorted by the ORDER BY of the query, are merged
+ * into that order while iterating. Otherwise the rows are returned shard after shard. The ORDER BY
+ * has to sort exactly like the comparator, or the merged rows silently come out of order. For the 
+ * generated comparators that is a binary collation with NULLS FIRST.
+ * 
+ * A limit is pushed down to every shard, as no shard can contribute more rows than the limit 
+ * to the merged rows:
+ * <PRE>
+ *   ScatterGather shards = new ScatterGather(shard1, shard2, shard3);
+ *   for (ListUsersRow row : shards.query(new ScatterGather.Query&lt;ListUsersRow&gt;() {
+ *       public RowIterator&lt;ListUsersRow&gt; query(Statement st, int limit) throws SQLException {
+ *           SQLCode.ListUsers list = sqlCode.listUsers();
+ *           list.order_by = "user_name";
+ *           list.limit = limit;
+ *           return list.query(st);
+ *       }
+ *   }, ListUsersRow.BY_USER_NAME, 100)) {
+ *       ...
+ *   }
+ * </PRE>
+ */
+public class ScatterGather {
+    
+    /**
+     * Queries a single shard
+     */
+    public interface Query<T extends TypedRow> {
+        
+        /**
+         * Queries the rows of a shard, at most limit of them
+         * @param st Statement to query with, closed by the ScatterGather
+         */
+        RowIterator<T> query(Statement st, int limit) throws SQLException;
+    }
+    
+    private final DBConnectionProvider shards[];
+    private ExecutorService executorService;
+    
+    public ScatterGather(DBConnectionProvider... shards) {
+        if (shards.length == 0) {
+            throw new IllegalArgumentException("No shards");
+        }
+        this.shards = shards.clone();
+    }
+    
+    /**
+     * Sets the ExecutorService which queries the shards. By default, each query starts a thread
+     * for every shard.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Runs the query on all shards, and returns their merged rows.
+     * @param order order of the rows of every shard, null to return the rows of one shard after the other
+     * @param limit maximum number of rows, Integer.MAX_VALUE for all of them
+     * @throws SQLException the exception of the first shard which failed. The queries of the other shards are closed.
+     */
+    public <T extends TypedRow> Rows<T> query(final Query<T> query, Comparator<? super T> order, final int limit) throws SQLException {
+        ExecutorService executor = (executorService != null) ? executorService : Executors.newFixedThreadPool(shards.length);
+        ArrayList<Future<Shard<T>>> futures = new ArrayList<Future<Shard<T>>>();
+        ArrayList<Shard<T>> started = new ArrayList<Shard<T>>();
+        boolean ok = false;
+        try {
+            for (final DBConnectionProvider shard : shards) {
+                futures.add(executor.submit(new Callable<Shard<T>>() {
+                    public Shard<T> call() throws Exception {
+                        Statement st = shard.getConnection().createStatement();
+                        try {
+                            Shard<T> result = new Shard<T>(st, query.query(st, limit));
+                            st = null;
+                            return result;
+                        } finally {
+                            if (st != null) {
+                                st.close();
+                            }
+                        }
+                    }
+                }));
+            }
+            SQLException failure = null;
+            for (Future<Shard<T>> f : futures) {
+                try {
+                    started.add(f.get());
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = (ex.getCause() instanceof SQLException) ? (SQLException) ex.getCause() : new SQLException(ex.getCause());
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            Rows<T> rows = new Rows<T>(started, order, limit);
+            ok = true;
+            return rows;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted", ex);
+        } finally {
+            if (!ok) {
+                for (Shard<T> shard : started) {
+                    shard.close();
+                }
+            }
+            if (executor != executorService) {
+                executor.shutdown();
+            }
+        }
+    }
+    
+    /**
+     * The running query of a single shard, and its current row
+     */
+    private static final class Shard<T extends TypedRow> {
+        final Statement st;
+        final RowIterator<T> rows;
+        T current;
+        boolean closed = false;
+        
+        Shard(Statement st, RowIterator<T> rows) {
+            this.st = st;
+            this.rows = rows;
+        }
+        
+        /**
+         * Moves to the next row.
+         * @return false if there is none, the shard is closed then.
+         */
+        boolean advance() {
+            if (!rows.hasNext()) {
+                close();
+                return false;
+            }
+            current = rows.next();
+            if (rows.getSqlException() != null) {
+                SQLException ex = rows.getSqlException();
+                close();
+                throw new RuntimeException(ex);
+            }
+            return true;
+        }
+        
+        void close() {
+            current = null;
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                rows.close();
+                st.close();
+            } catch (SQLException ex) {
+                Logger.getLogger(ScatterGather.class.getName()).log(Level.FINE, "Could not close shard query", ex);
+            }
+        }
+    }
+    
+    /**
+     * The merged rows of all shards. Like those of a RowIterator, a returned row is only valid
+     * until the next one is requested. Has to be closed if it is not iterated to its end.
+     * SQLExceptions are thrown as RuntimeExceptions, with the SQLException as their cause.
+     */
+    public static final class Rows<T extends TypedRow> implements Iterator<T>, Iterable<T> {
+        private final ArrayList<Shard<T>> shards;
+        private final PriorityQueue<Shard<T>> heads;
+        private int remaining;
+        /** The shard of the row returned last, which is advanced before the next row is determined */
+        private Shard<T> last;
+        /** The shard whose current row is returned next, null if not determined yet */
+        private Shard<T> ready;
+        /** Index of the next shard to return the rows of, without an order */
+        private int next = 0;
+        
+        Rows(ArrayList<Shard<T>> shards, final Comparator<? super T> order, int limit) {
+            this.shards = shards;
+            this.remaining = limit;
+            if (order == null) {
+                heads = null;
+                return;
+            }
+            // k-way merge: the shards ordered by their current rows
+            heads = new PriorityQueue<Shard<T>>(shards.size(), new Comparator<Shard<T>>() {
+                public int compare(Shard<T> a, Shard<T> b) {
+                    return order.compare(a.current, b.current);
+                }
+            });
+            for (Shard<T> shard : shards) {
+                if (shard.advance()) {
+                    heads.add(shard);
+                }
+            }
+        }
+        
+        public boolean hasNext() {
+            if (ready != null) {
+                return true;
+            }
+            if (remaining <= 0) {
+                close();
+                return false;
+            }
+            if (heads == null) {
+                if ((last != null) && last.advance()) {
+                    ready = last;
+                }
+                while ((ready == null) && (next < shards.size())) {
+                    Shard<T> shard = shards.get(next++);
+                    if (shard.advance()) {
+                        ready = shard;
+                    }
+                }
+            } else {
+                if ((last != null) && last.advance()) {
+                    heads.add(last);
+                }
+                ready = heads.poll();
+            }
+            last = null;
+            return ready != null;
+        }
+        
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = ready;
+            ready = null;
+            remaining--;
+            return last.current;
+        }
+        
+        /**
+         * Closes the queries of all shards
+         */
+        public void close() {
+            remaining = 0;
+            ready = null;
+            last = null;
+            for (Shard<T> shard : shards) {
+                shard.close();
+            }
+        }
+        
+        public void remove() {
+            throw new UnsupportedOperationException("Removal not supported");
+        }
+        
+        public Iterator<T> iterator() {
+            return this;
+        }
+    }
+}
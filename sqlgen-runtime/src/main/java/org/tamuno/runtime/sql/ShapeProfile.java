@@ -0,0 +1,205 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often each shape of each statement is executed.
+ * 
+ * Set on the Executor of a generated API (see BaseSQLExecutor.setProfile), it records every
+ * executed ShapedStatement by its qualified name, i.e. the qualified name of its API class and
+ * its name like org.example.SQLCode.selectUser, and its available parameter bitset. Statements 
+ * of the same name in different classes are counted apart, as their bits stand for different 
+ * variables. Saved to a file, the profile
+ * can be fed back into the code generator, which then renders the hot shapes of a statement
+ * without evaluating its optional sections, orders shapes and statements for warm-up by their 
+ * counts, and reports statements which have never been executed.
+ * 
+ * The file is a properties file of qualifiedName.shape=count lines, sorted by key.
+ */
+public class ShapeProfile {
+    
+    private final ConcurrentHashMap<String, ConcurrentHashMap<Long, AtomicLong>> counts = new ConcurrentHashMap<String, ConcurrentHashMap<Long, AtomicLong>>();
+    
+    /**
+     * Records an execution of the given statement
+     */
+    public void record(ShapedStatement statement) {
+        record(qualifiedName(statement), statement.calcAvailableParamsBitset(), 1L);
+    }
+    
+    /**
+     * Returns the name the given statement is recorded by: the qualified name of the API class
+     * it is an inner class of, a dot, and its name
+     */
+    public static String qualifiedName(ShapedStatement statement) {
+        Class<?> api = statement.getClass().getEnclosingClass();
+        return qualifiedName((api == null) ? "" : api.getName(), statement.getStatementName());
+    }
+    
+    /**
+     * Returns the name a statement of the given API class is recorded by
+     */
+    public static String qualifiedName(String className, String statementName) {
+        return (className.length() == 0) ? statementName : className + "." + statementName;
+    }
+    
+    /**
+     * Adds count executions of the given shape of a statement
+     * @param statementName qualified name of the statement
+     * @see #qualifiedName(String, String)
+     */
+    public void record(String statementName, long shape, long count) {
+        ConcurrentHashMap<Long, AtomicLong> shapes = counts.get(statementName);
+        if (shapes == null) {
+            shapes = new ConcurrentHashMap<Long, AtomicLong>();
+            ConcurrentHashMap<Long, AtomicLong> known = counts.putIfAbsent(statementName, shapes);
+            if (known != null) {
+                shapes = known;
+            }
+        }
+        AtomicLong counter = shapes.get(shape);
+        if (counter == null) {
+            counter = new AtomicLong();
+            AtomicLong known = shapes.putIfAbsent(shape, counter);
+            if (known != null) {
+                counter = known;
+            }
+        }
+        counter.addAndGet(count);
+    }
+    
+    /**
+     * Returns the number of executions of the given statement, of all shapes
+     */
+    public long getCount(String statementName) {
+        long result = 0L;
+        Map<Long, AtomicLong> shapes = counts.get(statementName);
+        if (shapes != null) {
+            for (AtomicLong count : shapes.values()) {
+                result += count.get();
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of executions of the given shape of a statement
+     */
+    public long getCount(String statementName, long shape) {
+        Map<Long, AtomicLong> shapes = counts.get(statementName);
+        AtomicLong count = (shapes == null) ? null : shapes.get(shape);
+        return (count == null) ? 0L : count.get();
+    }
+    
+    /**
+     * Returns the recorded shapes of the given statement, the most frequently executed first
+     */
+    public long[] getShapes(String statementName) {
+        Map<Long, AtomicLong> shapes = counts.get(statementName);
+        if (shapes == null) {
+            return new long[0];
+        }
+        // Sorted by a snapshot, as the counts may change while sorting
+        final HashMap<Long, Long> snapshot = new HashMap<Long, Long>();
+        for (Map.Entry<Long, AtomicLong> e : shapes.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().get());
+        }
+        List<Long> sorted = new ArrayList<Long>(snapshot.keySet());
+        Collections.sort(sorted, new Comparator<Long>() {
+            public int compare(Long a, Long b) {
+                long ca = snapshot.get(a);
+                long cb = snapshot.get(b);
+                return (ca != cb) ? ((ca > cb) ? -1 : 1) : a.compareTo(b);
+            }
+        });
+        long result[] = new long[sorted.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sorted.get(i);
+        }
+        return result;
+    }
+    
+    /**
+     * Adds the counts of the given profile file to this profile
+     */
+    public void load(File file) throws IOException {
+        Properties entries = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            entries.load(in);
+        } finally {
+            in.close();
+        }
+        for (String key : entries.stringPropertyNames()) {
+            int dot = key.lastIndexOf('.');
+            try {
+                record(key.substring(0, dot), Long.parseLong(key.substring(dot + 1)), Long.parseLong(entries.getProperty(key).trim()));
+            } catch (RuntimeException ex) {
+                throw new IOException("Invalid entry " + key + " in profile " + file, ex);
+            }
+        }
+    }
+    
+    /**
+     * Writes this profile to the given file
+     */
+    public void save(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "ISO-8859-1");
+        try {
+            out.write(toString());
+        } finally {
+            out.close();
+        }
+    }
+    
+    /**
+     * Returns the content of the profile file
+     */
+    public String toString() {
+        TreeMap<String, Long> sorted = new TreeMap<String, Long>();
+        for (Map.Entry<String, ConcurrentHashMap<Long, AtomicLong>> statement : counts.entrySet()) {
+            for (Map.Entry<Long, AtomicLong> shape : statement.getValue().entrySet()) {
+                sorted.put(statement.getKey() + "." + shape.getKey(), shape.getValue().get());
+            }
+        }
+        StringBuilder t = new StringBuilder();
+        for (Map.Entry<String, Long> e : sorted.entrySet()) {
+            t.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return t.toString();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+
+package org.tamuno.runtime.sql;
+
+/**
+ * A generated statement, which knows all distinct shapes of the SQL it renders.
+ * 
+ * Which optional sections of a statement are rendered only depends on which of its input variables
+ * are available, and the code generator determines the available parameter bitsets (see 
+ * calcAvailableParamsBitset of the generated classes) of all distinct shapes in advance. 
+ * 
+ * @see BaseSQLApi#warmUp(int)
+ */
+public interface ShapedStatement extends RoutableStatement {
+    
+    /**
+     * Returns the bitset of the available (non-null) input variables, which identifies the shape
+     */
+    public long calcAvailableParamsBitset();
+    
+    /**
+     * Returns one available parameter bitset for each distinct SQL shape of this statement,
+     * shapes with fewer variables first.
+     */
+    public long[] getShapes();
+    
+    /**
+     * Returns a copy of this statement with sample values for the variables of the given bitset,
+     * and without values for all others. Its SQL has the given shape.
+     */
+    public ShapedStatement forShape(long shape);
+    
+    /**
+     * Returns the SQL of this statement
+     */
+    public String toString();
+
+}
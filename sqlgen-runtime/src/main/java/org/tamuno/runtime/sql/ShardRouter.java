@@ -0,0 +1,259 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.runtime.sql;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Connection provider, which routes every generated statement to the connection of a shard by the
+ * value of one of its input variables, the routing key. Set as connection provider of a generated
+ * API, statements reach the right shard without any routing code in the application:
+ * <PRE>
+ *   ShardRouter.ConsistentHash shards = new ShardRouter.ConsistentHash();
+ *   shards.add(new ThreadDBConnectionProvider(shard1));
+ *   shards.add(new ThreadDBConnectionProvider(shard2));
+ *   ShardRouter router = new ShardRouter(shards, "tenant_id");
+ *   router.setDefaultShard(new ThreadDBConnectionProvider(global));
+ *   sqlCode.setConnectionProvider(router);
+ * </PRE>
+ * The routing key is the input variable of the given name, for every statement which has one. It 
+ * can be set per statement by setRoutingKey. Statements without a value of their routing key run 
+ * on the default shard, or fail if there is none.
+ * 
+ * Only statements executed by execute() and query() without a Statement are routed. 
+ * getConnection() returns the connection of the default shard.
+ */
+public class ShardRouter implements StatementConnectionProvider {
+    
+    /**
+     * Maps the values of routing keys to shards
+     */
+    public interface Shards {
+        
+        /**
+         * Returns the shard of the given (non null) routing key value
+         */
+        DBConnectionProvider shardFor(Object key) throws SQLException;
+    }
+    
+    private final Shards shards;
+    private final String routingKey;
+    private final Map<String, String> routingKeys = new HashMap<String, String>();
+    private DBConnectionProvider defaultShard;
+    
+    /**
+     * @param routingKey name of the input variable which is the routing key of all statements having it
+     */
+    public ShardRouter(Shards shards, String routingKey) {
+        this.shards = shards;
+        this.routingKey = routingKey;
+    }
+    
+    /**
+     * Sets the routing key of a single statement, null for none
+     */
+    public synchronized void setRoutingKey(String statementName, String inputVariable) {
+        routingKeys.put(statementName, inputVariable);
+    }
+    
+    /**
+     * Sets the shard of statements without a routing key value, like those on global tables
+     */
+    public void setDefaultShard(DBConnectionProvider defaultShard) {
+        this.defaultShard = defaultShard;
+    }
+    
+    public Connection getConnection() throws SQLException {
+        if (defaultShard == null) {
+            throw new SQLException("No default shard");
+        }
+        return defaultShard.getConnection();
+    }
+    
+    /**
+     * Returns the connection of the shard of the given statement. Shards which are 
+     * StatementConnectionProviders themselves, like a ReadWriteSplitter, choose it by the statement.
+     */
+    public Connection getConnection(RoutableStatement statement) throws SQLException {
+        DBConnectionProvider shard = shardFor(statement);
+        if (shard instanceof StatementConnectionProvider) {
+            return ((StatementConnectionProvider) shard).getConnection(statement);
+        }
+        return shard.getConnection();
+    }
+    
+    /**
+     * Returns the shard of the given statement
+     * @throws SQLException if it has no routing key value, and there is no default shard
+     */
+    public DBConnectionProvider shardFor(RoutableStatement statement) throws SQLException {
+        String name = statement.getStatementName();
+        String key;
+        synchronized (this) {
+            key = routingKeys.containsKey(name) ? routingKeys.get(name) : routingKey;
+        }
+        Object value = (key != null) ? statement.getInputValue(key) : null;
+        if (value != null) {
+            return shards.shardFor(value);
+        }
+        if (defaultShard == null) {
+            throw new SQLException("Statement " + name + " has no value of its routing key " + key + ", and there is no default shard");
+        }
+        return defaultShard;
+    }
+    
+    /**
+     * Maps routing keys to shards by consistent hashing: every shard owns a number of points on a
+     * ring of hashes, and a key belongs to the shard of the next point at or after its hash. Adding
+     * a shard only moves the keys of the points it takes over. Keys are hashed by a String value
+     * which does not depend on their type or the default time zone: 42, 42L, 42.0 and the
+     * BigDecimals 42 and 42.00 are the same key, and dates are hashed by their milliseconds.
+     */
+    public static class ConsistentHash implements Shards {
+        
+        /** Points per shard of weight 1 */
+        public static final int POINTS = 128;
+        private static final Charset UTF8 = Charset.forName("UTF-8");
+        
+        private final TreeMap<Long, DBConnectionProvider> ring = new TreeMap<Long, DBConnectionProvider>();
+        private int count = 0;
+        
+        /**
+         * Adds a shard of weight 1
+         */
+        public void add(DBConnectionProvider shard) {
+            add(shard, 1);
+        }
+        
+        /**
+         * Adds a shard, which receives about weight times the keys of a shard of weight 1
+         */
+        public synchronized void add(DBConnectionProvider shard, int weight) {
+            int index = count++;
+            for (int i = 0; i < weight * POINTS; i++) {
+                ring.put(hash(index + ":" + i), shard);
+            }
+        }
+        
+        public synchronized DBConnectionProvider shardFor(Object key) throws SQLException {
+            if (ring.isEmpty()) {
+                throw new SQLException("No shards");
+            }
+            Map.Entry<Long, DBConnectionProvider> e = ring.ceilingEntry(hash(normalize(key)));
+            return ((e != null) ? e : ring.firstEntry()).getValue();
+        }
+        
+        /**
+         * Returns the String value of a key, which is hashed
+         */
+        static String normalize(Object key) {
+            if (key instanceof Timestamp) {
+                Timestamp t = (Timestamp) key;
+                int nanos = t.getNanos() % 1000000;
+                return (nanos == 0) ? String.valueOf(t.getTime()) : t.getTime() + "." + nanos;
+            }
+            if (key instanceof Date) {
+                return String.valueOf(((Date) key).getTime());
+            }
+            if ((key instanceof Double) || (key instanceof Float)) {
+                double d = ((Number) key).doubleValue();
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return key.toString();
+                }
+                key = new BigDecimal(key.toString());
+            }
+            if (key instanceof BigDecimal) {
+                BigDecimal d = (BigDecimal) key;
+                // stripTrailingZeros keeps the scale of zero before Java 8
+                return (d.signum() == 0) ? "0" : d.stripTrailingZeros().toPlainString();
+            }
+            return key.toString();
+        }
+        
+        /**
+         * 64 bit FNV-1a of the UTF-8 bytes, with the finalizer of MurmurHash3 to spread the bits.
+         * Unlike String.hashCode, it is the same for similar keys on every JVM.
+         */
+        static long hash(String value) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(UTF8)) {
+                h ^= (b & 0xff);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+    
+    /**
+     * Maps integer routing keys to shards by ranges: a key belongs to the shard of the range with 
+     * the greatest start at or below it. Keys with a fraction, or out of the range of long, are
+     * rejected rather than truncated.
+     */
+    public static class Ranges implements Shards {
+        
+        private final TreeMap<Long, DBConnectionProvider> ranges = new TreeMap<Long, DBConnectionProvider>();
+        
+        /**
+         * Adds the shard of the keys from start up to the start of the next range
+         */
+        public synchronized void add(long start, DBConnectionProvider shard) {
+            ranges.put(start, shard);
+        }
+        
+        public synchronized DBConnectionProvider shardFor(Object key) throws SQLException {
+            Map.Entry<Long, DBConnectionProvider> e = ranges.floorEntry(longValue(key));
+            if (e == null) {
+                throw new SQLException("No shard for routing key " + key);
+            }
+            return e.getValue();
+        }
+        
+        /**
+         * Returns the value of an integer key
+         * @throws SQLException if the key is no number, or not an integer within the range of long
+         */
+        static long longValue(Object key) throws SQLException {
+            if ((key instanceof Long) || (key instanceof Integer) || (key instanceof Short) || (key instanceof Byte)) {
+                return ((Number) key).longValue();
+            }
+            if (key instanceof Number) {
+                try {
+                    return new BigDecimal(key.toString()).longValueExact();
+                } catch (NumberFormatException ex) {
+                    // NaN or Infinity
+                } catch (ArithmeticException ex) {
+                    // fraction or overflow
+                }
+            }
+            throw new SQLException("Routing key " + key + " is not an integer");
+        }
+    }
+}
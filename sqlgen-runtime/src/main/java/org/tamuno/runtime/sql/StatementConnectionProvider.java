@@ -0,0 +1,34 @@
+/*
+
+ Tamuno Framework 
+
+Copyright: Kai Londenberg, 2007, Germany.
+
+This software is made available as is, without any explicit
+or implied warranties, to the extent permitted by law.
+
+The Tamuno Framework is licensed under the Apache Public License V2.0
+see LICENSE.txt
+
+The TamunoFramework contains external Open Source Libraries, to
+which the original Author has no copyright, and which are
+available under their own licensing terms.
+
+*/
+package org.tamuno.runtime.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Connection provider, which chooses the connection by the statement to run on it, like
+ * ShardRouter and ReadWriteSplitter. Generated statements get their connection from it
+ * through BaseSQLApi.getConnection(RoutableStatement).
+ */
+public interface StatementConnectionProvider extends DBConnectionProvider {
+
+    /**
+     * Returns the connection to run the given statement on
+     */
+    Connection getConnection(RoutableStatement statement) throws SQLException;
+}
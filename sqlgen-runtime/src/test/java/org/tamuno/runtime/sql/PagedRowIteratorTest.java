@@ -0,0 +1,124 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pages have to be queried by the key of the last row, each on a statement and connection
+ * of its own, which are closed before the next page is queried.
+ */
+public class PagedRowIteratorTest {
+
+    private static final DynamicRow.Columns columns = new DynamicRow.Columns(new String[]{"id"}, new String[]{"int"});
+
+    /** Open connections and statements */
+    private int open = 0;
+    private int queries = 0;
+
+    private <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * A connection on a table with the ids 0, 2, 4, ... count*2-2. Its statements query "after limit".
+     */
+    private Connection connection(final int count) {
+        open++;
+        return proxy(Connection.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                if (m.getName().equals("close")) {
+                    open--;
+                    return null;
+                }
+                open++;
+                return proxy(Statement.class, new InvocationHandler() {
+                    public Object invoke(Object p, Method m, Object[] args) {
+                        if (m.getName().equals("close")) {
+                            open--;
+                            return null;
+                        }
+                        assertEquals(2, open);
+                        queries++;
+                        String sql[] = ((String) args[0]).split(" ");
+                        final int after = Integer.parseInt(sql[0]);
+                        final int limit = Integer.parseInt(sql[1]);
+                        return proxy(ResultSet.class, new InvocationHandler() {
+                            int id = after - (after % 2) + ((after < 0) ? 0 : 2);
+                            int rows = -1;
+                            public Object invoke(Object p, Method m, Object[] args) {
+                                if (m.getName().equals("next")) {
+                                    if (++rows > 0) {
+                                        id += 2;
+                                    }
+                                    return (rows < limit) && (id < count * 2);
+                                }
+                                if (m.getName().equals("close")) {
+                                    return null;
+                                }
+                                return id;
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private PagedRowIterator<DynamicRow> iterate(final int count, int pageSize) throws SQLException {
+        return new PagedRowIterator<DynamicRow>(proxy(DataSource.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                return connection(count);
+            }
+        }), pageSize, new PagedRowIterator.Page<DynamicRow>() {
+            public RowIterator<DynamicRow> query(Statement st, DynamicRow lastRow, int limit) throws SQLException {
+                int after = (lastRow == null) ? -1 : lastRow.getInt("id");
+                return new RowIterator<DynamicRow>(st.executeQuery(after + " " + limit), new DynamicRow(columns));
+            }
+        });
+    }
+
+    @Test
+    public void pages() throws Exception {
+        PagedRowIterator<DynamicRow> it = iterate(10, 3);
+        int expected = 0;
+        for (DynamicRow row : it) {
+            assertEquals(expected, row.getInt("id"));
+            expected += 2;
+        }
+        assertEquals(20, expected);
+        assertEquals(4, it.getPageCount());
+        assertEquals(4, queries);
+        assertEquals(0, open);
+    }
+
+    @Test
+    public void lastPageFull() throws Exception {
+        PagedRowIterator<DynamicRow> it = iterate(6, 3);
+        assertEquals(6, countRows(it));
+        assertEquals(3, it.getPageCount());
+        assertFalse(it.hasNext());
+        assertEquals(0, countRows(iterate(0, 3)));
+    }
+
+    private static int countRows(Iterable<DynamicRow> rows) {
+        int count = 0;
+        for (DynamicRow row : rows) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Every key has to be scanned exactly once, each range on a connection of its own. A failing
+ * range has to cancel the queries of the others.
+ */
+public class PartitionedScanTest {
+
+    private static final DynamicRow.Columns columns = new DynamicRow.Columns(new String[]{"id"}, new String[]{"long"});
+
+    /** Open connections */
+    private final AtomicInteger open = new AtomicInteger();
+    /** Counted down when a statement is cancelled */
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+    /** Counted down when the query "block" starts */
+    private final CountDownLatch blocking = new CountDownLatch(1);
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * A table with the ids 0 to 99, whose statements query "from to". The query "block" blocks
+     * until it is cancelled, ignoring interrupts like a JDBC call waiting for the database.
+     */
+    private DataSource dataSource() {
+        return proxy(DataSource.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                open.incrementAndGet();
+                return proxy(Connection.class, new InvocationHandler() {
+                    public Object invoke(Object p, Method m, Object[] args) {
+                        if (m.getName().equals("close")) {
+                            open.decrementAndGet();
+                            return null;
+                        }
+                        return proxy(Statement.class, new InvocationHandler() {
+                            public Object invoke(Object p, Method m, Object[] args) throws Exception {
+                                if (m.getName().equals("close")) {
+                                    return null;
+                                }
+                                if (m.getName().equals("cancel")) {
+                                    cancelled.countDown();
+                                    return null;
+                                }
+                                if (args[0].equals("block")) {
+                                    blocking.countDown();
+                                    long end = System.currentTimeMillis() + 10000;
+                                    boolean interrupted = false;
+                                    while ((cancelled.getCount() > 0) && (System.currentTimeMillis() < end)) {
+                                        try {
+                                            cancelled.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                                        } catch (InterruptedException ex) {
+                                            interrupted = true;
+                                        }
+                                    }
+                                    if (interrupted) {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                    throw new SQLException("Cancelled");
+                                }
+                                String sql[] = ((String) args[0]).split(" ");
+                                final long from = Math.max(0L, Long.parseLong(sql[0]));
+                                final long to = Math.min(100L, Long.parseLong(sql[1]));
+                                return proxy(ResultSet.class, new InvocationHandler() {
+                                    long id = from - 1;
+                                    public Object invoke(Object p, Method m, Object[] args) {
+                                        if (m.getName().equals("next")) {
+                                            return ++id < to;
+                                        }
+                                        if (m.getName().equals("close")) {
+                                            return null;
+                                        }
+                                        return id;
+                                    }
+                                });
+                            }
+                        });
+                    }
+                });
+            }
+        });
+    }
+
+    private PartitionedScan<DynamicRow> scan(long boundaries[]) {
+        return new PartitionedScan<DynamicRow>(dataSource(), boundaries, new PartitionedScan.Range<DynamicRow>() {
+            public RowIterator<DynamicRow> query(Statement st, long from, long to) throws SQLException {
+                return new RowIterator<DynamicRow>(st.executeQuery(from + " " + to), new DynamicRow(columns));
+            }
+        });
+    }
+
+    @Test
+    public void scan() throws Exception {
+        final BitSet seen = new BitSet();
+        PartitionedScan<DynamicRow> scan = scan(PartitionedScan.boundaries(0, 99, 8));
+        assertEquals(8, scan.getRangeCount());
+        long count = scan.scan(new PartitionedScan.RowHandler<DynamicRow>() {
+            public void handle(int range, DynamicRow row) {
+                synchronized (seen) {
+                    assertFalse(seen.get((int) row.getLong("id")));
+                    seen.set((int) row.getLong("id"));
+                }
+            }
+        });
+        assertEquals(100L, count);
+        assertEquals(100, seen.cardinality());
+        assertEquals(0, open.get());
+    }
+
+    @Test
+    public void iterator() throws Exception {
+        BitSet seen = new BitSet();
+        for (DynamicRow row : scan(PartitionedScan.boundaries(new long[]{1, 2, 3, 50, 51, 52, 90}, 0, 99, 4)).iterator(4)) {
+            assertFalse(seen.get((int) row.getLong("id")));
+            seen.set((int) row.getLong("id"));
+        }
+        assertEquals(100, seen.cardinality());
+        assertEquals(0, open.get());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        PartitionedScan<DynamicRow> scan = new PartitionedScan<DynamicRow>(dataSource(), PartitionedScan.boundaries(0, 99, 2), new PartitionedScan.Range<DynamicRow>() {
+            public RowIterator<DynamicRow> query(Statement st, long from, long to) throws SQLException {
+                if (from > 0) {
+                    try {
+                        blocking.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new SQLException("Broken");
+                }
+                return new RowIterator<DynamicRow>(st.executeQuery("block"), new DynamicRow(columns));
+            }
+        });
+        long start = System.currentTimeMillis();
+        try {
+            scan.scan(new PartitionedScan.RowHandler<DynamicRow>() {
+                public void handle(int range, DynamicRow row) {
+                }
+            });
+            fail("Failure of the second range ignored");
+        } catch (SQLException e) {
+            assertEquals("Broken", e.getMessage());
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void boundaries() {
+        assertEquals("[0, 25, 50, 75, 100]", Arrays.toString(PartitionedScan.boundaries(0, 99, 4)));
+        assertEquals("[5, 6, 7]", Arrays.toString(PartitionedScan.boundaries(5, 6, 4)));
+        assertEquals("[0, 2, 50, 52, 100]", Arrays.toString(PartitionedScan.boundaries(new long[]{1, 2, 3, 50, 51, 52, 90}, 0, 99, 4)));
+        assertEquals("[0, 100]", Arrays.toString(PartitionedScan.boundaries(new long[0], 0, 99, 4)));
+    }
+}
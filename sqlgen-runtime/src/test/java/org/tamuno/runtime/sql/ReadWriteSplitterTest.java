@@ -0,0 +1,380 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reads have to go to the replica with the fewest outstanding queries, and writes, transactions
+ * and reads while all replicas lag or fail to the primary. Slow queries of hedged statements have
+ * to be answered by a second replica within the hedging budget.
+ */
+public class ReadWriteSplitterTest {
+
+    /**
+     * Fake connection, whose queries block while gate is set, and take slow milliseconds unless
+     * they are cancelled
+     */
+    private static class FakeConnection implements InvocationHandler {
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class}, this);
+        boolean autoCommit = true;
+        volatile CountDownLatch started;
+        volatile CountDownLatch gate;
+        long lag = 0;
+        volatile long slow = 0;
+        final AtomicInteger cancelled = new AtomicInteger();
+        final AtomicInteger prepared = new AtomicInteger();
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("getAutoCommit")) {
+                return autoCommit;
+            }
+            if (name.equals("setAutoCommit")) {
+                autoCommit = (Boolean) args[0];
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return false;
+            }
+            if (name.equals("prepareStatement")) {
+                prepared.incrementAndGet();
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return null;
+                    }
+                });
+            }
+            if (name.equals("createStatement")) {
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Statement.class}, new InvocationHandler() {
+                    final CountDownLatch cancel = new CountDownLatch(1);
+
+                    public Object invoke(final Object statement, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getConnection")) {
+                            return connection;
+                        }
+                        if (method.getName().equals("cancel")) {
+                            cancelled.incrementAndGet();
+                            cancel.countDown();
+                            return null;
+                        }
+                        if (method.getName().equals("executeQuery")) {
+                            CountDownLatch g = gate;
+                            if (g != null) {
+                                started.countDown();
+                                g.await(10, TimeUnit.SECONDS);
+                            }
+                            if ((slow > 0) && cancel.await(slow, TimeUnit.MILLISECONDS)) {
+                                throw new SQLException("Cancelled");
+                            }
+                            return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {ResultSet.class}, new InvocationHandler() {
+                                public Object invoke(Object proxy, Method method, Object[] args) {
+                                    return method.getName().equals("getStatement") ? statement : null;
+                                }
+                            });
+                        }
+                        return null;
+                    }
+                });
+            }
+            return null;
+        }
+
+        DBConnectionProvider provider() {
+            return new DBConnectionProvider() {
+                public Connection getConnection() {
+                    return connection;
+                }
+            };
+        }
+    }
+
+    private static RoutableStatement statement(final boolean readOnly) {
+        return new RoutableStatement() {
+            @Override
+            public String toString() {
+                return "SELECT 1";
+            }
+
+            public String getStatementName() {
+                return "statement";
+            }
+
+            public boolean isReadOnly() {
+                return readOnly;
+            }
+
+            public Object getInputValue(String name) {
+                return null;
+            }
+        };
+    }
+
+    private static ShapedStatement shapedStatement(final boolean readOnly) {
+        return new ShapedStatement() {
+            @Override
+            public String toString() {
+                return "SELECT 1";
+            }
+
+            public String getStatementName() {
+                return "statement";
+            }
+
+            public boolean isReadOnly() {
+                return readOnly;
+            }
+
+            public Object getInputValue(String name) {
+                return null;
+            }
+
+            public long calcAvailableParamsBitset() {
+                return 0L;
+            }
+
+            public long[] getShapes() {
+                return new long[] {0L};
+            }
+
+            public ShapedStatement forShape(long shape) {
+                return this;
+            }
+        };
+    }
+
+    /**
+     * Warm-up has to prepare every shape on the connection it would run on.
+     */
+    @Test
+    public void warmUp() throws Exception {
+        FakeConnection primary = new FakeConnection();
+        FakeConnection replica = new FakeConnection();
+        ReadWriteSplitter splitter = new ReadWriteSplitter(primary.provider());
+        splitter.addReplica(replica.provider());
+        BaseSQLApi api = new BaseSQLApi() {
+            @Override
+            public ShapedStatement[] getStatements() {
+                return new ShapedStatement[] {shapedStatement(true), shapedStatement(false), shapedStatement(true)};
+            }
+        };
+        api.setConnectionProvider(splitter);
+        assertEquals(3, api.warmUp(8));
+        assertEquals(2, replica.prepared.get());
+        assertEquals(1, primary.prepared.get());
+    }
+
+    @Test
+    public void split() throws Exception {
+        FakeConnection primary = new FakeConnection();
+        FakeConnection replica = new FakeConnection();
+        ReadWriteSplitter splitter = new ReadWriteSplitter(primary.provider());
+        assertSame(primary.connection, splitter.getConnection(statement(true)));
+        splitter.addReplica(replica.provider());
+        assertSame(replica.connection, splitter.getConnection(statement(true)));
+        assertSame(primary.connection, splitter.getConnection(statement(false)));
+        assertSame(primary.connection, splitter.getConnection());
+        // Within a transaction, reads have to see its writes
+        splitter.getConnection().setAutoCommit(false);
+        assertSame(primary.connection, splitter.getConnection(statement(true)));
+        primary.connection.setAutoCommit(true);
+        assertSame(replica.connection, splitter.getConnection(statement(true)));
+    }
+
+    @Test
+    public void leastOutstanding() throws Exception {
+        final FakeConnection a = new FakeConnection();
+        final FakeConnection b = new FakeConnection();
+        final ReadWriteSplitter splitter = new ReadWriteSplitter(new FakeConnection().provider());
+        splitter.addReplica(a.provider());
+        splitter.addReplica(b.provider());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        for (FakeConnection c : new FakeConnection[] {a, b}) {
+            c.started = started;
+            c.gate = gate;
+        }
+        final Connection[] busy = new Connection[1];
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    busy[0] = splitter.getConnection(statement(true));
+                    ReadWriteSplitter.executeQuery(busy[0].createStatement(), "SELECT 1");
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        reader.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Connection idle = (busy[0] == a.connection) ? b.connection : a.connection;
+        for (int i = 0; i < 4; i++) {
+            assertSame(idle, splitter.getConnection(statement(true)));
+        }
+        gate.countDown();
+        reader.join();
+        a.gate = null;
+        b.gate = null;
+        Connection first = splitter.getConnection(statement(true));
+        assertNotSame(first, splitter.getConnection(statement(true)));
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        final FakeConnection primary = new FakeConnection();
+        final FakeConnection lagging = new FakeConnection();
+        lagging.lag = 5000;
+        ReadWriteSplitter splitter = new ReadWriteSplitter(primary.provider());
+        splitter.addReplica(lagging.provider());
+        splitter.addReplica(new DBConnectionProvider() {
+            public Connection getConnection() throws SQLException {
+                throw new SQLException("down");
+            }
+        });
+        splitter.setLagProbe(new ReadWriteSplitter.LagProbe() {
+            public long getLag(Connection replica) {
+                return (replica == lagging.connection) ? lagging.lag : 0;
+            }
+        }, 1000, 0);
+        assertSame(primary.connection, splitter.getConnection(statement(true)));
+        lagging.lag = 10;
+        assertSame(lagging.connection, splitter.getConnection(statement(true)));
+    }
+
+    private static Connection query(ReadWriteSplitter splitter) throws SQLException {
+        RoutableStatement statement = statement(true);
+        Statement st = splitter.getConnection(statement).createStatement();
+        return ReadWriteSplitter.executeQuery(st, statement).getStatement().getConnection();
+    }
+
+    @Test
+    public void hedge() throws Exception {
+        FakeConnection a = new FakeConnection();
+        FakeConnection b = new FakeConnection();
+        ReadWriteSplitter splitter = new ReadWriteSplitter(new FakeConnection().provider());
+        splitter.addReplica(a.provider());
+        splitter.addReplica(b.provider());
+        splitter.setHedged("statement", true);
+        splitter.setHedgingBudget(10);
+        // No hedging before the latencies are known
+        a.slow = 50;
+        b.slow = 50;
+        for (int i = 0; i < 20; i++) {
+            query(splitter);
+        }
+        assertEquals(0, splitter.getHedgeCount());
+        // Queries of both took 50ms, so queries of a are hedged by b after about that long
+        a.slow = 2000;
+        b.slow = 0;
+        for (int i = 0; (i < 8) && (splitter.getHedgeCount() < 2); i++) {
+            long start = System.currentTimeMillis();
+            assertSame(b.connection, query(splitter));
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        assertEquals(2, splitter.getHedgeCount());
+        assertEquals(2, a.cancelled.get());
+        // At most 29 queries earned 2.9 hedges, so the budget is used up
+        a.slow = 200;
+        b.slow = 200;
+        assertNotNull(query(splitter));
+        assertEquals(2, splitter.getHedgeCount());
+    }
+
+    @Test
+    public void loserFirst() throws Exception {
+        FakeConnection a = new FakeConnection();
+        FakeConnection b = new FakeConnection();
+        final ReadWriteSplitter splitter = new ReadWriteSplitter(new FakeConnection().provider());
+        splitter.addReplica(a.provider());
+        splitter.addReplica(b.provider());
+        splitter.setHedged("statement", true);
+        splitter.setHedgingBudget(10);
+        a.slow = 10;
+        b.slow = 10;
+        for (int i = 0; i < 20; i++) {
+            query(splitter);
+        }
+        // Runs the query in a thread of its own, and holds the hedge back
+        final Thread[] running = new Thread[1];
+        final Runnable[] held = new Runnable[1];
+        splitter.setExecutorService(new AbstractExecutorService() {
+            public void execute(Runnable task) {
+                if (running[0] == null) {
+                    running[0] = new Thread(task);
+                    running[0].start();
+                } else {
+                    held[0] = task;
+                }
+            }
+
+            public void shutdown() {
+            }
+
+            public List<Runnable> shutdownNow() {
+                return Collections.emptyList();
+            }
+
+            public boolean isShutdown() {
+                return false;
+            }
+
+            public boolean isTerminated() {
+                return false;
+            }
+
+            public boolean awaitTermination(long timeout, TimeUnit unit) {
+                return true;
+            }
+        });
+        a.slow = 300;
+        b.slow = 300;
+        final Connection[] result = new Connection[1];
+        Thread reader = new Thread() {
+            public void run() {
+                try {
+                    result[0] = query(splitter);
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        // The winning query blocks on recording its latency, so the hedge, which starts after
+        // it won, is done first
+        Field latencies = ReadWriteSplitter.class.getDeclaredField("latencies");
+        latencies.setAccessible(true);
+        synchronized (latencies.get(splitter)) {
+            reader.start();
+            long timeout = System.currentTimeMillis() + 10000;
+            while (((running[0] == null) || (running[0].getState() != Thread.State.BLOCKED) || (held[0] == null))
+                    && (System.currentTimeMillis() < timeout)) {
+                Thread.sleep(1);
+            }
+            assertNotNull(held[0]);
+            held[0].run();
+        }
+        reader.join();
+        assertNotNull(result[0]);
+        assertEquals(0, ((result[0] == a.connection) ? a : b).cancelled.get());
+        assertEquals(1, splitter.getHedgeCount());
+    }
+}
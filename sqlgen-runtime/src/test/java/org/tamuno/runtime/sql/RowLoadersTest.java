@@ -0,0 +1,107 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Spun row classes have to load exactly the same values as the interpreting DynamicRow, and
+ * deserialize as one.
+ */
+public class RowLoadersTest {
+
+    private static final String types[] = {"String", "int", "long", "double", "float", "short", "boolean", "byte", "bytes", "decimal", "Date", "Time", "Timestamp"};
+
+    private static final Object values[] = {"kai", 42, 1L << 40, 2.5, 1.5f, (short) 7, true, (byte) -3, new byte[]{1, 2},
+        new BigDecimal("12.34"), java.sql.Date.valueOf("1977-05-25"), java.sql.Time.valueOf("12:34:56"), java.sql.Timestamp.valueOf("2007-05-25 12:34:56.789")};
+
+    /**
+     * Returns a ResultSet with a single row of the given values, whose getters return the value of the column as is.
+     */
+    private static ResultSet resultSet(final Object row[]) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("next")) {
+                    return true;
+                }
+                return row[(Integer) args[0] - 1];
+            }
+        });
+    }
+
+    private static DynamicRow.Columns columns(String prefix) {
+        String names[] = new String[types.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = prefix + types[i];
+        }
+        return new DynamicRow.Columns(names, types);
+    }
+
+    @Test
+    public void loadResultSetRow() throws Exception {
+        DynamicRow.Columns columns = columns("c_");
+        DynamicRow spun = RowLoaders.newRow(columns);
+        DynamicRow interpreted = new DynamicRow(columns);
+        assertNotSame(DynamicRow.class, spun.getClass());
+        spun.loadResultSetRow(resultSet(values));
+        interpreted.loadResultSetRow(resultSet(values));
+        assertEquals(interpreted.toString(), spun.toString());
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof byte[]) {
+                assertArrayEquals((byte[]) values[i], (byte[]) spun.get(i));
+            } else {
+                assertEquals(values[i], spun.get(i));
+            }
+        }
+        assertEquals(42, spun.getInt("c_int"));
+        assertEquals(1L << 40, spun.getLong("c_long"));
+        assertEquals(2.5, spun.getDouble("c_double"), 0.0);
+        assertTrue(spun.getBoolean("c_boolean"));
+        assertEquals("kai", spun.getString("c_String"));
+
+        DynamicRow copy = (DynamicRow) spun.clone();
+        spun.loadResultSetRow(resultSet(new Object[]{"x", 1, 0L, 0.0, 0f, (short) 0, false, (byte) 0, null, null, null, null, null}));
+        assertEquals(42, copy.getInt("c_int"));
+        assertEquals(1, spun.getInt("c_int"));
+    }
+
+    @Test
+    public void cachedBySignature() throws Exception {
+        assertSame(RowLoaders.rowClassFor(columns("a_")), RowLoaders.rowClassFor(columns("b_")));
+        assertNotSame(RowLoaders.rowClassFor(columns("a_")),
+                RowLoaders.rowClassFor(new DynamicRow.Columns(new String[]{"id"}, new String[]{"int"})));
+    }
+
+    @Test
+    public void serialize() throws Exception {
+        DynamicRow spun = RowLoaders.newRow(columns("c_"));
+        spun.loadResultSetRow(resultSet(values));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(spun);
+        out.close();
+        DynamicRow copy = (DynamicRow) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertSame(DynamicRow.class, copy.getClass());
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof byte[]) {
+                assertArrayEquals((byte[]) values[i], (byte[]) copy.get(i));
+            } else {
+                assertEquals(values[i], copy.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.tamuno.runtime.sql;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests of the SQL Dialect implementations
+ */
+public class SQLDialectsTest {
+
+    private static final byte[] binary = {0, 1, (byte) 0xAB, (byte) 0xFF};
+
+    @Test
+    public void generic() {
+        ISQLDialectUtil d = GenericSQLDialectUtil.instance;
+        assertEquals("'O\\'Neil'", d.escapeValue("O'Neil"));
+        assertEquals("'2007-05-25'", d.escapeValue(Date.valueOf("2007-05-25")));
+        assertEquals("'2007-05-25 12:30:05.123'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05.123")));
+        assertEquals("'2007-05-25 12:30:05'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05")));
+        assertEquals("X'0001ABFF'", d.escapeValue(binary));
+        assertEquals("1000", d.escapeValue(new BigDecimal("1E+3")));
+        assertEquals("42", d.escapeValue((Object) Integer.valueOf(42)));
+    }
+
+    @Test
+    public void mysql() {
+        ISQLDialectUtil d = SQLDialects.forName("MySQL");
+        assertSame(MySQLDialectUtil.instance, d);
+        assertEquals("'a\\'b\\\\c\\0d\\ne\\rf\\Zg\\\"'", d.escapeValue("a'b\\c\u0000d\ne\rf\u001Ag\""));
+        assertEquals("DATE '2007-05-25'", d.escapeValue(Date.valueOf("2007-05-25")));
+        assertEquals("TIME '08:05:00'", d.escapeValue(Time.valueOf("08:05:00")));
+        assertEquals("TIMESTAMP '2007-05-25 12:30:05.123456'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05.123456789")));
+        assertEquals("X'0001ABFF'", d.escapeValue(binary));
+    }
+
+    @Test
+    public void postgresql() {
+        ISQLDialectUtil d = SQLDialects.forName("PostgreSQL");
+        assertEquals("'O''Neil\\'", d.escapeValue("O'Neil\\"));
+        assertEquals("'\\x0001ABFF'::bytea", d.escapeValue(binary));
+        try {
+            d.escapeValue("a\u0000b");
+            fail("NUL characters must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void h2() {
+        ISQLDialectUtil d = SQLDialects.forName("h2");
+        assertEquals("'O''Neil''s\\'", d.escapeValue("O'Neil's\\"));
+        assertEquals("TIMESTAMP '2007-05-25 12:30:05.000000001'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05.000000001")));
+    }
+
+    @Test
+    public void sqlserver() {
+        ISQLDialectUtil d = SQLDialects.forName("Microsoft SQL Server");
+        assertEquals("'O''Neil'", d.escapeValue("O'Neil"));
+        assertEquals("N'Müller''s'", d.escapeValue("Müller's"));
+        assertEquals("x N'ä'", d.appendEscaped(new StringBuilder("x "), "ä").toString());
+        assertEquals("0x0001ABFF", d.escapeValue(binary));
+        assertEquals("'2007-05-25T12:30:05.1234567'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05.123456789")));
+        assertEquals("'20070525'", d.escapeValue(Date.valueOf("2007-05-25")));
+        d = SQLDialects.forName("SQLServer datetime");
+        assertEquals("'2007-05-25T12:30:05.123'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05.123456789")));
+        assertEquals("'2007-05-25T12:30:05'", d.escapeValue(Timestamp.valueOf("2007-05-25 12:30:05")));
+    }
+
+    @Test
+    public void nonFinite() {
+        assertEquals("2.5", GenericSQLDialectUtil.instance.escapeValue(2.5));
+        for (Object value : new Object[] {Double.NaN, Double.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY}) {
+            try {
+                GenericSQLDialectUtil.instance.escapeValue(value);
+                fail(value + " accepted");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void register() {
+        SQLDialects.register("Test DB", H2DialectUtil.instance);
+        assertSame(H2DialectUtil.instance, SQLDialects.forName("test db"));
+        assertSame(H2DialectUtil.instance, SQLDialects.forName("Test DB"));
+    }
+
+    @Test
+    public void unknownDialect() {
+        assertSame(GenericSQLDialectUtil.instance, SQLDialects.forName("Unknown DB"));
+        assertSame(GenericSQLDialectUtil.instance, SQLDialects.forName(null));
+    }
+}
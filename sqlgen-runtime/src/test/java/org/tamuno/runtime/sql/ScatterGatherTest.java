@@ -0,0 +1,208 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The rows of all shards have to be merged in order, with the limit pushed down to every shard.
+ */
+public class ScatterGatherTest {
+
+    private static final DynamicRow.Columns columns = new DynamicRow.Columns(new String[]{"id"}, new String[]{"long"});
+
+    private static final Comparator<DynamicRow> BY_ID = new Comparator<DynamicRow>() {
+        public int compare(DynamicRow a, DynamicRow b) {
+            return RowComparators.compare(a.getLong("id"), b.getLong("id"));
+        }
+    };
+
+    /** Open statements */
+    private final AtomicInteger open = new AtomicInteger();
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    /**
+     * Shard i of count, holding the ids below 30 which are i modulo count. Its statements
+     * query the limit, and fail for "fail".
+     */
+    private DBConnectionProvider shard(final int i, final int count) {
+        final Connection connection = proxy(Connection.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                open.incrementAndGet();
+                return proxy(Statement.class, new InvocationHandler() {
+                    public Object invoke(Object p, Method m, Object[] args) throws SQLException {
+                        if (m.getName().equals("close")) {
+                            open.decrementAndGet();
+                            return null;
+                        }
+                        if (args[0].equals("fail") && (i == 1)) {
+                            throw new SQLException("Shard " + i + " failed");
+                        }
+                        final int limit = args[0].equals("fail") ? 30 : Integer.parseInt((String) args[0]);
+                        return proxy(ResultSet.class, new InvocationHandler() {
+                            long id = i - count;
+                            int rows = 0;
+                            public Object invoke(Object p, Method m, Object[] args) {
+                                if (m.getName().equals("next")) {
+                                    id += count;
+                                    return (rows++ < limit) && (id < 30);
+                                }
+                                if (m.getName().equals("close")) {
+                                    return null;
+                                }
+                                return id;
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return new DBConnectionProvider() {
+            public Connection getConnection() {
+                return connection;
+            }
+        };
+    }
+
+    private ScatterGather shards() {
+        return new ScatterGather(shard(0, 3), shard(1, 3), shard(2, 3));
+    }
+
+    private static ScatterGather.Query<DynamicRow> query(final String sql) {
+        return new ScatterGather.Query<DynamicRow>() {
+            public RowIterator<DynamicRow> query(Statement st, int limit) throws SQLException {
+                return new RowIterator<DynamicRow>(st.executeQuery((sql != null) ? sql : Integer.toString(limit)), new DynamicRow(columns));
+            }
+        };
+    }
+
+    private static DynamicRow row(final long id) throws SQLException {
+        DynamicRow row = new DynamicRow(columns);
+        row.loadResultSetRow(proxy(ResultSet.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                return id;
+            }
+        }));
+        return row;
+    }
+
+    private static ArrayList<Long> ids(Iterable<DynamicRow> rows) {
+        ArrayList<Long> result = new ArrayList<Long>();
+        for (DynamicRow row : rows) {
+            result.add(row.getLong("id"));
+        }
+        return result;
+    }
+
+    @Test
+    public void ordered() throws Exception {
+        assertEquals("[0, 1, 2, 3, 4, 5, 6, 7, 8, 9]", ids(shards().query(query(null), BY_ID, 10)).toString());
+        assertEquals(0, open.get());
+        ArrayList<Long> all = ids(shards().query(query(null), RowComparators.thenBy(BY_ID), Integer.MAX_VALUE));
+        for (int i = 0; i < 30; i++) {
+            assertEquals(Long.valueOf(i), all.get(i));
+        }
+        assertEquals(0, open.get());
+        assertTrue(RowComparators.descending(BY_ID).compare(row(1), row(2)) > 0);
+        assertTrue(RowComparators.compare(null, "a") < 0);
+    }
+
+    private static final DynamicRow.Columns names = new DynamicRow.Columns(new String[]{"name"}, new String[]{"String"});
+
+    private static final Comparator<DynamicRow> BY_NAME = new Comparator<DynamicRow>() {
+        public int compare(DynamicRow a, DynamicRow b) {
+            return RowComparators.compare(a.getString("name"), b.getString("name"));
+        }
+    };
+
+    /**
+     * Shard holding the given names, in the order the database returns them
+     */
+    private static DBConnectionProvider shard(final String... values) {
+        final Connection connection = proxy(Connection.class, new InvocationHandler() {
+            public Object invoke(Object p, Method m, Object[] args) {
+                return proxy(Statement.class, new InvocationHandler() {
+                    public Object invoke(Object p, Method m, Object[] args) {
+                        if (m.getName().equals("close")) {
+                            return null;
+                        }
+                        return proxy(ResultSet.class, new InvocationHandler() {
+                            int row = -1;
+                            public Object invoke(Object p, Method m, Object[] args) {
+                                if (m.getName().equals("next")) {
+                                    return ++row < values.length;
+                                }
+                                if (m.getName().equals("close")) {
+                                    return null;
+                                }
+                                return values[row];
+                            }
+                        });
+                    }
+                });
+            }
+        });
+        return new DBConnectionProvider() {
+            public Connection getConnection() {
+                return connection;
+            }
+        };
+    }
+
+    /**
+     * Shards sorted by a binary collation with NULLS FIRST, as the generated comparators expect,
+     * have to be merged in that order: nulls first, and upper case before lower case.
+     */
+    @Test
+    public void binaryCollation() throws Exception {
+        ScatterGather shards = new ScatterGather(shard(null, "Bob", "alice"), shard(null, "Carol", "bob"), shard("Alice", "dave"));
+        ArrayList<String> result = new ArrayList<String>();
+        for (DynamicRow row : shards.query(new ScatterGather.Query<DynamicRow>() {
+            public RowIterator<DynamicRow> query(Statement st, int limit) throws SQLException {
+                return new RowIterator<DynamicRow>(st.executeQuery("SELECT name FROM t ORDER BY name COLLATE \"C\" NULLS FIRST"), new DynamicRow(names));
+            }
+        }, BY_NAME, Integer.MAX_VALUE)) {
+            result.add(row.getString("name"));
+        }
+        assertEquals("[null, null, Alice, Bob, Carol, alice, bob, dave]", result.toString());
+    }
+
+    @Test
+    public void unordered() throws Exception {
+        assertEquals("[0, 3, 6, 9, 12, 15, 18, 21, 24, 27, 1, 4]", ids(shards().query(query(null), null, 12)).toString());
+        assertEquals(30, ids(shards().query(query(null), null, Integer.MAX_VALUE)).size());
+        ScatterGather.Rows<DynamicRow> rows = shards().query(query(null), null, 20);
+        rows.next();
+        rows.close();
+        assertEquals(0, open.get());
+    }
+
+    @Test
+    public void failure() throws Exception {
+        try {
+            shards().query(query("fail"), BY_ID, 10);
+            fail();
+        } catch (SQLException ex) {
+            assertEquals("Shard 1 failed", ex.getMessage());
+        }
+        assertEquals(0, open.get());
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+
+package org.tamuno.runtime.sql;
+
+import java.math.BigDecimal;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Statements have to be routed by the value of their routing key, and consistent hashing has to
+ * move only the keys taken over by an added shard.
+ */
+public class ShardRouterTest {
+
+    private static DBConnectionProvider shard() {
+        return new DBConnectionProvider() {
+            public Connection getConnection() {
+                return null;
+            }
+        };
+    }
+
+    private static RoutableStatement statement(final String name, final String key, final Object value) {
+        return new RoutableStatement() {
+            public String getStatementName() {
+                return name;
+            }
+
+            public boolean isReadOnly() {
+                return false;
+            }
+
+            public Object getInputValue(String n) {
+                return n.equals(key) ? value : null;
+            }
+        };
+    }
+
+    /**
+     * A statement whose routing key tenant_id is available (with the value 1) in the shapes with bit 0 set
+     */
+    private static ShapedStatement shapedStatement(final long shape) {
+        return new ShapedStatement() {
+            @Override
+            public String toString() {
+                return "SELECT 1";
+            }
+
+            public String getStatementName() {
+                return "s";
+            }
+
+            public boolean isReadOnly() {
+                return true;
+            }
+
+            public Object getInputValue(String n) {
+                return (n.equals("tenant_id") && ((shape & 1L) != 0)) ? 1 : null;
+            }
+
+            public long calcAvailableParamsBitset() {
+                return shape;
+            }
+
+            public long[] getShapes() {
+                return new long[] {0L, 1L};
+            }
+
+            public ShapedStatement forShape(long shape) {
+                return shapedStatement(shape);
+            }
+        };
+    }
+
+    /**
+     * Shapes without a value of their routing key can not be warmed up without default shard,
+     * but must not stop the warm-up of the others.
+     */
+    @Test
+    public void warmUp() throws Exception {
+        final AtomicInteger prepared = new AtomicInteger();
+        final Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {Connection.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("prepareStatement")) {
+                    prepared.incrementAndGet();
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] {PreparedStatement.class}, new InvocationHandler() {
+                        public Object invoke(Object proxy, Method method, Object[] args) {
+                            return null;
+                        }
+                    });
+                }
+                return null;
+            }
+        });
+        ShardRouter.Ranges ranges = new ShardRouter.Ranges();
+        ranges.add(0, new DBConnectionProvider() {
+            public Connection getConnection() {
+                return connection;
+            }
+        });
+        BaseSQLApi api = new BaseSQLApi() {
+            @Override
+            public ShapedStatement[] getStatements() {
+                return new ShapedStatement[] {shapedStatement(0L), shapedStatement(0L)};
+            }
+        };
+        api.setConnectionProvider(new ShardRouter(ranges, "tenant_id"));
+        assertEquals(2, api.warmUp(8));
+        assertEquals(2, prepared.get());
+    }
+
+    @Test
+    public void route() throws Exception {
+        DBConnectionProvider a = shard();
+        DBConnectionProvider b = shard();
+        DBConnectionProvider global = shard();
+        ShardRouter.Ranges ranges = new ShardRouter.Ranges();
+        ranges.add(0, a);
+        ranges.add(1000, b);
+        ShardRouter router = new ShardRouter(ranges, "tenant_id");
+        assertSame(a, router.shardFor(statement("s", "tenant_id", 999)));
+        assertSame(b, router.shardFor(statement("s", "tenant_id", 1000L)));
+        assertSame(b, router.shardFor(statement("s", "tenant_id", new BigDecimal("1000.00"))));
+        assertSame(a, router.shardFor(statement("s", "tenant_id", 999.0)));
+        for (Object fraction : new Object[] {999.5, new BigDecimal("999.99"), Double.NaN, new BigDecimal("1e30"), "1000"}) {
+            try {
+                router.shardFor(statement("s", "tenant_id", fraction));
+                fail("Accepted " + fraction);
+            } catch (SQLException ex) {
+                // not an integer
+            }
+        }
+        try {
+            router.shardFor(statement("s", "other", 1));
+            fail();
+        } catch (SQLException ex) {
+            // no default shard
+        }
+        router.setDefaultShard(global);
+        assertSame(global, router.shardFor(statement("s", "other", 1)));
+        router.setRoutingKey("s", "other");
+        assertSame(a, router.shardFor(statement("s", "other", 1)));
+        assertSame(global, router.shardFor(statement("t", "other", 1)));
+    }
+
+    @Test
+    public void consistentHash() throws Exception {
+        DBConnectionProvider shards[] = {shard(), shard(), shard(), shard()};
+        ShardRouter.ConsistentHash hash = new ShardRouter.ConsistentHash();
+        for (int i = 0; i < 3; i++) {
+            hash.add(shards[i]);
+        }
+        Map<Integer, DBConnectionProvider> before = new HashMap<Integer, DBConnectionProvider>();
+        int counts[] = new int[3];
+        for (int key = 0; key < 3000; key++) {
+            DBConnectionProvider shard = hash.shardFor(key);
+            before.put(key, shard);
+            assertSame(shard, hash.shardFor(Long.valueOf(key)));
+            for (int i = 0; i < 3; i++) {
+                if (shards[i] == shard) {
+                    counts[i]++;
+                }
+            }
+        }
+        for (int count : counts) {
+            assertTrue(count > 600);
+        }
+        hash.add(shards[3]);
+        int moved = 0;
+        for (int key = 0; key < 3000; key++) {
+            DBConnectionProvider shard = hash.shardFor(key);
+            if (shard != before.get(key)) {
+                assertSame(shards[3], shard);
+                moved++;
+            }
+        }
+        assertTrue((moved > 400) && (moved < 1200));
+    }
+
+    /**
+     * Equal keys of different types, scales or time zones have to hash the same.
+     */
+    @Test
+    public void normalize() throws Exception {
+        assertEquals("42", ShardRouter.ConsistentHash.normalize(42));
+        assertEquals("42", ShardRouter.ConsistentHash.normalize(42.0));
+        assertEquals("42", ShardRouter.ConsistentHash.normalize(new BigDecimal("42.00")));
+        assertEquals("4200", ShardRouter.ConsistentHash.normalize(new BigDecimal("4.2E+3")));
+        assertEquals("0", ShardRouter.ConsistentHash.normalize(new BigDecimal("0.00")));
+        assertEquals(ShardRouter.ConsistentHash.normalize(new BigDecimal("1.1")), ShardRouter.ConsistentHash.normalize(1.1f));
+        TimeZone zone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+            String utc = ShardRouter.ConsistentHash.normalize(new Timestamp(1000L));
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            assertEquals(utc, ShardRouter.ConsistentHash.normalize(new Timestamp(1000L)));
+            assertEquals(utc, ShardRouter.ConsistentHash.normalize(new java.sql.Date(1000L)));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+        Timestamp t = new Timestamp(1000L);
+        t.setNanos(1);
+        assertFalse(ShardRouter.ConsistentHash.normalize(t).equals(ShardRouter.ConsistentHash.normalize(new Timestamp(1000L))));
+    }
+}